@@ -0,0 +1,21 @@
+package web.controlevacinacao.assistente;
+
+/**
+ * Estado do assistente de aplicacao: a pessoa e o lote escolhidos no cadastro,
+ * ou o codigo da aplicacao na alteracao.
+ */
+public record EstadoAplicacao(Long codigo, Long codigoPessoa, Long codigoLote) {
+
+    public static EstadoAplicacao cadastro(Long codigoPessoa) {
+        return new EstadoAplicacao(null, codigoPessoa, null);
+    }
+
+    public static EstadoAplicacao alteracao(Long codigo) {
+        return new EstadoAplicacao(codigo, null, null);
+    }
+
+    public EstadoAplicacao comLote(Long codigoLote) {
+        return new EstadoAplicacao(codigo, codigoPessoa, codigoLote);
+    }
+
+}
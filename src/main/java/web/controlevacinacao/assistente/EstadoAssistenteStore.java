@@ -0,0 +1,65 @@
+package web.controlevacinacao.assistente;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Guarda o estado dos assistentes de cadastro/alteracao (escolha de carro e
+ * motorista, de pessoa e lote) na sessao, no lugar das entidades inteiras.
+ *
+ * Cada estado eh um record pequeno com codigos e poucos valores simples, guardado
+ * como texto JSON em um atributo da sessao. O SessaoRedisConfig grava textos em
+ * JSON, entao o atributo ocupa algumas dezenas de bytes, e o spring-session o
+ * envia junto com o restante da sessao ao final da requisicao: uma etapa do
+ * assistente nao faz nenhuma ida ao Redis alem das que a sessao ja faz. O estado
+ * expira junto com a sessao. O nome do atributo leva o tipo do estado, o que
+ * permite um assistente de cada tipo por usuario.
+ */
+@Component
+public class EstadoAssistenteStore {
+
+    private static final String PREFIXO = "assistente.";
+
+    private final ObjectMapper objectMapper;
+
+    public EstadoAssistenteStore(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    public void guardar(HttpSession sessao, Object estado) {
+        try {
+            sessao.setAttribute(atributo(estado.getClass()), objectMapper.writeValueAsString(estado));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Nao foi possivel gravar o estado do assistente " + estado, e);
+        }
+    }
+
+    /**
+     * Retorna null quando o assistente nunca foi iniciado nesta sessao ou quando a
+     * sessao ja expirou.
+     */
+    public <T> T obter(HttpSession sessao, Class<T> tipo) {
+        if (!(sessao.getAttribute(atributo(tipo)) instanceof String json)) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, tipo);
+        } catch (JsonProcessingException e) {
+            // Estado gravado por uma versao anterior do record: o usuario recomeca o assistente
+            return null;
+        }
+    }
+
+    public void remover(HttpSession sessao, Class<?> tipo) {
+        sessao.removeAttribute(atributo(tipo));
+    }
+
+    static String atributo(Class<?> tipo) {
+        return PREFIXO + tipo.getSimpleName();
+    }
+
+}
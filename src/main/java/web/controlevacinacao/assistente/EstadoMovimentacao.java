@@ -0,0 +1,22 @@
+package web.controlevacinacao.assistente;
+
+/**
+ * Estado do assistente de movimentacao. No cadastro guarda o carro e, depois da
+ * segunda etapa, o motorista escolhidos; na alteracao guarda apenas o codigo da
+ * movimentacao que esta sendo alterada.
+ */
+public record EstadoMovimentacao(Long codigo, Long codigoCarro, Long codigoMotorista) {
+
+    public static EstadoMovimentacao cadastro(Long codigoCarro) {
+        return new EstadoMovimentacao(null, codigoCarro, null);
+    }
+
+    public static EstadoMovimentacao alteracao(Long codigo) {
+        return new EstadoMovimentacao(codigo, null, null);
+    }
+
+    public EstadoMovimentacao comMotorista(Long codigoMotorista) {
+        return new EstadoMovimentacao(codigo, codigoCarro, codigoMotorista);
+    }
+
+}
@@ -0,0 +1,89 @@
+package web.controlevacinacao.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceContext;
+import web.controlevacinacao.model.Carro;
+
+/**
+ * Mede a vazao de INSERTs de carros pelo Hibernate (persist + flush em lotes do
+ * tamanho de hibernate.jdbc.batch_size). So existe com o perfil
+ * benchmark-insercao; ver a secao "Geração de chaves" do README.
+ *
+ * Tudo roda em uma transacao desfeita no final: os comandos chegam ao banco,
+ * mas nenhum carro fica gravado (apenas os valores da sequencia sao gastos).
+ */
+@Component
+@Profile("benchmark-insercao")
+public class BenchmarkInsercao implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(BenchmarkInsercao.class);
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final int linhas;
+    private final int tamanhoBatch;
+
+    public BenchmarkInsercao(EntityManagerFactory entityManagerFactory, TransactionTemplate transactionTemplate,
+            @Value("${benchmark.insercao.linhas:20000}") int linhas,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:25}") int tamanhoBatch) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.transactionTemplate = transactionTemplate;
+        this.linhas = linhas;
+        this.tamanhoBatch = tamanhoBatch;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        // Uma rodada de aquecimento (JIT, pool de conexoes, plano das consultas) antes da medida
+        inserir(Math.min(linhas, 2000));
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // Desligadas por padrao (hibernate.generate_statistics); aqui so contam a medida
+        estatisticas.setStatisticsEnabled(true);
+        estatisticas.clear();
+
+        long inicio = System.nanoTime();
+        inserir(linhas);
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        // Com batch, cada comando preparado atende um lote inteiro de INSERTs
+        logger.info("Benchmark de inserção: {} carros em {} s ({} carros/s), {} comandos preparados", linhas,
+                String.format("%.2f", segundos), Math.round(linhas / segundos),
+                estatisticas.getPrepareStatementCount());
+    }
+
+    private void inserir(int quantidade) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < quantidade; i++) {
+                Carro carro = new Carro();
+                // Placas fora do padrao Mercosul, para nao colidir com carros reais
+                carro.setPlaca("Z" + String.format("%07d", i));
+                carro.setModelo("Benchmark");
+                carro.setCor("Cinza");
+                carro.setKmAtual(0L);
+                manager.persist(carro);
+                if ((i + 1) % tamanhoBatch == 0) {
+                    manager.flush();
+                    manager.clear();
+                }
+            }
+            manager.flush();
+            status.setRollbackOnly();
+        });
+    }
+
+}
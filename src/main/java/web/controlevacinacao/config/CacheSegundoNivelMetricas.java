@@ -0,0 +1,51 @@
+package web.controlevacinacao.config;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+
+/**
+ * Publica a taxa de acerto de cada regiao do cache de segundo nivel em
+ * /actuator/metrics/hibernate.cache.segundo.nivel.taxa.acerto (tag regiao).
+ * Os totais de acertos e falhas ja vem do hibernate-micrometer
+ * (hibernate.second.level.cache.requests).
+ *
+ * Sem hibernate.generate_statistics as contagens ficam em zero, entao as metricas
+ * so existem quando as estatisticas estao ligadas (perfil metricas).
+ */
+@Component
+@ConditionalOnProperty(name = "spring.jpa.properties.hibernate.generate_statistics", havingValue = "true")
+public class CacheSegundoNivelMetricas implements MeterBinder {
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    public CacheSegundoNivelMetricas(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Statistics estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String regiao : estatisticas.getSecondLevelCacheRegionNames()) {
+            Gauge.builder("hibernate.cache.segundo.nivel.taxa.acerto", estatisticas,
+                    e -> taxaAcerto(e.getDomainDataRegionStatistics(regiao)))
+                    .tag("regiao", regiao)
+                    .description("Proporcao de buscas atendidas pelo cache de segundo nivel")
+                    .register(registry);
+        }
+    }
+
+    private static double taxaAcerto(CacheRegionStatistics regiao) {
+        long acertos = regiao.getHitCount();
+        long total = acertos + regiao.getMissCount();
+        return total == 0 ? 0 : (double) acertos / total;
+    }
+
+}
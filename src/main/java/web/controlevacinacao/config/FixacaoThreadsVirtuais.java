@@ -0,0 +1,91 @@
+package web.controlevacinacao.config;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+
+/**
+ * Diagnostico de fixacao (pinning) das threads virtuais, ativo so quando
+ * spring.threads.virtual.enabled=true.
+ *
+ * Uma thread virtual fica presa a thread de plataforma quando bloqueia dentro
+ * de um bloco synchronized (caso comum em drivers JDBC, no pool de conexoes e
+ * em clientes antigos). O JFR gera o evento jdk.VirtualThreadPinned nesses
+ * casos; aqui ele eh lido em streaming, contado no timer
+ * threads.virtuais.fixacao e registrado no log com o trecho da pilha onde
+ * ocorreu.
+ */
+@Component
+@ConditionalOnThreading(Threading.VIRTUAL)
+public class FixacaoThreadsVirtuais implements SmartLifecycle {
+
+    private static final Logger logger = LoggerFactory.getLogger(FixacaoThreadsVirtuais.class);
+    private static final String EVENTO = "jdk.VirtualThreadPinned";
+    private static final int QUADROS_NO_LOG = 8;
+
+    private final Duration limite;
+    private final Timer fixacoes;
+    private RecordingStream gravacao;
+
+    public FixacaoThreadsVirtuais(@Value("${threads.virtuais.fixacao.limite:PT0.02S}") Duration limite,
+            MeterRegistry registry) {
+        this.limite = limite;
+        this.fixacoes = Timer.builder("threads.virtuais.fixacao")
+                .description("Tempo em que threads virtuais ficaram presas a uma thread de plataforma")
+                .register(registry);
+    }
+
+    @Override
+    public void start() {
+        gravacao = new RecordingStream();
+        gravacao.enable(EVENTO).withThreshold(limite).withStackTrace();
+        gravacao.onEvent(EVENTO, this::registrar);
+        gravacao.startAsync();
+        logger.info("Monitorando fixação de threads virtuais acima de {} ms", limite.toMillis());
+    }
+
+    @Override
+    public void stop() {
+        if (gravacao != null) {
+            gravacao.close();
+            gravacao = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return gravacao != null;
+    }
+
+    private void registrar(RecordedEvent evento) {
+        fixacoes.record(evento.getDuration());
+        logger.warn("Thread virtual fixada por {} ms em:\n{}", evento.getDuration().toMillis(), pilha(evento));
+    }
+
+    private static String pilha(RecordedEvent evento) {
+        if (evento.getStackTrace() == null) {
+            return "    (pilha indisponível)";
+        }
+        List<RecordedFrame> quadros = evento.getStackTrace().getFrames();
+        return quadros.stream()
+                .limit(QUADROS_NO_LOG)
+                .map(q -> "    " + q.getMethod().getType().getName() + "." + q.getMethod().getName() + ":"
+                        + q.getLineNumber())
+                .collect(Collectors.joining("\n"));
+    }
+
+}
@@ -0,0 +1,62 @@
+package web.controlevacinacao.config;
+
+import java.io.IOException;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.ShallowEtagHeaderFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * ETag nas respostas das requisicoes HTMX (cabecalho HX-Request).
+ *
+ * O fragmento eh gerado normalmente e o filtro calcula o hash do corpo; se o
+ * navegador ja tiver a mesma versao, a resposta vira um 304 sem corpo. Para o
+ * navegador guardar o fragmento e revalidar, a resposta sai com
+ * "private, no-cache" no lugar do no-store que o Spring Security colocaria.
+ *
+ * O ETag eh fraco porque o Tomcat nao comprime respostas com ETag forte.
+ * Downloads, PDFs e o SSE do painel nao passam por aqui: nao sao requisicoes
+ * HTMX e nao podem ser bufferizados.
+ */
+@Configuration
+public class FragmentoHtmxConfig {
+
+    static final String CABECALHO_HTMX = "HX-Request";
+
+    @Bean
+    public FilterRegistrationBean<EtagFragmentoHtmx> etagFragmentoHtmx() {
+        FilterRegistrationBean<EtagFragmentoHtmx> registro = new FilterRegistrationBean<>(new EtagFragmentoHtmx());
+        registro.addUrlPatterns("/*");
+        return registro;
+    }
+
+    static class EtagFragmentoHtmx extends ShallowEtagHeaderFilter {
+
+        EtagFragmentoHtmx() {
+            setWriteWeakETag(true);
+        }
+
+        @Override
+        protected boolean shouldNotFilter(HttpServletRequest request) {
+            return request.getHeader(CABECALHO_HTMX) == null;
+        }
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                FilterChain filterChain) throws ServletException, IOException {
+            // A mesma URL devolve a pagina inteira ou so o fragmento, conforme o cabecalho
+            response.addHeader(HttpHeaders.VARY, CABECALHO_HTMX);
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+            super.doFilterInternal(request, response, filterChain);
+        }
+
+    }
+
+}
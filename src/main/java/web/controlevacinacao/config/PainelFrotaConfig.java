@@ -0,0 +1,27 @@
+package web.controlevacinacao.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import web.controlevacinacao.painel.PonteRedisEventosFrota;
+
+/**
+ * Assinatura do canal Redis por onde as instancias trocam os eventos do painel
+ * de frota.
+ */
+@Configuration
+public class PainelFrotaConfig {
+
+    @Bean
+    public RedisMessageListenerContainer painelFrotaListenerContainer(RedisConnectionFactory connectionFactory,
+            PonteRedisEventosFrota ponte) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(ponte, new ChannelTopic(PonteRedisEventosFrota.CANAL));
+        return container;
+    }
+
+}
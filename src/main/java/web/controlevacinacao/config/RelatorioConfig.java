@@ -0,0 +1,42 @@
+package web.controlevacinacao.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executor exclusivo da geracao de relatorios. O numero de threads limita quantos
+ * relatorios sao preenchidos ao mesmo tempo (e quantas conexoes do pool eles
+ * ocupam); quando a fila enche, novas solicitacoes sao recusadas em vez de
+ * acumular trabalho.
+ *
+ * Com spring.threads.virtual.enabled=true as threads do pool passam a ser
+ * virtuais. O pool continua limitando a concorrencia e a fila, so deixa de
+ * prender threads de plataforma enquanto o relatorio espera o banco.
+ */
+@Configuration
+public class RelatorioConfig {
+
+    @Bean(name = "relatorioExecutor")
+    public ThreadPoolTaskExecutor relatorioExecutor(
+            @Value("${relatorio.executor.threads:2}") int threads,
+            @Value("${relatorio.executor.fila:20}") int fila,
+            @Value("${spring.threads.virtual.enabled:false}") boolean threadsVirtuais) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("relatorio-");
+        if (threadsVirtuais) {
+            executor.setThreadFactory(Thread.ofVirtual().name("relatorio-", 1).factory());
+        }
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(fila);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+}
@@ -0,0 +1,70 @@
+package web.controlevacinacao.config;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * Envia o trabalho das transacoes readOnly (pesquisas e buscas dos repositorios)
+ * para uma replica do PostgreSQL. So eh ativada quando
+ * spring.datasource.replica.url estiver definida; sem ela a aplicacao usa apenas
+ * o DataSource configurado pelo Spring Boot.
+ *
+ * O LazyConnectionDataSourceProxy so pega a conexao fisica no primeiro comando
+ * SQL, quando a transacao ja foi marcada como readOnly, e entao escolhe a replica.
+ *
+ * Os dois pools sao beans: recebem as propriedades spring.datasource.hikari.* e
+ * spring.datasource.replica.hikari.*, entram nas metricas do Hikari e sao fechados
+ * junto com o contexto. As pesquisas que respondem com ETag (VersoesPesquisa) nao
+ * sao readOnly e leem do principal: a versao muda no commit, e uma replica
+ * atrasada guardaria o resultado antigo com o ETag novo.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.datasource.replica.url")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSourcePrincipal(DataSourceProperties propriedades) {
+        HikariDataSource principal = propriedades.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        principal.setPoolName("principal");
+        return principal;
+    }
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.replica.hikari")
+    public HikariDataSource dataSourceReplica(
+            @Value("${spring.datasource.replica.url}") String urlReplica,
+            @Value("${spring.datasource.replica.username:${spring.datasource.username}}") String usuarioReplica,
+            @Value("${spring.datasource.replica.password:${spring.datasource.password}}") String senhaReplica) {
+        HikariDataSource replica = new HikariDataSource();
+        replica.setPoolName("replica");
+        replica.setJdbcUrl(urlReplica);
+        replica.setUsername(usuarioReplica);
+        replica.setPassword(senhaReplica);
+        replica.setReadOnly(true);
+        return replica;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("dataSourcePrincipal") DataSource principal,
+            @Qualifier("dataSourceReplica") DataSource replica) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(principal);
+        dataSource.setReadOnlyDataSource(replica);
+        return dataSource;
+    }
+
+}
@@ -31,7 +31,14 @@ public class SecurityConfig {
                                                 .requestMatchers("/css/**", "/js/**", "/images/**", "/index.html")
                                                 .permitAll()
                                                 .requestMatchers("/movimentacoes/**").hasAnyRole("ADMIN") // APENAS ADMIN e OPERADOR
+                                                .requestMatchers("/painel/**").hasAnyRole("ADMIN") // Mostra as movimentacoes ao vivo
+                                                // Exportacoes trazem a pesquisa inteira (CPF, CNH, datas de nascimento) sem paginar
+                                                .requestMatchers("/*/exportar").hasAnyRole("ADMIN", "USUARIO")
                                                 .requestMatchers("/usuarios/**").hasRole("ADMIN")
+                                                .requestMatchers("/actuator/**").hasRole("ADMIN")
+                                                .requestMatchers("/relatorios/movimentacoes/**").hasRole("ADMIN")
+                                                .requestMatchers("/relatorios/uso-frota/**").hasRole("ADMIN")
+                                                .requestMatchers("/carros/importar", "/motoristas/importar").hasRole("ADMIN") // Cadastro em massa
                                                 .requestMatchers("/carros/**").hasAnyRole("ADMIN", "USUARIO")
                                                 // Um usuário autenticado e com o papel ADMIN pode fazer requisições
                                                 // para essas
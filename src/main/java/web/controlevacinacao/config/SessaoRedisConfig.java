@@ -0,0 +1,95 @@
+package web.controlevacinacao.config;
+
+import java.util.List;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.jackson2.SecurityJackson2Modules;
+import org.springframework.security.web.csrf.CsrfToken;
+import org.springframework.security.web.savedrequest.SavedRequest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Serializacao dos atributos da sessao guardados pelo spring-session no Redis.
+ *
+ * O Spring Session grava cada atributo em um campo separado do hash da sessao e,
+ * com spring.session.redis.save-mode=on-set-attribute, so regrava os atributos
+ * alterados na requisicao. Com flush-mode=on-save essas alteracoes vao em um unico
+ * comando ao final da requisicao.
+ *
+ * Os atributos mais comuns (contexto de seguranca, token CSRF, requisicao salva do
+ * login, textos e booleanos) sao gravados em JSON usando os modulos Jackson do
+ * Spring Security, que evitam os descritores de classe da serializacao Java. Os
+ * demais tipos (por exemplo os flash attributes das notificacoes) continuam na
+ * serializacao Java. Na leitura o formato eh reconhecido pelo cabecalho do
+ * stream Java (0xACED), entao sessoes gravadas antes desta configuracao continuam
+ * validas.
+ *
+ * O tamanho de cada atributo gravado fica em /actuator/metrics/sessao.redis.bytes
+ * (tag formato), o que permite comparar os bytes escritos por requisicao HTMX.
+ */
+@Configuration
+public class SessaoRedisConfig {
+
+    private static final List<Class<?>> TIPOS_JSON = List.of(SecurityContext.class, CsrfToken.class,
+            SavedRequest.class, String.class, Boolean.class);
+
+    @Bean("springSessionDefaultRedisSerializer")
+    public RedisSerializer<Object> serializadorSessao(MeterRegistry registry) {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.registerModules(SecurityJackson2Modules.getModules(getClass().getClassLoader()));
+        return new SerializadorSessao(new GenericJackson2JsonRedisSerializer(mapper),
+                new JdkSerializationRedisSerializer(getClass().getClassLoader()),
+                DistributionSummary.builder("sessao.redis.bytes").tag("formato", "json")
+                        .description("Bytes gravados por atributo da sessao").baseUnit("bytes").register(registry),
+                DistributionSummary.builder("sessao.redis.bytes").tag("formato", "jdk")
+                        .description("Bytes gravados por atributo da sessao").baseUnit("bytes").register(registry));
+    }
+
+    static class SerializadorSessao implements RedisSerializer<Object> {
+
+        private final RedisSerializer<Object> json;
+        private final RedisSerializer<Object> jdk;
+        private final DistributionSummary bytesJson;
+        private final DistributionSummary bytesJdk;
+
+        SerializadorSessao(RedisSerializer<Object> json, RedisSerializer<Object> jdk,
+                DistributionSummary bytesJson, DistributionSummary bytesJdk) {
+            this.json = json;
+            this.jdk = jdk;
+            this.bytesJson = bytesJson;
+            this.bytesJdk = bytesJdk;
+        }
+
+        @Override
+        public byte[] serialize(Object valor) throws SerializationException {
+            if (valor == null) {
+                return new byte[0];
+            }
+            boolean emJson = TIPOS_JSON.stream().anyMatch(tipo -> tipo.isInstance(valor));
+            byte[] bytes = emJson ? json.serialize(valor) : jdk.serialize(valor);
+            (emJson ? bytesJson : bytesJdk).record(bytes.length);
+            return bytes;
+        }
+
+        @Override
+        public Object deserialize(byte[] bytes) throws SerializationException {
+            if (bytes == null || bytes.length == 0) {
+                return null;
+            }
+            boolean streamJava = bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+            return streamJava ? jdk.deserialize(bytes) : json.deserialize(bytes);
+        }
+
+    }
+
+}
@@ -17,6 +17,7 @@ import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
@@ -24,6 +25,8 @@ import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
+import web.controlevacinacao.assistente.EstadoAplicacao;
+import web.controlevacinacao.assistente.EstadoAssistenteStore;
 import web.controlevacinacao.filter.AplicacaoFilter;
 import web.controlevacinacao.filter.LoteFilter;
 import web.controlevacinacao.filter.PessoaFilter;
@@ -34,6 +37,9 @@ import web.controlevacinacao.model.Status;
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.projection.AplicacaoResumo;
+import web.controlevacinacao.projection.LoteResumo;
+import web.controlevacinacao.projection.PessoaResumo;
 import web.controlevacinacao.repository.AplicacaoRepository;
 import web.controlevacinacao.repository.LoteRepository;
 import web.controlevacinacao.repository.PessoaRepository;
@@ -49,17 +55,20 @@ public class AplicacaoController {
     private LoteService loteService;
     private AplicacaoService aplicacaoService;
     private AplicacaoRepository aplicacaoRepository;
+    private EstadoAssistenteStore estadoAssistenteStore;
 
     public AplicacaoController(PessoaRepository pessoaRepository,
             LoteRepository loteRepository, 
             LoteService loteService,
             AplicacaoService aplicacaoService,
-            AplicacaoRepository aplicacaoRepository) {
+            AplicacaoRepository aplicacaoRepository,
+            EstadoAssistenteStore estadoAssistenteStore) {
         this.pessoaRepository = pessoaRepository;
         this.loteRepository = loteRepository;
         this.loteService = loteService;
         this.aplicacaoService = aplicacaoService;
         this.aplicacaoRepository = aplicacaoRepository;
+        this.estadoAssistenteStore = estadoAssistenteStore;
     }
 
     @HxRequest
@@ -72,10 +81,11 @@ public class AplicacaoController {
     @GetMapping("/aplicacoes/pesquisarpessoa")
     public String mostrarPessoasPesquisa(PessoaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Pessoa> pagina = pessoaRepository.pesquisar(filtro, pageable);
+        Page<PessoaResumo> pagina = pessoaRepository.pesquisar(filtro, pageable, cursor);
         logger.info("Pessoas pesquisadas: {}", pagina);
-        PageWrapper<Pessoa> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<PessoaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "aplicacoes/escolherpessoa :: tabela";
     }
@@ -86,9 +96,7 @@ public class AplicacaoController {
             Model model, HttpSession sessao) {
         Pessoa pessoa = pessoaRepository.findByCodigoAndStatus(codigo, Status.ATIVO);
         if (pessoa != null) {
-            Aplicacao aplicacao = new Aplicacao();
-            aplicacao.setPessoa(pessoa);
-            sessao.setAttribute("aplicacao", aplicacao);
+            estadoAssistenteStore.guardar(sessao, EstadoAplicacao.cadastro(pessoa.getCodigo()));
             return "aplicacoes/pesquisalote :: formulario";
         } else {
             model.addAttribute("mensagem", "Não existe uma vacina com esse código");
@@ -100,10 +108,11 @@ public class AplicacaoController {
     @GetMapping("/aplicacoes/pesquisarlote")
     public String mostrarLotesPesquisa(LoteFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Lote> pagina = loteRepository.pesquisar(filtro, pageable, true);
+        Page<LoteResumo> pagina = loteRepository.pesquisar(filtro, pageable, true, cursor);
         logger.info("Lotes pesquisados: {}", pagina);
-        PageWrapper<Lote> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<LoteResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "aplicacoes/escolherlote :: tabela";
     }
@@ -114,10 +123,18 @@ public class AplicacaoController {
             Model model, HttpSession sessao) {
         Lote lote = loteRepository.findByCodigoAndStatus(codigo, Status.ATIVO);
         if (lote != null) {
-            Aplicacao aplicacao = (Aplicacao) sessao.getAttribute("aplicacao");
+            EstadoAplicacao estado = estadoAssistenteStore.obter(sessao, EstadoAplicacao.class);
+            Pessoa pessoa = estado == null ? null
+                    : pessoaRepository.findByCodigoAndStatus(estado.codigoPessoa(), Status.ATIVO);
+            if (pessoa == null) {
+                model.addAttribute("mensagem", "A pessoa escolhida não está mais disponível. Recomece o cadastro.");
+                return "mensagem :: texto";
+            }
+            estadoAssistenteStore.guardar(sessao, estado.comLote(lote.getCodigo()));
+            Aplicacao aplicacao = new Aplicacao();
+            aplicacao.setPessoa(pessoa);
             aplicacao.setLote(lote);
             aplicacao.setData(LocalDate.now());
-            sessao.setAttribute("aplicacao", aplicacao);
             model.addAttribute("aplicacao", aplicacao);
             return "aplicacoes/cadastrar :: formulario";
         } else {
@@ -145,16 +162,28 @@ public class AplicacaoController {
             }
             return "aplicacoes/cadastrar :: formulario";
         } else {
-            Aplicacao aplicacaoSalva = (Aplicacao) sessao.getAttribute("aplicacao");
+            EstadoAplicacao estado = estadoAssistenteStore.obter(sessao, EstadoAplicacao.class);
+            Pessoa pessoa = estado == null ? null
+                    : pessoaRepository.findByCodigoAndStatus(estado.codigoPessoa(), Status.ATIVO);
+            Lote lote = estado == null || estado.codigoLote() == null ? null
+                    : loteRepository.findByCodigoAndStatus(estado.codigoLote(), Status.ATIVO);
+            if (pessoa == null || lote == null) {
+                attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(
+                        "Erro: Sessão de cadastro expirada ou pessoa/lote indisponível.",
+                        TipoNotificaoSweetAlert2.ERROR, 4000));
+                return "redirect:/aplicacoes/cadastrar";
+            }
+            Aplicacao aplicacaoSalva = new Aplicacao();
+            aplicacaoSalva.setPessoa(pessoa);
+            aplicacaoSalva.setLote(lote);
             aplicacaoSalva.setData(aplicacao.getData());
 
-            Lote lote = aplicacaoSalva.getLote();
             lote.setNroDosesAtual(lote.getNroDosesAtual() - 1);
             loteService.alterar(lote);
 
             aplicacaoService.salvar(aplicacaoSalva);
 
-            sessao.removeAttribute("aplicacao");
+            estadoAssistenteStore.remover(sessao, EstadoAplicacao.class);
 
             attributes.addFlashAttribute("notificacao",
                     new NotificacaoSweetAlert2("Aplicação cadastrada com sucesso!",
@@ -174,10 +203,11 @@ public class AplicacaoController {
     @GetMapping("/aplicacoes/pesquisar")
     public String pesquisar(AplicacaoFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Aplicacao> pagina = aplicacaoRepository.pesquisar(filtro, pageable);
+        Page<AplicacaoResumo> pagina = aplicacaoRepository.pesquisar(filtro, pageable, cursor);
         logger.info("Aplicacoes pesquisadas: {}", pagina);
-        PageWrapper<Aplicacao> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<AplicacaoResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "aplicacoes/listar :: tabela";
     }
@@ -197,7 +227,7 @@ public class AplicacaoController {
              HttpSession sessao) {
         Aplicacao aplicacao = aplicacaoRepository.buscarCompletoCodigo(codigo);
         if (aplicacao != null) {
-            sessao.setAttribute("aplicacao", aplicacao);
+            estadoAssistenteStore.guardar(sessao, EstadoAplicacao.alteracao(aplicacao.getCodigo()));
             model.addAttribute("aplicacao", aplicacao);
             return "aplicacoes/alterar :: formulario";
         } else {
@@ -221,10 +251,17 @@ public class AplicacaoController {
             }
             return "aplicacoes/alterar :: formulario";
         } else {
-            Aplicacao salva = (Aplicacao) sessao.getAttribute("aplicacao");
+            EstadoAplicacao estado = estadoAssistenteStore.obter(sessao, EstadoAplicacao.class);
+            Aplicacao salva = estado == null || estado.codigo() == null ? null
+                    : aplicacaoRepository.buscarCompletoCodigo(estado.codigo());
+            if (salva == null) {
+                redirectAttributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(
+                        "Erro: Sessão de alteração expirada.", TipoNotificaoSweetAlert2.ERROR, 4000));
+                return "redirect:/aplicacoes/abrirpesquisa";
+            }
             salva.setData(aplicacao.getData());
             aplicacaoService.alterar(salva);
-            sessao.removeAttribute("aplicacao");
+            estadoAssistenteStore.remover(sessao, EstadoAplicacao.class);
 
             redirectAttributes.addFlashAttribute("notificacao",
                     new NotificacaoSweetAlert2("Aplicação alterada com sucesso!",
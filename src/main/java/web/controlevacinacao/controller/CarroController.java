@@ -1,7 +1,11 @@
 package web.controlevacinacao.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -15,20 +19,27 @@ import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes; // <-- MANTENHA este import para o @HxLocation
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import web.controlevacinacao.filter.CarroFilter;
+import web.controlevacinacao.importacao.ResultadoImportacao;
 import web.controlevacinacao.model.Carro;
 import web.controlevacinacao.model.StatusCarro;
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.pagination.VersoesPesquisa;
+import web.controlevacinacao.projection.CarroResumo;
 import web.controlevacinacao.repository.CarroRepository;
 import web.controlevacinacao.service.CarroService;
+import web.controlevacinacao.service.ImportacaoService;
 
 @Controller
 public class CarroController {
@@ -36,11 +47,16 @@ public class CarroController {
     private static final Logger logger = LoggerFactory.getLogger(CarroController.class); // Ajuste aqui
     private final CarroRepository carroRepository;
     private final CarroService carroService;
+    private final VersoesPesquisa versoesPesquisa;
+    private final ImportacaoService importacaoService;
 
     // Construtor com injeção de dependências
-    public CarroController(CarroRepository carroRepository, CarroService carroService) {
+    public CarroController(CarroRepository carroRepository, CarroService carroService,
+            VersoesPesquisa versoesPesquisa, ImportacaoService importacaoService) {
         this.carroRepository = carroRepository;
         this.carroService = carroService;
+        this.versoesPesquisa = versoesPesquisa;
+        this.importacaoService = importacaoService;
     }
 
     @HxRequest
@@ -53,10 +69,14 @@ public class CarroController {
     @GetMapping("/carros/pesquisar")
     public String mostrarCarrosPesquisaHTMX(CarroFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
-            HttpServletRequest request) {
-        Page<Carro> pagina = carroRepository.pesquisar(filtro, pageable);
+            @RequestParam(name = "cursor", required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) {
+        if (versoesPesquisa.naoModificado(request, response, VersoesPesquisa.CARROS)) {
+            return null; // 304: o navegador ja tem esta pagina
+        }
+        Page<CarroResumo> pagina = carroRepository.pesquisar(filtro, pageable, cursor);
         logger.info("Carros pesquisados: {}", pagina);
-        PageWrapper<Carro> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<CarroResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "carros/listar :: tabela";
     }
@@ -119,6 +139,38 @@ public class CarroController {
         return "carros/cadastrar :: formulario"; // Retorna o formulário atualizado com mensagem de sucesso e limpo
     }
 
+    @HxRequest
+    @GetMapping("/carros/importar")
+    public String abrirImportacaoHTMX() {
+        return "carros/importar :: formulario";
+    }
+
+    // Cadastro em massa a partir de um CSV; as linhas com erro voltam no relatorio da importacao
+    @HxRequest
+    @PostMapping("/carros/importar")
+    public String importarHTMX(@RequestParam("arquivo") MultipartFile arquivo, Model model) {
+        if (arquivo.isEmpty()) {
+            model.addAttribute("notificacao",
+                    new NotificacaoSweetAlert2("Selecione um arquivo CSV.", TipoNotificaoSweetAlert2.WARNING, 4000));
+            return "carros/importar :: formulario";
+        }
+        try (InputStream entrada = arquivo.getInputStream()) {
+            ResultadoImportacao resultado = importacaoService.importarCarros(entrada);
+            model.addAttribute("resultado", resultado);
+            model.addAttribute("notificacao", new NotificacaoSweetAlert2(
+                    resultado.getImportadas() + " carro(s) importado(s), " + resultado.getLinhasComErro()
+                            + " linha(s) com erro.",
+                    resultado.getLinhasComErro() == 0 ? TipoNotificaoSweetAlert2.SUCCESS
+                            : TipoNotificaoSweetAlert2.WARNING,
+                    5000));
+        } catch (IOException e) {
+            logger.error("Erro ao ler o arquivo de importação de carros: {}", e.getMessage(), e);
+            model.addAttribute("notificacao", new NotificacaoSweetAlert2("Não foi possível ler o arquivo.",
+                    TipoNotificaoSweetAlert2.ERROR, 5000));
+        }
+        return "carros/importar :: formulario";
+    }
+
     @HxRequest
     @GetMapping("/carros/alterar/{codigo}")
     public String abrirAlterarHTMX(@PathVariable("codigo") Long codigo, Model model) {
@@ -165,6 +217,11 @@ public class CarroController {
         // salvar
         try {
             carroService.alterar(carro, resultado); // <-- CHAME COM BindingResult!
+        } catch (OptimisticLockingFailureException e) {
+            // Outra pessoa (ou uma movimentação) alterou o carro depois que o formulário foi aberto
+            logger.info("Carro {} alterado concorrentemente: {}", carro.getCodigo(), e.getMessage());
+            resultado.rejectValue("placa", "carro.desatualizado",
+                    "Este carro foi alterado enquanto você editava. Abra-o novamente para ver os dados atuais.");
         } catch (Exception e) {
             logger.error("Erro inesperado ao salvar carro: {}", e.getMessage(), e);
             resultado.rejectValue("placa", "erro.inesperado",
@@ -0,0 +1,101 @@
+package web.controlevacinacao.controller;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.SortDefault;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import web.controlevacinacao.filter.AplicacaoFilter;
+import web.controlevacinacao.filter.CarroFilter;
+import web.controlevacinacao.filter.LoteFilter;
+import web.controlevacinacao.filter.MotoristaFilter;
+import web.controlevacinacao.filter.MovimentacaoFilter;
+import web.controlevacinacao.filter.PessoaFilter;
+import web.controlevacinacao.filter.VacinaFilter;
+import web.controlevacinacao.relatorio.FormatoExportacao;
+import web.controlevacinacao.service.ExportacaoPesquisaService;
+
+/**
+ * Download de todos os resultados de cada pesquisa. Recebe os mesmos
+ * parametros da pesquisa paginada (filtro e sort), sem page/size/cursor, e
+ * responde com o arquivo escrito em streaming fora da thread do Tomcat.
+ */
+@Controller
+public class ExportacaoController {
+
+    private final ExportacaoPesquisaService exportacaoPesquisaService;
+
+    public ExportacaoController(ExportacaoPesquisaService exportacaoPesquisaService) {
+        this.exportacaoPesquisaService = exportacaoPesquisaService;
+    }
+
+    @GetMapping("/carros/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarCarros(CarroFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("carros", formato,
+                saida -> exportacaoPesquisaService.exportarCarros(filtro, sort, formato, saida));
+    }
+
+    @GetMapping("/motoristas/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarMotoristas(MotoristaFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("motoristas", formato,
+                saida -> exportacaoPesquisaService.exportarMotoristas(filtro, sort, formato, saida));
+    }
+
+    @GetMapping("/movimentacoes/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarMovimentacoes(MovimentacaoFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("movimentacoes", formato,
+                saida -> exportacaoPesquisaService.exportarMovimentacoes(filtro, sort, formato, saida));
+    }
+
+    @GetMapping("/pessoas/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarPessoas(PessoaFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("pessoas", formato,
+                saida -> exportacaoPesquisaService.exportarPessoas(filtro, sort, formato, saida));
+    }
+
+    @GetMapping("/vacinas/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarVacinas(VacinaFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("vacinas", formato,
+                saida -> exportacaoPesquisaService.exportarVacinas(filtro, sort, formato, saida));
+    }
+
+    @GetMapping("/lotes/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarLotes(LoteFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("lotes", formato,
+                saida -> exportacaoPesquisaService.exportarLotes(filtro, sort, formato, saida));
+    }
+
+    @GetMapping("/aplicacoes/exportar")
+    public ResponseEntity<StreamingResponseBody> exportarAplicacoes(AplicacaoFilter filtro,
+            @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Sort sort,
+            @RequestParam(name = "formato", defaultValue = "CSV") FormatoExportacao formato) {
+        return enviar("aplicacoes", formato,
+                saida -> exportacaoPesquisaService.exportarAplicacoes(filtro, sort, formato, saida));
+    }
+
+    private ResponseEntity<StreamingResponseBody> enviar(String nome, FormatoExportacao formato,
+            StreamingResponseBody corpo) {
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, formato.getTipoConteudo())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=" + nome + "." + formato.getExtensao())
+                .body(corpo);
+    }
+
+}
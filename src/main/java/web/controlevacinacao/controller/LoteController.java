@@ -15,6 +15,7 @@ import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
@@ -29,6 +30,8 @@ import web.controlevacinacao.model.Vacina;
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.projection.LoteResumo;
+import web.controlevacinacao.projection.VacinaResumo;
 import web.controlevacinacao.repository.LoteRepository;
 import web.controlevacinacao.repository.VacinaRepository;
 import web.controlevacinacao.service.LoteService;
@@ -59,10 +62,11 @@ public class LoteController {
     @GetMapping("/lotes/pesquisarvacina")
     public String mostrarVacinasPesquisa(VacinaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Vacina> pagina = vacinaRepository.pesquisar(filtro, pageable);
+        Page<VacinaResumo> pagina = vacinaRepository.pesquisar(filtro, pageable, cursor);
         logger.info("Vacinas pesquisadas: {}", pagina);
-        PageWrapper<Vacina> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<VacinaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "lotes/escolhervacina :: tabela";
     }
@@ -118,10 +122,11 @@ public class LoteController {
     @GetMapping("/lotes/pesquisar")
     public String mostrarLotesPesquisa(LoteFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Lote> pagina = loteRepository.pesquisar(filtro, pageable, false);
+        Page<LoteResumo> pagina = loteRepository.pesquisar(filtro, pageable, false, cursor);
         logger.info("Lotes pesquisados: {}", pagina);
-        PageWrapper<Lote> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<LoteResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "lotes/listar :: tabela";
     }
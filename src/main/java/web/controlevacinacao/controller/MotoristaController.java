@@ -1,8 +1,12 @@
 // web.controlevacinacao.controller/MotoristaController.java
 package web.controlevacinacao.controller;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -15,19 +19,25 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import web.controlevacinacao.filter.MotoristaFilter;
+import web.controlevacinacao.importacao.ResultadoImportacao;
 import web.controlevacinacao.model.Motorista;
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.pagination.VersoesPesquisa;
+import web.controlevacinacao.projection.MotoristaResumo;
 import web.controlevacinacao.repository.MotoristaRepository;
-import web.controlevacinacao.repository.queries.motorista.MotoristaQueries;
+import web.controlevacinacao.service.ImportacaoService;
 import web.controlevacinacao.service.MotoristaService;
 
 @Controller
@@ -37,10 +47,15 @@ public class MotoristaController {
     private static final Logger logger = LoggerFactory.getLogger(MotoristaController.class);
     private final MotoristaRepository motoristaRepository;
     private final MotoristaService motoristaService;
+    private final VersoesPesquisa versoesPesquisa;
+    private final ImportacaoService importacaoService;
 
-    public MotoristaController(MotoristaRepository motoristaRepository, MotoristaService motoristaService) {
+    public MotoristaController(MotoristaRepository motoristaRepository, MotoristaService motoristaService,
+            VersoesPesquisa versoesPesquisa, ImportacaoService importacaoService) {
         this.motoristaRepository = motoristaRepository;
         this.motoristaService = motoristaService;
+        this.versoesPesquisa = versoesPesquisa;
+        this.importacaoService = importacaoService;
     }
 
     @HxRequest
@@ -54,13 +69,17 @@ public class MotoristaController {
     @GetMapping("/pesquisar")
     public String mostrarMotoristasPesquisaHTMX(MotoristaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
-            HttpServletRequest request) {
+            @RequestParam(name = "cursor", required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) {
+        if (versoesPesquisa.naoModificado(request, response, VersoesPesquisa.MOTORISTAS)) {
+            return null; // 304: o navegador ja tem esta pagina
+        }
         logger.info("Pesquisando motoristas com filtro: {}", filtro);
 
-        Page<Motorista> pagina = ((MotoristaQueries) motoristaRepository).pesquisar(filtro, pageable);
+        Page<MotoristaResumo> pagina = motoristaRepository.pesquisar(filtro, pageable, cursor);
 
         logger.info("Motoristas encontrados na página: {}", pagina.getNumberOfElements());
-        PageWrapper<Motorista> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<MotoristaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
 
         model.addAttribute("pagina", paginaWrapper);
         model.addAttribute("filtro", filtro);
@@ -114,6 +133,37 @@ public class MotoristaController {
         return "motoristas/cadastrar :: formulario";
     }
 
+    @HxRequest
+    @GetMapping("/importar")
+    public String abrirImportacaoHTMX() {
+        return "motoristas/importar :: formulario";
+    }
+
+    @HxRequest
+    @PostMapping("/importar")
+    public String importarHTMX(@RequestParam("arquivo") MultipartFile arquivo, Model model) {
+        if (arquivo.isEmpty()) {
+            model.addAttribute("notificacao",
+                    new NotificacaoSweetAlert2("Selecione um arquivo CSV.", TipoNotificaoSweetAlert2.WARNING, 4000));
+            return "motoristas/importar :: formulario";
+        }
+        try (InputStream entrada = arquivo.getInputStream()) {
+            ResultadoImportacao resultado = importacaoService.importarMotoristas(entrada);
+            model.addAttribute("resultado", resultado);
+            model.addAttribute("notificacao", new NotificacaoSweetAlert2(
+                    resultado.getImportadas() + " motorista(s) importado(s), " + resultado.getLinhasComErro()
+                            + " linha(s) com erro.",
+                    resultado.getLinhasComErro() == 0 ? TipoNotificaoSweetAlert2.SUCCESS
+                            : TipoNotificaoSweetAlert2.WARNING,
+                    5000));
+        } catch (IOException e) {
+            logger.error("Erro ao ler o arquivo de importação de motoristas: {}", e.getMessage(), e);
+            model.addAttribute("notificacao", new NotificacaoSweetAlert2("Não foi possível ler o arquivo.",
+                    TipoNotificaoSweetAlert2.ERROR, 5000));
+        }
+        return "motoristas/importar :: formulario";
+    }
+
     @HxRequest
     @GetMapping("/alterar/{codigo}")
     public String abrirAlterarHTMX(@PathVariable("codigo") Long codigo, Model model) {
@@ -145,8 +195,14 @@ public class MotoristaController {
         }
 
         // Chamar o serviço para validação de negócio
-        // Não use try-catch AQUI. O serviço adicionará os erros ao 'resultado'.
-        motoristaService.alterar(motorista, resultado);
+        // O serviço adicionará os erros de negócio ao 'resultado'; só a versão desatualizada vira exceção
+        try {
+            motoristaService.alterar(motorista, resultado);
+        } catch (OptimisticLockingFailureException e) {
+            logger.info("Motorista {} alterado concorrentemente: {}", motorista.getCodigo(), e.getMessage());
+            resultado.rejectValue("nome", "motorista.desatualizado",
+                    "Este motorista foi alterado enquanto você editava. Abra-o novamente para ver os dados atuais.");
+        }
 
         if (resultado.hasErrors()) {
             logger.warn("Erros de validação de negócio (CNH/CPF duplicado) na alteração de motorista.");
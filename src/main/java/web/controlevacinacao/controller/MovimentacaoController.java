@@ -13,19 +13,24 @@ import org.springframework.data.web.PageableDefault;
 import org.springframework.data.web.SortDefault;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.validation.BeanPropertyBindingResult;
 import org.springframework.validation.BindingResult;
 import org.springframework.validation.FieldError;
 import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import jakarta.validation.Valid;
+import web.controlevacinacao.assistente.EstadoAssistenteStore;
+import web.controlevacinacao.assistente.EstadoMovimentacao;
 import web.controlevacinacao.filter.CarroFilter;
 import web.controlevacinacao.filter.MotoristaFilter;
 import web.controlevacinacao.filter.MovimentacaoFilter;
@@ -34,16 +39,20 @@ import web.controlevacinacao.model.Motorista;
 import web.controlevacinacao.model.Movimentacao;
 import web.controlevacinacao.model.Status; // Assumindo que Status é usado por Carro/Motorista
 import web.controlevacinacao.model.StatusCarro;
-import web.controlevacinacao.model.StatusMovimentacao; // Se Movimentacao tiver seu próprio enum de status
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.pagination.VersoesPesquisa;
+import web.controlevacinacao.projection.CarroResumo;
+import web.controlevacinacao.projection.MotoristaResumo;
+import web.controlevacinacao.projection.MovimentacaoResumo;
 import web.controlevacinacao.repository.CarroRepository;
 import web.controlevacinacao.repository.MotoristaRepository;
 import web.controlevacinacao.repository.MovimentacaoRepository;
 import web.controlevacinacao.service.CarroService;
 import web.controlevacinacao.service.MotoristaService;
 import web.controlevacinacao.service.MovimentacaoService;
+import web.controlevacinacao.service.RecursoIndisponivelException;
 
 @Controller
 public class MovimentacaoController { // Renomeado de AplicacaoController
@@ -56,6 +65,8 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
     private MovimentacaoRepository movimentacaoRepository; // Substitui AplicacaoRepository
     private CarroService carroService; // Adicionado se você precisar alterar Carro
     private MotoristaService motoristaService; // Adicionado se você precisar alterar Motorista
+    private EstadoAssistenteStore estadoAssistenteStore; // Só os códigos do carro/motorista escolhidos vão para a sessão
+    private VersoesPesquisa versoesPesquisa; // ETag da pesquisa
 
     // Construtor com injeção de dependências
     public MovimentacaoController(CarroRepository carroRepository,
@@ -63,13 +74,17 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
             MovimentacaoService movimentacaoService,
             MovimentacaoRepository movimentacaoRepository,
             CarroService carroService, // Injetar CarroService
-            MotoristaService motoristaService) { // Injetar MotoristaService
+            MotoristaService motoristaService, // Injetar MotoristaService
+            EstadoAssistenteStore estadoAssistenteStore,
+            VersoesPesquisa versoesPesquisa) {
         this.carroRepository = carroRepository;
         this.motoristaRepository = motoristaRepository;
         this.movimentacaoService = movimentacaoService;
         this.movimentacaoRepository = movimentacaoRepository;
         this.carroService = carroService;
         this.motoristaService = motoristaService;
+        this.estadoAssistenteStore = estadoAssistenteStore;
+        this.versoesPesquisa = versoesPesquisa;
     }
 
     // --- CADASTRO DE MOVIMENTAÇÃO: FLUXO DE ESCOLHA DE CARRO E MOTORISTA ---
@@ -84,10 +99,11 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
     @GetMapping("/movimentacoes/pesquisarcarro") // URL para a busca de carros
     public String mostrarCarrosPesquisa(CarroFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Carro> pagina = carroRepository.pesquisar(filtro, pageable); // Pesquisa carros
+        Page<CarroResumo> pagina = carroRepository.pesquisar(filtro, pageable, cursor); // Pesquisa carros
         logger.info("Carros pesquisados: {}", pagina);
-        PageWrapper<Carro> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<CarroResumo> paginaWrapper = new PageWrapper<>(pagina, request);
 
         model.addAttribute("pagina", paginaWrapper);
         return "movimentacoes/escolhercarro :: tabela"; // Template para exibir tabela de carros
@@ -99,12 +115,7 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
             Model model, HttpSession sessao) {
         Carro carro = carroRepository.findByCodigoAndStatusCarro(codigo, StatusCarro.ATIVO); // Buscar carro ativo
         if (carro != null) {
-
-            Movimentacao movimentacao = new Movimentacao();
-            movimentacao.setKmSaida(carro.getKmAtual());
-            movimentacao.setCarro(carro); // Define o carro na nova movimentação
-            sessao.setAttribute("movimentacao", movimentacao); // Armazena na sessão
-            // model.addAttribute("movimentacao", movimentacao);
+            estadoAssistenteStore.guardar(sessao, EstadoMovimentacao.cadastro(carro.getCodigo())); // Guarda só o código
             return "movimentacoes/pesquisamotorista :: formulario"; // Template para pesquisar motoristas
         } else {
             model.addAttribute("mensagem", "Não existe um carro com esse código ou ele não está ativo.");
@@ -116,10 +127,11 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
     @GetMapping("/movimentacoes/pesquisarmotorista") // URL para a busca de motoristas
     public String mostrarMotoristasPesquisa(MotoristaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Motorista> pagina = motoristaRepository.pesquisar(filtro, pageable); // Pesquisa motoristas
+        Page<MotoristaResumo> pagina = motoristaRepository.pesquisar(filtro, pageable, cursor); // Pesquisa motoristas
         logger.info("Motoristas pesquisados: {}", pagina);
-        PageWrapper<Motorista> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<MotoristaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "movimentacoes/escolhermotorista :: tabela"; // Template para exibir tabela de motoristas
     }
@@ -130,14 +142,17 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
             Model model, HttpSession sessao) {
         Motorista motorista = motoristaRepository.findByCodigoAndStatus(codigo, Status.ATIVO); // Buscar motorista ativo
         if (motorista != null) {
-            Movimentacao movimentacao = (Movimentacao) sessao.getAttribute("movimentacao"); // Pega movimentação da
-                                                                                            // sessão
-
-            movimentacao.setMotorista(motorista);
-            movimentacao.setDataSaida(LocalDate.now());
-            movimentacao.setHoraSaida(LocalTime.now());
-            
-            sessao.setAttribute("movimentacao", movimentacao); // Atualiza na sessão
+            EstadoMovimentacao estado = estadoAssistenteStore.obter(sessao, EstadoMovimentacao.class);
+            Carro carro = estado == null ? null
+                    : carroRepository.findByCodigoAndStatusCarro(estado.codigoCarro(), StatusCarro.ATIVO);
+            if (carro == null) {
+                model.addAttribute("mensagem", "O carro escolhido não está mais disponível. Recomece o cadastro.");
+                return "mensagem :: texto";
+            }
+            estadoAssistenteStore.guardar(sessao, estado.comMotorista(motorista.getCodigo()));
+
+            // Entidade montada apenas para exibir o formulário; não vai para a sessão
+            Movimentacao movimentacao = novaMovimentacao(carro, motorista);
             model.addAttribute("movimentacao", movimentacao);
 
             return "movimentacoes/cadastrar :: formulario"; // Template para o formulário final de cadastro da
@@ -168,19 +183,23 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
             }
             return "movimentacoes/cadastrar :: formulario"; // Retorna o formulário com erros
         } else {
-            Movimentacao movimentacaoSalva = (Movimentacao) sessao.getAttribute("movimentacao");
-            movimentacao.setDataSaida(LocalDate.now());
-            movimentacao.setHoraSaida(LocalTime.now());
-            movimentacaoSalva.setStatusMovimentacao(StatusMovimentacao.ATIVA);
-            Motorista motorista = movimentacaoSalva.getMotorista();
-            motorista.setStatus(Status.EM_MOVIMENTACAO);
-            motoristaService.alterar(motorista, resultado);
-            Carro carro = movimentacaoSalva.getCarro();
-            carro.setStatusCarro(StatusCarro.EM_USO);
-            carroService.alterar(carro, resultado);
-            movimentacaoService.salvar(movimentacaoSalva); // Salva a movimentação
-
-            sessao.removeAttribute("movimentacao"); // Limpa a sessão após o cadastro
+            EstadoMovimentacao estado = estadoAssistenteStore.obter(sessao, EstadoMovimentacao.class);
+            if (estado == null || estado.codigoMotorista() == null) {
+                attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(
+                        "Erro: Sessão de cadastro expirada. Recomece o cadastro.",
+                        TipoNotificaoSweetAlert2.ERROR, 4000));
+                return "redirect:/movimentacoes/cadastrar";
+            }
+            try {
+                // Reserva carro e motorista e salva a movimentação numa única transação
+                movimentacaoService.iniciar(estado.codigoCarro(), estado.codigoMotorista());
+            } catch (RecursoIndisponivelException e) {
+                attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(
+                        "Erro: " + e.getMessage(), TipoNotificaoSweetAlert2.ERROR, 4000));
+                return "redirect:/movimentacoes/cadastrar";
+            }
+
+            estadoAssistenteStore.remover(sessao, EstadoMovimentacao.class); // Encerra o assistente
 
             attributes.addFlashAttribute("notificacao",
                     new NotificacaoSweetAlert2("Movimentação cadastrada com sucesso!",
@@ -190,6 +209,16 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
         }
     }
 
+    private static Movimentacao novaMovimentacao(Carro carro, Motorista motorista) {
+        Movimentacao movimentacao = new Movimentacao();
+        movimentacao.setCarro(carro);
+        movimentacao.setMotorista(motorista);
+        movimentacao.setKmSaida(carro.getKmAtual());
+        movimentacao.setDataSaida(LocalDate.now());
+        movimentacao.setHoraSaida(LocalTime.now());
+        return movimentacao;
+    }
+
     // --- PESQUISA E LISTAGEM DE MOVIMENTAÇÕES ---
 
     @HxRequest
@@ -202,10 +231,16 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
     @GetMapping("/movimentacoes/pesquisar") // URL para a busca paginada
     public String pesquisar(MovimentacaoFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
-            HttpServletRequest request) {
-        Page<Movimentacao> pagina = movimentacaoRepository.pesquisar(filtro, pageable); // Executa a pesquisa
+            @RequestParam(name = "cursor", required = false) String cursor,
+            HttpServletRequest request, HttpServletResponse response) {
+        // A listagem mostra placa/modelo do carro e nome/CNH do motorista
+        if (versoesPesquisa.naoModificado(request, response, VersoesPesquisa.MOVIMENTACOES,
+                VersoesPesquisa.CARROS, VersoesPesquisa.MOTORISTAS)) {
+            return null; // 304: o navegador ja tem esta pagina
+        }
+        Page<MovimentacaoResumo> pagina = movimentacaoRepository.pesquisar(filtro, pageable, cursor); // Executa a pesquisa
         logger.info("Movimentações pesquisadas: {}", pagina);
-        PageWrapper<Movimentacao> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<MovimentacaoResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "movimentacoes/listar :: tabela"; // Template para listar resultados
     }
@@ -228,10 +263,10 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
     @GetMapping("/movimentacoes/alterar/{codigo}") // URL para abrir formulário de alteração
     public String abrirAlterar(@PathVariable("codigo") Long codigo, Model model,
             HttpSession sessao) {
-        Movimentacao movimentacao = movimentacaoRepository.buscarCompletoCodigo(codigo); // Busca a movimentação
-                                                                                         // completa
+        // Finalizadas também podem ser corrigidas; o uso diário da frota acompanha a correção
+        Movimentacao movimentacao = movimentacaoRepository.findCompletoByCodigo(codigo);
         if (movimentacao != null) {
-            sessao.setAttribute("movimentacao", movimentacao); // Armazena na sessão
+            estadoAssistenteStore.guardar(sessao, EstadoMovimentacao.alteracao(movimentacao.getCodigo()));
             model.addAttribute("movimentacao", movimentacao);
             return "movimentacoes/alterar :: formulario"; // Template para formulário de alteração
         } else {
@@ -254,7 +289,9 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
             }
             return "movimentacoes/alterar :: formulario"; // Retorna o formulário com erros
         } else {
-            Movimentacao salva = (Movimentacao) sessao.getAttribute("movimentacao"); // Pega da sessão
+            EstadoMovimentacao estado = estadoAssistenteStore.obter(sessao, EstadoMovimentacao.class);
+            Movimentacao salva = estado == null || estado.codigo() == null ? null
+                    : movimentacaoRepository.findCompletoByCodigo(estado.codigo()); // Recarrega pelo código
             if (salva == null) {
                 redirectAttributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(
                         "Erro: Sessão de alteração expirada.", TipoNotificaoSweetAlert2.ERROR, 4000));
@@ -265,10 +302,14 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
             // no formulário de alteração.
             salva.setDataSaida(movimentacao.getDataSaida());
             salva.setDataRetorno(movimentacao.getDataRetorno());
-            // Atualize outros campos se necessário
+            salva.setKmSaida(movimentacao.getKmSaida());
+            salva.setKmRetorno(movimentacao.getKmRetorno());
 
-            movimentacaoService.alterar(salva); // Salva as alterações
-            sessao.removeAttribute("movimentacao"); // Limpa a sessão
+            movimentacaoService.alterar(salva, resultado); // Salva as alterações
+            if (resultado.hasErrors()) {
+                return "movimentacoes/alterar :: formulario";
+            }
+            estadoAssistenteStore.remover(sessao, EstadoMovimentacao.class); // Encerra o assistente
 
             redirectAttributes.addFlashAttribute("notificacao",
                     new NotificacaoSweetAlert2("Movimentação alterada com sucesso!",
@@ -278,27 +319,49 @@ public class MovimentacaoController { // Renomeado de AplicacaoController
         }
     }
 
-    // --- MÉTODOS ADICIONAIS (Se precisar de um para "finalizar" movimentação, por
-    // exemplo) ---
-  
+    // --- FINALIZAÇÃO DE MOVIMENTAÇÃO ---
+
+    // Abre o formulário com a quilometragem de retorno, sugerindo o km atual do carro
     @HxRequest
-    @HxLocation(path = "/mensagem", target = "#main", swap = "outerHTML")
     @GetMapping("/movimentacoes/finalizar/{codigo}")
-    public String finalizarMovimentacao(@PathVariable("codigo") Long codigo, RedirectAttributes attributes) {
+    public String abrirFinalizar(@PathVariable("codigo") Long codigo, Model model) {
+        Movimentacao movimentacao = movimentacaoRepository.buscarCompletoCodigo(codigo);
+        if (movimentacao == null) {
+            model.addAttribute("mensagem", "Não existe uma movimentação ativa com esse código.");
+            return "mensagem :: texto";
+        }
+        movimentacao.setKmRetorno(movimentacao.getCarro().getKmAtual());
+        model.addAttribute("movimentacao", movimentacao);
+        return "movimentacoes/finalizar :: formulario";
+    }
+
+    @HxRequest
+    @PostMapping("/movimentacoes/finalizar")
+    public String finalizarMovimentacao(@RequestParam("codigo") Long codigo,
+            @RequestParam(name = "kmRetorno", required = false) Long kmRetorno, Model model,
+            RedirectAttributes attributes) {
         try {
             Movimentacao movimentacao = movimentacaoRepository.buscarCompletoCodigo(codigo);
             if (movimentacao == null) {
                 attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2("Movimentação não encontrada!",
                         TipoNotificaoSweetAlert2.ERROR, 4000));
             } else {
-                movimentacao.setStatusMovimentacao(StatusMovimentacao.FINALIZADA); // Altere para o status de finalizada
-                movimentacao.setDataRetorno(LocalDate.now()); // Defina a data/hora de retorno
-                movimentacao.setHoraRetorno(LocalTime.now());
-                movimentacaoService.alterar(movimentacao); // Salva a alteração de status e data de retorno
+                movimentacao.setKmRetorno(kmRetorno); // Volta ao formulário se for recusado
+                BindingResult resultado = new BeanPropertyBindingResult(movimentacao, "movimentacao");
+                // Status, data/hora e km de retorno, km do carro e uso diário da frota
+                movimentacaoService.finalizar(movimentacao, kmRetorno, resultado);
+                if (resultado.hasErrors()) {
+                    model.addAttribute("movimentacao", movimentacao);
+                    model.addAttribute(BindingResult.MODEL_KEY_PREFIX + "movimentacao", resultado);
+                    return "movimentacoes/finalizar :: formulario";
+                }
 
                 attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(
                         "Movimentação finalizada com sucesso!", TipoNotificaoSweetAlert2.SUCCESS, 4000));
             }
+        } catch (RecursoIndisponivelException e) {
+            attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2(e.getMessage(),
+                    TipoNotificaoSweetAlert2.WARNING, 4000));
         } catch (Exception e) {
             logger.error("Erro ao finalizar movimentação {}: {}", codigo, e.getMessage());
             attributes.addFlashAttribute("notificacao", new NotificacaoSweetAlert2("Erro ao finalizar movimentação!",
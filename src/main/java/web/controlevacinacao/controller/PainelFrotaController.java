@@ -0,0 +1,65 @@
+package web.controlevacinacao.controller;
+
+import java.security.Principal;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
+import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.model.StatusMovimentacao;
+import web.controlevacinacao.painel.PainelFrota;
+import web.controlevacinacao.repository.CarroRepository;
+import web.controlevacinacao.repository.MovimentacaoRepository;
+
+/**
+ * Painel com a situacao atual da frota. A pagina traz o estado inicial e depois
+ * eh atualizada pelos eventos recebidos em /painel/frota/eventos (SSE).
+ */
+@Controller
+public class PainelFrotaController {
+
+    private CarroRepository carroRepository;
+    private MovimentacaoRepository movimentacaoRepository;
+    private PainelFrota painelFrota;
+
+    public PainelFrotaController(CarroRepository carroRepository, MovimentacaoRepository movimentacaoRepository,
+            PainelFrota painelFrota) {
+        this.carroRepository = carroRepository;
+        this.movimentacaoRepository = movimentacaoRepository;
+        this.painelFrota = painelFrota;
+    }
+
+    @HxRequest
+    @GetMapping("/painel/frota")
+    public String abrirPainel(Model model) {
+        Map<Long, Movimentacao> ativas = movimentacaoRepository.findByStatusMovimentacao(StatusMovimentacao.ATIVA)
+                .stream()
+                .collect(Collectors.toMap(m -> m.getCarro().getCodigo(), Function.identity(), (a, b) -> a));
+        model.addAttribute("carros", carroRepository.findAll(Sort.by("placa")));
+        model.addAttribute("ativas", ativas);
+        return "painel/frota :: painel";
+    }
+
+    // Acima do limite responde 429; o EventSource nao reconecta depois de um erro HTTP
+    @ResponseBody
+    @GetMapping(path = "/painel/frota/eventos", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> eventos(Principal usuario) {
+        SseEmitter conexao = painelFrota.conectar(usuario.getName());
+        if (conexao == null) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).build();
+        }
+        return ResponseEntity.ok(conexao);
+    }
+
+}
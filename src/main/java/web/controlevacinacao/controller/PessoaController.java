@@ -15,6 +15,7 @@ import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
@@ -27,6 +28,7 @@ import web.controlevacinacao.model.Status;
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.projection.PessoaResumo;
 import web.controlevacinacao.repository.PessoaRepository;
 import web.controlevacinacao.service.PessoaService;
 
@@ -52,10 +54,11 @@ public class PessoaController {
     @GetMapping("/pessoas/pesquisar")
     public String mostrarPessoasPesquisaHTMX(PessoaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Pessoa> pagina = pessoaRepository.pesquisar(filtro, pageable);
+        Page<PessoaResumo> pagina = pessoaRepository.pesquisar(filtro, pageable, cursor);
         logger.info("Pessoas pesquisadas: {}", pagina);
-        PageWrapper<Pessoa> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<PessoaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "pessoas/listar :: tabela";
     }
@@ -1,14 +1,33 @@
 package web.controlevacinacao.controller;
 
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxRequest;
+import net.sf.jasperreports.engine.JRException;
+import web.controlevacinacao.filter.RelatorioMovimentacaoFilter;
+import web.controlevacinacao.relatorio.AgrupamentoMovimentacao;
+import web.controlevacinacao.relatorio.StatusTrabalhoRelatorio;
+import web.controlevacinacao.relatorio.TipoRelatorio;
+import web.controlevacinacao.relatorio.TrabalhoRelatorio;
+import web.controlevacinacao.service.RelatorioAssincronoService;
+import web.controlevacinacao.service.RelatorioMovimentacaoService;
 import web.controlevacinacao.service.RelatorioService;
 
 @Controller
@@ -19,32 +38,100 @@ public class RelatorioController {
     @Autowired
     private RelatorioService relatorioService;
 
+    @Autowired
+    private RelatorioAssincronoService relatorioAssincronoService;
+
+    @Autowired
+    private RelatorioMovimentacaoService relatorioMovimentacaoService;
+
     @GetMapping("/relatorios/vacinas")
-    public ResponseEntity<byte[]> gerarRelatorioSimplesTodasVacinas() {
+    public ResponseEntity<StreamingResponseBody> gerarRelatorioSimplesTodasVacinas() {
         logger.debug("Gerando relatório simples de todas as vacinas");
+        return enviarPdf(TipoRelatorio.VACINAS);
+    }
 
-        byte[] relatorio = relatorioService.gerarRelatorioSimplesTodasVacinas();
+    @GetMapping("/relatorios/vacinaslotes")
+    public ResponseEntity<StreamingResponseBody> gerarRelatorioComplexoTodasVacinasLotes() {
+        logger.debug("Gerando relatório complexo de todas as vacinas com lotes");
+        return enviarPdf(TipoRelatorio.VACINAS_LOTES);
+    }
 
-        logger.debug("Relatório simples de todas as vacinas gerado");
-        logger.debug("Retornando o relatório simples de todas as vacinas");
+    /**
+     * O PDF eh escrito direto na resposta, fora da thread do Tomcat (requisicao
+     * assincrona do Spring MVC). Se o preenchimento falhar depois de enviado o
+     * cabecalho, a conexao eh encerrada e o download fica incompleto.
+     */
+    private ResponseEntity<StreamingResponseBody> enviarPdf(TipoRelatorio tipo) {
+        StreamingResponseBody corpo = saida -> {
+            try {
+                relatorioService.gerarPdf(tipo, Map.of(), saida);
+                logger.debug("Relatório {} enviado", tipo);
+            } catch (JRException | SQLException e) {
+                logger.error("Problemas na geração do relatório {}: {}", tipo, e.toString());
+                throw new IOException(e);
+            }
+        };
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE)
-                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=VacinasSimples.pdf")
-                .body(relatorio);
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + tipo.getNomeArquivo())
+                .body(corpo);
     }
 
-    @GetMapping("/relatorios/vacinaslotes")
-	public ResponseEntity<byte[]> gerarRelatorioComplexoTodasVacinasLotes() {
-		logger.debug("Gerando relatório complexo de todas as vacinas com lotes");
-		
-		byte[] relatorio = relatorioService.gerarRelatorioComplexoTodasVacinasLotes();
-		
-		logger.debug("Relatório complexo de todas as vacinas com lotes");
-		logger.debug("Retornando o relatório complexo de todas as vacinas com lotes");
-		return ResponseEntity.ok()
-				.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE)
-				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=VacinasComLotes.pdf")
-				.body(relatorio);
-	}
+    @HxRequest
+    @GetMapping("/relatorios/solicitar/{identificador}")
+    public String solicitar(@PathVariable("identificador") String identificador, Model model) {
+        TipoRelatorio tipo = TipoRelatorio.doIdentificador(identificador);
+        if (tipo == null) {
+            model.addAttribute("mensagem", "Relatório desconhecido.");
+            return "mensagem :: texto";
+        }
+        TrabalhoRelatorio trabalho = relatorioAssincronoService.solicitar(tipo, Map.of());
+        logger.debug("Relatório solicitado: {}", trabalho);
+        model.addAttribute("trabalho", trabalho);
+        return "relatorios/trabalho :: status";
+    }
+
+    @HxRequest
+    @GetMapping("/relatorios/trabalhos/{id}")
+    public String acompanhar(@PathVariable("id") String id, Model model) {
+        TrabalhoRelatorio trabalho = relatorioAssincronoService.consultar(id);
+        if (trabalho == null) {
+            model.addAttribute("mensagem", "Relatório não encontrado ou expirado. Solicite-o novamente.");
+            return "mensagem :: texto";
+        }
+        model.addAttribute("trabalho", trabalho);
+        return "relatorios/trabalho :: status";
+    }
+
+    @GetMapping("/relatorios/trabalhos/{id}/arquivo")
+    public ResponseEntity<Resource> baixar(@PathVariable("id") String id) {
+        TrabalhoRelatorio trabalho = relatorioAssincronoService.consultar(id);
+        if (trabalho == null || trabalho.getStatus() != StatusTrabalhoRelatorio.CONCLUIDO) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE)
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=" + trabalho.getTipo().getNomeArquivo())
+                .body(new FileSystemResource(trabalho.getArquivo()));
+    }
+
+    @HxRequest
+    @GetMapping("/relatorios/movimentacoes")
+    public String abrirRelatorioMovimentacoes(Model model) {
+        model.addAttribute("agrupamentos", AgrupamentoMovimentacao.values());
+        return "relatorios/movimentacoes :: formulario";
+    }
+
+    @GetMapping("/relatorios/movimentacoes/csv")
+    public ResponseEntity<StreamingResponseBody> gerarRelatorioMovimentacoes(RelatorioMovimentacaoFilter filtro,
+            @RequestParam(name = "agrupamento", defaultValue = "HISTORICO") AgrupamentoMovimentacao agrupamento) {
+        StreamingResponseBody corpo = saida -> relatorioMovimentacaoService.exportarCsv(filtro, agrupamento, saida);
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_TYPE, "text/csv;charset=UTF-8")
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=movimentacoes-" + agrupamento.name().toLowerCase() + ".csv")
+                .body(corpo);
+    }
 
 }
@@ -0,0 +1,84 @@
+package web.controlevacinacao.controller;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+import web.controlevacinacao.projection.UsoFrotaCarroDia;
+import web.controlevacinacao.projection.UsoFrotaDia;
+import web.controlevacinacao.projection.UsoFrotaMotorista;
+import web.controlevacinacao.service.UsoFrotaService;
+
+/**
+ * Consultas em JSON do uso diario da frota, para os paineis. As datas sao ISO
+ * (yyyy-MM-dd); sem intervalo informado, vale os ultimos 30 dias.
+ */
+@Controller
+public class UsoFrotaController {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsoFrotaController.class);
+
+    private UsoFrotaService usoFrotaService;
+
+    public UsoFrotaController(UsoFrotaService usoFrotaService) {
+        this.usoFrotaService = usoFrotaService;
+    }
+
+    @ResponseBody
+    @GetMapping("/relatorios/uso-frota/dias")
+    public List<UsoFrotaDia> usoPorDia(
+            @RequestParam(name = "inicio", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam(name = "fim", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+        return usoFrotaService.usoPorDia(inicio(inicio, fim), fim(fim));
+    }
+
+    @ResponseBody
+    @GetMapping("/relatorios/uso-frota/carros")
+    public List<UsoFrotaCarroDia> usoPorCarro(
+            @RequestParam(name = "inicio", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam(name = "fim", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+        return usoFrotaService.usoPorCarro(inicio(inicio, fim), fim(fim));
+    }
+
+    @ResponseBody
+    @GetMapping("/relatorios/uso-frota/motoristas")
+    public List<UsoFrotaMotorista> usoPorMotorista(
+            @RequestParam(name = "inicio", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam(name = "fim", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+        return usoFrotaService.usoPorMotorista(inicio(inicio, fim), fim(fim));
+    }
+
+    /**
+     * Recalcula o consolidado a partir das movimentacoes. Sem intervalo, refaz
+     * todo o historico. A resposta sai imediatamente; o trabalho segue em
+     * segundo plano.
+     */
+    @PostMapping("/relatorios/uso-frota/reconstruir")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @ResponseBody
+    public void reconstruir(
+            @RequestParam(name = "inicio", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate inicio,
+            @RequestParam(name = "fim", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fim) {
+        logger.info("Reconstrução do uso da frota solicitada de {} a {}", inicio, fim);
+        usoFrotaService.reconstruirEmSegundoPlano(inicio, fim);
+    }
+
+    private static LocalDate fim(LocalDate fim) {
+        return fim != null ? fim : LocalDate.now();
+    }
+
+    private static LocalDate inicio(LocalDate inicio, LocalDate fim) {
+        return inicio != null ? inicio : fim(fim).minusDays(29);
+    }
+
+}
@@ -63,7 +63,12 @@ public class UsuarioController {
 		} else {
 			usuario.setAtivo(true);
 			usuario.setSenha(passwordEncoder.encode(usuario.getSenha()));
-			cadastroUsuarioService.salvar(usuario);
+			cadastroUsuarioService.salvar(usuario, resultado);
+			if (resultado.hasErrors()) {
+				usuario.setSenha(null); // Nao devolve o hash para o formulario
+				model.addAttribute("todosPapeis", papelRepository.findAll());
+				return "usuarios/cadastrar :: formulario";
+			}
 			redirectAttributes.addAttribute("mensagem", "Cadastro de usuário efetuado com sucesso.");
 			return "redirect:/usuarios/cadastrosucesso";
 		}
@@ -15,6 +15,7 @@ import org.springframework.validation.ObjectError;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import io.github.wimdeblauwe.htmx.spring.boot.mvc.HxLocation;
@@ -27,6 +28,7 @@ import web.controlevacinacao.model.Vacina;
 import web.controlevacinacao.notificacao.NotificacaoSweetAlert2;
 import web.controlevacinacao.notificacao.TipoNotificaoSweetAlert2;
 import web.controlevacinacao.pagination.PageWrapper;
+import web.controlevacinacao.projection.VacinaResumo;
 import web.controlevacinacao.repository.VacinaRepository;
 import web.controlevacinacao.service.VacinaService;
 
@@ -65,24 +67,24 @@ public class VacinaController {
     @GetMapping("/vacinas/pesquisar")
     public String mostrarVacinasPesquisa(VacinaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Vacina> pagina = vacinaRepository.pesquisar(filtro, pageable);
+        Page<VacinaResumo> pagina = vacinaRepository.pesquisar(filtro, pageable, cursor);
         logger.trace("Vacinas pesquisadas: {}", pagina.getContent());
-        PageWrapper<Vacina> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<VacinaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "vacinas/listar";
     }
 
     @HxRequest
     @GetMapping("/vacinas/pesquisar")
-    // @Cacheable(cacheNames = "vacinas", key = "{#root.methodName, #filtro, #pageable}")
-    // @Cacheable(cacheNames = "vacinas", key = "T(java.util.Objects).hash(#root.methodName, #filtro, #pageable.pageNumber, #pageable.pageSize, #pageable.sort)")
     public String mostrarVacinasPesquisaHTMX(VacinaFilter filtro, Model model,
             @PageableDefault(size = 8) @SortDefault(sort = "codigo", direction = Sort.Direction.ASC) Pageable pageable,
+            @RequestParam(name = "cursor", required = false) String cursor,
             HttpServletRequest request) {
-        Page<Vacina> pagina = vacinaRepository.pesquisar(filtro, pageable);
+        Page<VacinaResumo> pagina = vacinaRepository.pesquisar(filtro, pageable, cursor);
         logger.info("Vacinas pesquisadas: {}", pagina);
-        PageWrapper<Vacina> paginaWrapper = new PageWrapper<>(pagina, request);
+        PageWrapper<VacinaResumo> paginaWrapper = new PageWrapper<>(pagina, request);
         model.addAttribute("pagina", paginaWrapper);
         return "vacinas/listar :: tabela";
     }
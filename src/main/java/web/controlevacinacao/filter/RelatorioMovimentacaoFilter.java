@@ -0,0 +1,48 @@
+package web.controlevacinacao.filter;
+
+import java.time.LocalDate;
+
+public class RelatorioMovimentacaoFilter {
+    private LocalDate dataInicial;
+    private LocalDate dataFinal;
+    private String placaCarro;
+    private String cnhMotorista;
+
+    public LocalDate getDataInicial() {
+        return dataInicial;
+    }
+
+    public void setDataInicial(LocalDate dataInicial) {
+        this.dataInicial = dataInicial;
+    }
+
+    public LocalDate getDataFinal() {
+        return dataFinal;
+    }
+
+    public void setDataFinal(LocalDate dataFinal) {
+        this.dataFinal = dataFinal;
+    }
+
+    public String getPlacaCarro() {
+        return placaCarro;
+    }
+
+    public void setPlacaCarro(String placaCarro) {
+        this.placaCarro = placaCarro;
+    }
+
+    public String getCnhMotorista() {
+        return cnhMotorista;
+    }
+
+    public void setCnhMotorista(String cnhMotorista) {
+        this.cnhMotorista = cnhMotorista;
+    }
+
+    @Override
+    public String toString() {
+        return "RelatorioMovimentacaoFilter [dataInicial=" + dataInicial + ", dataFinal=" + dataFinal
+                + ", placaCarro=" + placaCarro + ", cnhMotorista=" + cnhMotorista + "]";
+    }
+}
@@ -0,0 +1,8 @@
+package web.controlevacinacao.importacao;
+
+/**
+ * Problema encontrado em uma linha do arquivo importado. A linha nao foi
+ * gravada; as demais seguem normalmente.
+ */
+public record ErroImportacao(long linha, String campo, String mensagem) {
+}
@@ -0,0 +1,162 @@
+package web.controlevacinacao.importacao;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Le um CSV registro a registro, sem carregar o arquivo inteiro, no mesmo
+ * formato que o EscritorCsv gera e que o Excel em portugues salva: separador
+ * ";", UTF-8 com ou sem BOM e campos entre aspas quando necessario. Arquivos
+ * separados por "," tambem sao aceitos; o separador eh deduzido do cabecalho.
+ *
+ * A primeira linha eh o cabecalho. As colunas sao encontradas pelo nome, sem
+ * diferenciar maiusculas, acentos, espacos ou "_" (km_atual, KM Atual e kmAtual
+ * sao a mesma coluna), entao a ordem no arquivo nao importa.
+ */
+public class LeitorCsv implements AutoCloseable {
+
+    private final BufferedReader entrada;
+    private final Map<String, Integer> colunas = new HashMap<>();
+    // Nome pedido por quem le -> nome normalizado, para nao normalizar a cada registro
+    private final Map<String, String> nomes = new HashMap<>();
+    private char separador = ';';
+    private long linha;
+    private long linhaRegistro;
+    private List<String> atual;
+
+    public LeitorCsv(InputStream entrada) throws IOException {
+        this.entrada = new BufferedReader(new InputStreamReader(entrada, StandardCharsets.UTF_8));
+        this.entrada.mark(1);
+        if (this.entrada.read() != '\uFEFF') {
+            this.entrada.reset();
+        }
+        String cabecalho = lerLinha();
+        if (cabecalho != null) {
+            if (cabecalho.indexOf(';') < 0 && cabecalho.indexOf(',') >= 0) {
+                separador = ',';
+            }
+            List<String> nomes = dividir(cabecalho);
+            for (int i = 0; i < nomes.size(); i++) {
+                colunas.put(normalizar(nomes.get(i)), i);
+            }
+        }
+    }
+
+    public boolean temColuna(String nome) {
+        return colunas.containsKey(nomes.computeIfAbsent(nome, LeitorCsv::normalizar));
+    }
+
+    /**
+     * Avanca para o proximo registro, pulando linhas em branco.
+     *
+     * @return false no fim do arquivo
+     */
+    public boolean proximo() throws IOException {
+        String texto;
+        do {
+            texto = lerLinha();
+            if (texto == null) {
+                atual = null;
+                return false;
+            }
+        } while (texto.isBlank());
+        linhaRegistro = linha;
+        // Um campo entre aspas pode conter quebras de linha
+        while (aspasAbertas(texto)) {
+            String continuacao = lerLinha();
+            if (continuacao == null) {
+                break;
+            }
+            texto = texto + "\n" + continuacao;
+        }
+        atual = dividir(texto);
+        return true;
+    }
+
+    /**
+     * @return o valor aparado da coluna no registro atual, ou null se a coluna
+     *         nao existir ou estiver vazia
+     */
+    public String valor(String coluna) {
+        Integer indice = colunas.get(nomes.computeIfAbsent(coluna, LeitorCsv::normalizar));
+        if (indice == null || indice >= atual.size()) {
+            return null;
+        }
+        String valor = atual.get(indice).trim();
+        return valor.isEmpty() ? null : valor;
+    }
+
+    /**
+     * Numero da linha do arquivo em que o registro atual comeca, contando o
+     * cabecalho como linha 1, como o Excel mostra.
+     */
+    public long getLinha() {
+        return linhaRegistro;
+    }
+
+    @Override
+    public void close() throws IOException {
+        entrada.close();
+    }
+
+    private String lerLinha() throws IOException {
+        String texto = entrada.readLine();
+        if (texto != null) {
+            linha++;
+        }
+        return texto;
+    }
+
+    private static boolean aspasAbertas(String texto) {
+        boolean abertas = false;
+        for (int i = 0; i < texto.length(); i++) {
+            if (texto.charAt(i) == '"') {
+                abertas = !abertas;
+            }
+        }
+        return abertas;
+    }
+
+    private List<String> dividir(String texto) {
+        List<String> campos = new ArrayList<>();
+        StringBuilder campo = new StringBuilder();
+        boolean entreAspas = false;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (entreAspas) {
+                if (c == '"' && i + 1 < texto.length() && texto.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else if (c == '"') {
+                    entreAspas = false;
+                } else {
+                    campo.append(c);
+                }
+            } else if (c == '"') {
+                entreAspas = true;
+            } else if (c == separador) {
+                campos.add(campo.toString());
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        campos.add(campo.toString());
+        return campos;
+    }
+
+    private static String normalizar(String nome) {
+        String semAcentos = Normalizer.normalize(nome, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return semAcentos.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9]", "");
+    }
+
+}
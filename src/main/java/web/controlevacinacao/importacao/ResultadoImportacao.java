@@ -0,0 +1,78 @@
+package web.controlevacinacao.importacao;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Resumo de uma importacao: quantas linhas foram lidas e gravadas e os erros
+ * por linha. Apenas os primeiros erros sao guardados, para que um arquivo
+ * inteiro no formato errado nao ocupe memoria com uma mensagem por linha; os
+ * demais entram so na contagem.
+ */
+public class ResultadoImportacao {
+
+    private final int limiteErros;
+    private final List<ErroImportacao> erros = new ArrayList<>();
+    private long lidas;
+    private long importadas;
+    private long linhasComErro;
+    private long totalErros;
+    private long ultimaLinhaComErro = -1;
+    private Duration duracao = Duration.ZERO;
+
+    public ResultadoImportacao(int limiteErros) {
+        this.limiteErros = limiteErros;
+    }
+
+    public void contarLida() {
+        lidas++;
+    }
+
+    public void contarImportadas(long quantidade) {
+        importadas += quantidade;
+    }
+
+    public void adicionarErro(long linha, String campo, String mensagem) {
+        if (linha != ultimaLinhaComErro) {
+            linhasComErro++;
+            ultimaLinhaComErro = linha;
+        }
+        totalErros++;
+        if (erros.size() < limiteErros) {
+            erros.add(new ErroImportacao(linha, campo, mensagem));
+        }
+    }
+
+    public long getLidas() {
+        return lidas;
+    }
+
+    public long getImportadas() {
+        return importadas;
+    }
+
+    public long getLinhasComErro() {
+        return linhasComErro;
+    }
+
+    // Os erros de unicidade de um lote chegam depois dos de validacao das linhas seguintes
+    public List<ErroImportacao> getErros() {
+        erros.sort(Comparator.comparingLong(ErroImportacao::linha));
+        return erros;
+    }
+
+    public boolean isErrosOmitidos() {
+        return totalErros > erros.size();
+    }
+
+    public Duration getDuracao() {
+        return duracao;
+    }
+
+    public void setDuracao(Duration duracao) {
+        this.duracao = duracao;
+    }
+
+}
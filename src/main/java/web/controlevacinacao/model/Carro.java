@@ -1,24 +1,38 @@
 package web.controlevacinacao.model;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.Size;
+import web.controlevacinacao.unicidade.OuvinteUnicidade;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "carro")
+@EntityListeners(OuvinteUnicidade.class) // Mantem o indice de placas em dia
 public class Carro {
 
+    // Sequencia em vez de IDENTITY: com IDENTITY o Hibernate precisa executar cada INSERT
+    // na hora para saber o codigo e nao consegue agrupar os INSERTs em batch
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @SequenceGenerator(name = "gerador7", sequenceName = "carro_codigo_seq", allocationSize = 50)
+    @GeneratedValue(generator = "gerador7", strategy = GenerationType.SEQUENCE)
     private Long codigo;
 
     @NotBlank(message = "A placa é obrigatória")
@@ -46,6 +60,11 @@ public class Carro {
     @Column(nullable = false, length = 20)
     private StatusCarro statusCarro = StatusCarro.ATIVO; // Status inicial
 
+    // Controle de concorrencia otimista: alteracoes feitas sobre uma versao antiga sao recusadas
+    @Version
+    @Column(nullable = false)
+    private Long versao;
+
     // Construtores
     public Carro() {
     }
@@ -99,6 +118,14 @@ public class Carro {
         this.statusCarro = statusCarro;
     }
 
+    public Long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
+
       public boolean isAtivo() {
         return StatusCarro.ATIVO.equals(this.statusCarro);
     }
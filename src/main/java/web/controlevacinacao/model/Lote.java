@@ -27,7 +27,7 @@ public class Lote implements Serializable {
 	private static final long serialVersionUID = -3935828642122652510L;
 
 	@Id
-	@SequenceGenerator(name = "gerador4", sequenceName = "lote_codigo_seq", allocationSize = 1)
+	@SequenceGenerator(name = "gerador4", sequenceName = "lote_codigo_seq", allocationSize = 50) // Blocos pooled-lo (V19)
 	@GeneratedValue(generator = "gerador4", strategy = GenerationType.SEQUENCE)
 	private Long codigo;
 	@NotNull(message = "A validade é obrigatória")
@@ -26,7 +26,7 @@ import jakarta.validation.constraints.NotNull;
 public class Movimentacao implements Serializable {
 
     @Id
-    @SequenceGenerator(name="gerador6", sequenceName="movimentacao_codigo_seq", allocationSize=1)
+    @SequenceGenerator(name="gerador6", sequenceName="movimentacao_codigo_seq", allocationSize=50) // Blocos pooled-lo (V19)
     @GeneratedValue(generator="gerador6", strategy=GenerationType.SEQUENCE)
     private Long codigo;
 
@@ -173,6 +173,15 @@ public class Movimentacao implements Serializable {
         this.statusMovimentacao = statusMovimentacao;
     }
 
+    /**
+     * Viagem que conta no uso diario da frota: finalizada com a quilometragem de
+     * retorno. A movimentacao cancelada (remover) tambem fica FINALIZADA, mas sem
+     * km de retorno. O recalculo em UsoFrotaRepository usa a mesma regra.
+     */
+    public boolean isViagemConcluida() {
+        return statusMovimentacao == StatusMovimentacao.FINALIZADA && kmRetorno != null;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -4,11 +4,16 @@ import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.Objects;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.Column;
 import jakarta.persistence.DiscriminatorColumn; // Adicione esta importação
 import jakarta.persistence.DiscriminatorType; // Adicione esta importação
 import jakarta.persistence.DiscriminatorValue;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
@@ -18,12 +23,18 @@ import jakarta.persistence.Inheritance; // Adicione esta importação
 import jakarta.persistence.InheritanceType; // Adicione esta importação
 import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Pattern;
+import web.controlevacinacao.unicidade.OuvinteUnicidade;
 
 @Entity
+// O cache fica na raiz da heranca, entao vale tambem para Motorista
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 @Table(name = "pessoa")
+@EntityListeners(OuvinteUnicidade.class) // Mantem os indices de CPF e CNH em dia
 @Inheritance(strategy = InheritanceType.SINGLE_TABLE) // **NOVO: Define a estratégia de herança**
 @DiscriminatorValue("PESSOA")
 @DiscriminatorColumn(name = "tipo_entidade", // **NOVO: Coluna para identificar o tipo de entidade**
@@ -33,7 +44,8 @@ public class Pessoa implements Serializable {
     private static final long serialVersionUID = 1L;
 
     @Id
-    @SequenceGenerator(name="gerador2", sequenceName="pessoa_codigo_seq", allocationSize=1)
+    // A sequencia avanca de 50 em 50 (V19) e o Hibernate distribui os codigos do bloco sem voltar ao banco
+    @SequenceGenerator(name="gerador2", sequenceName="pessoa_codigo_seq", allocationSize=50)
     @GeneratedValue(generator="gerador2", strategy=GenerationType.SEQUENCE)
     private Long codigo;
 
@@ -53,6 +65,11 @@ public class Pessoa implements Serializable {
     @Enumerated(EnumType.STRING)
     private Status status = Status.ATIVO;
 
+    // Controle de concorrencia otimista (vale tambem para Motorista)
+    @Version
+    @Column(nullable = false)
+    private Long versao;
+
     // **NOVO: Construtor padrão (sem argumentos) é necessário para o JPA**
     public Pessoa() {
     }
@@ -109,6 +126,14 @@ public class Pessoa implements Serializable {
     public void setStatus(Status status) {
         this.status = status;
     }
+
+    public Long getVersao() {
+        return versao;
+    }
+
+    public void setVersao(Long versao) {
+        this.versao = versao;
+    }
   
     @Override
     public String toString() {
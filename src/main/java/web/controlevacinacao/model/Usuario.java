@@ -7,6 +7,7 @@ import java.util.List;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.EntityListeners;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
@@ -19,10 +20,12 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import web.controlevacinacao.service.NomeUsuarioUnicoService;
+import web.controlevacinacao.unicidade.OuvinteUnicidade;
 import web.controlevacinacao.validation.UniqueValueAttribute;
 
 @Entity
 @Table(name = "usuario")
+@EntityListeners(OuvinteUnicidade.class)
 @UniqueValueAttribute(attribute = "nomeUsuario", service = NomeUsuarioUnicoService.class, message = "Já existe um nome de usuário igual a este cadastrado")
 public class Usuario implements Serializable {
 
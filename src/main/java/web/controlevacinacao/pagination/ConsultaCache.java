@@ -0,0 +1,89 @@
+package web.controlevacinacao.pagination;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Guarda as JPQLs ja montadas das pesquisas paginadas pelo "formato" da pesquisa:
+ * a entidade, quais campos do filtro estao preenchidos e a ordenacao. Os valores
+ * do filtro vao sempre em parametros, entao pesquisas com o mesmo formato usam
+ * exatamente o mesmo texto de JPQL. Assim a montagem com StringBuilder nao eh
+ * refeita e o Hibernate encontra a query ja interpretada no seu plan cache, que
+ * eh indexado pelo texto da JPQL.
+ *
+ * Os acertos e falhas ficam no Actuator em /actuator/metrics/paginacao.consultas.cache.
+ */
+@Component
+public class ConsultaCache {
+
+    // A ordenacao vem da URL, entao limitamos quantos formatos diferentes guardamos
+    private static final int MAXIMO_FORMATOS = 500;
+
+    private final Map<String, ConsultaMontada> consultas = new ConcurrentHashMap<>();
+    private final AtomicLong acertos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    public ConsultaCache(MeterRegistry registry) {
+        FunctionCounter.builder("paginacao.consultas.cache", acertos, AtomicLong::get)
+                .tag("resultado", "acerto")
+                .description("Pesquisas paginadas que reaproveitaram a JPQL montada")
+                .register(registry);
+        FunctionCounter.builder("paginacao.consultas.cache", falhas, AtomicLong::get)
+                .tag("resultado", "falha")
+                .description("Pesquisas paginadas que precisaram montar a JPQL")
+                .register(registry);
+    }
+
+    /**
+     * Monta a chave do formato da pesquisa. Os nomes dos parametros identificam
+     * quais campos do filtro (e do keyset) participam das condicoes; o complemento
+     * serve para opcoes da pesquisa que nao viram parametro.
+     */
+    public static String chave(String entidade, Collection<String> parametros, Sort sort, Object... complemento) {
+        StringBuilder chave = new StringBuilder(entidade);
+        chave.append(new TreeSet<>(parametros)).append(sort);
+        for (Object c : complemento) {
+            chave.append('|').append(c);
+        }
+        return chave.toString();
+    }
+
+    public ConsultaMontada obter(String chave, Supplier<ConsultaMontada> montar) {
+        ConsultaMontada consulta = consultas.get(chave);
+        if (consulta != null) {
+            acertos.incrementAndGet();
+            return consulta;
+        }
+        falhas.incrementAndGet();
+        consulta = montar.get();
+        if (consultas.size() < MAXIMO_FORMATOS) {
+            consultas.put(chave, consulta);
+        }
+        return consulta;
+    }
+
+    public long getAcertos() {
+        return acertos.get();
+    }
+
+    public long getFalhas() {
+        return falhas.get();
+    }
+
+    /**
+     * A JPQL da pagina (com condicoes, keyset e ordenacao) e a JPQL de contagem.
+     */
+    public record ConsultaMontada(String consulta, String consultaTotal) {
+    }
+
+}
@@ -0,0 +1,72 @@
+package web.controlevacinacao.pagination;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Guarda o resultado das queries de contagem por um tempo curto. A chave eh a
+ * query de contagem com os seus parametros, ou seja, o filtro normalizado.
+ * Enquanto o usuario digita no HTMX ou troca de pagina o total nao eh recontado.
+ *
+ * Os services que gravam carros e motoristas chamam limpar() junto com o
+ * CacheEvict das pesquisas, entao o TTL so limita a defasagem das escritas
+ * feitas em outra instancia.
+ */
+@Component
+public class ContagemCache {
+
+    private static final int MAXIMO_ENTRADAS = 1000;
+
+    private final long ttlMillis;
+    private final Map<String, Entrada> contagens = new ConcurrentHashMap<>();
+
+    public ContagemCache(@Value("${paginacao.contagem.cache.ttl:PT30S}") Duration ttl) {
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    public long obter(String chave, LongSupplier contagem) {
+        long agora = System.currentTimeMillis();
+        Entrada entrada = contagens.get(chave);
+        if (entrada != null && entrada.expiraEm() > agora) {
+            return entrada.total();
+        }
+        if (contagens.size() >= MAXIMO_ENTRADAS) {
+            contagens.values().removeIf(e -> e.expiraEm() <= agora);
+            // Muitos filtros diferentes dentro do TTL: recomeca vazio em vez de crescer
+            if (contagens.size() >= MAXIMO_ENTRADAS) {
+                contagens.clear();
+            }
+        }
+        long total = contagem.getAsLong();
+        contagens.put(chave, new Entrada(total, agora + ttlMillis));
+        return total;
+    }
+
+    /**
+     * Descarta as contagens guardadas. Dentro de uma transacao a limpeza fica para
+     * depois do commit; antes dele uma pesquisa concorrente guardaria o total antigo.
+     */
+    public void limpar() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    contagens.clear();
+                }
+            });
+        } else {
+            contagens.clear();
+        }
+    }
+
+    private record Entrada(long total, long expiraEm) {
+    }
+
+}
@@ -0,0 +1,106 @@
+package web.controlevacinacao.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Posicao de uma pagina na paginacao por keyset (seek).
+ *
+ * Guarda o numero da pagina para a qual o cursor foi gerado, a ordenacao usada
+ * e a tupla (valor da ordenacao, codigo) do ultimo registro da pagina anterior.
+ * Para o navegador ele eh apenas um texto opaco no parametro "cursor" da URL.
+ */
+public class Cursor {
+
+    private static final String SEPARADOR = "|";
+
+    private final int pagina;
+    private final String propriedade;
+    private final Sort.Direction direcao;
+    private final Long codigo;
+    private final String valor;
+
+    public Cursor(int pagina, String propriedade, Sort.Direction direcao, Long codigo, String valor) {
+        this.pagina = pagina;
+        this.propriedade = propriedade;
+        this.direcao = direcao;
+        this.codigo = codigo;
+        this.valor = valor;
+    }
+
+    /**
+     * Gera o cursor da pagina seguinte a partir do ultimo registro da pagina atual.
+     * O valor da ordenacao pode ser nulo (os nulos ficam no fim da ordenacao).
+     * Retorna null quando o registro nao tem a propriedade ou o codigo.
+     */
+    public static Cursor aPartirDe(Object ultimoRegistro, int proximaPagina, Sort.Order ordem) {
+        String propriedade = PaginacaoUtil.propriedadeSemAlias(ordem.getProperty());
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(ultimoRegistro);
+        if (!wrapper.isReadableProperty("codigo") || !wrapper.isReadableProperty(propriedade)
+                || !(wrapper.getPropertyValue("codigo") instanceof Long codigo)) {
+            return null;
+        }
+        Object valor = wrapper.getPropertyValue(propriedade);
+        String texto = valor == null ? null : (valor instanceof Enum<?> e) ? e.name() : valor.toString();
+        return new Cursor(proximaPagina, propriedade, ordem.getDirection(), codigo, texto);
+    }
+
+    public String codificar() {
+        // Um valor nulo fica fora do texto, para nao ser confundido com um texto vazio
+        String texto = pagina + SEPARADOR + propriedade + SEPARADOR + direcao.name() + SEPARADOR + codigo
+                + (valor == null ? "" : SEPARADOR + valor);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica o texto recebido na URL. Um cursor mal formado eh simplesmente
+     * ignorado (retorna null) e a pesquisa cai na paginacao por OFFSET.
+     */
+    public static Cursor decodificar(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String texto = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // O valor fica por ultimo porque pode conter o separador
+            String[] partes = texto.split("\\" + SEPARADOR, 5);
+            if (partes.length < 4) {
+                return null;
+            }
+            return new Cursor(Integer.parseInt(partes[0]), partes[1], Sort.Direction.valueOf(partes[2]),
+                    Long.valueOf(partes[3]), partes.length == 5 ? partes[4] : null);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public int getPagina() {
+        return pagina;
+    }
+
+    public String getPropriedade() {
+        return propriedade;
+    }
+
+    public Sort.Direction getDirecao() {
+        return direcao;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public String getValor() {
+        return valor;
+    }
+
+    @Override
+    public String toString() {
+        return "Cursor [pagina=" + pagina + ", propriedade=" + propriedade + ", direcao=" + direcao + ", codigo="
+                + codigo + ", valor=" + valor + "]";
+    }
+
+}
@@ -0,0 +1,17 @@
+package web.controlevacinacao.pagination;
+
+/**
+ * Como uma pesquisa paginada descobre o total de registros.
+ */
+public enum EstrategiaContagem {
+
+    // select count(...) com as mesmas condicoes da pesquisa, sempre
+    EXATA,
+    // select count(...) guardado por alguns segundos para o mesmo filtro
+    CACHE,
+    // Estatistica do planejador do PostgreSQL quando nao ha filtro do usuario
+    ESTIMATIVA,
+    // Nao conta: busca um registro a mais para saber se existe a proxima pagina
+    PROXIMA_PAGINA;
+
+}
@@ -19,6 +19,8 @@ public class PageWrapper<T> {
 	private int maximoPaginasMostrar = 5;
 	private int inicio;
 	private int fim;
+	private String cursorProximaPagina;
+	private String caminhoExportacao;
 
 	public PageWrapper(Page<T> pagina, HttpServletRequest request) {
 		this.pagina = pagina;
@@ -29,7 +31,33 @@ public class PageWrapper<T> {
 		// logger.debug("PageWrapper criado para a requestURL: {}, queryString: {} e URL final: {}", requestURL,
 				// queryString, httpURL);
 		uriBuilder = UriComponentsBuilder.fromUriString(httpURL);
+		definirCaminhoExportacao(request);
 		definirInicioFimPaginacao();
+		definirCursorProximaPagina();
+	}
+
+	// Quando a proxima pagina ja estiver alem das que usam OFFSET, gera o cursor
+	// a partir do ultimo registro desta pagina para que a pesquisa use keyset.
+	private void definirCursorProximaPagina() {
+		int proximaPagina = pagina.getNumber() + 1;
+		Sort.Order ordem = PaginacaoUtil.ordemUnica(pagina.getSort());
+		if (proximaPagina < PaginacaoUtil.PAGINAS_COM_OFFSET || ordem == null || !pagina.hasNext()) {
+			return;
+		}
+		List<T> conteudo = pagina.getContent();
+		Cursor cursor = Cursor.aPartirDe(conteudo.get(conteudo.size() - 1), proximaPagina, ordem);
+		if (cursor != null) {
+			cursorProximaPagina = cursor.codificar();
+		}
+	}
+
+	// /carros/pesquisar -> /carros/exportar: cada recurso exporta no primeiro
+	// segmento do seu caminho
+	private void definirCaminhoExportacao(HttpServletRequest request) {
+		String caminho = request.getRequestURI().substring(request.getContextPath().length());
+		int fimRecurso = caminho.indexOf('/', 1);
+		caminhoExportacao = request.getContextPath() + (fimRecurso < 0 ? caminho : caminho.substring(0, fimRecurso))
+				+ "/exportar";
 	}
 
 	private String removeEmptyQueryParams(String queryString) {
@@ -73,6 +101,11 @@ public class PageWrapper<T> {
 		return pagina.getTotalPages();
 	}
 
+	// Falso quando a pesquisa nao contou os registros, so sabemos se existe a proxima pagina
+	public boolean isTotalConhecido() {
+		return !(pagina instanceof PaginaSemTotal);
+	}
+
 	public int getInicio() {
 		return inicio;
 	}
@@ -89,11 +122,28 @@ public class PageWrapper<T> {
 
 	public String urlParaPagina(int pagina) {
 		// logger.debug("Gerando uma nova URL para a pagina {}", pagina);
+		// O cursor so vale para a pagina seguinte, nas outras a pesquisa usa OFFSET
+		if (cursorProximaPagina != null && pagina == this.pagina.getNumber() + 1) {
+			uriBuilder.replaceQueryParam("cursor", cursorProximaPagina);
+		} else {
+			uriBuilder.replaceQueryParam("cursor");
+		}
 		String url = uriBuilder.replaceQueryParam("page", pagina).build(true).encode().toUriString();
 		// logger.debug("URL gerada: {}", url);
 		return url;
 	}
 
+	// A mesma pesquisa (filtro e ordenacao) no endereco que baixa todos os
+	// resultados no formato pedido, sem os parametros da paginacao
+	public String urlExportacao(String formato) {
+		UriComponentsBuilder uriBuilderExportacao = UriComponentsBuilder
+				.fromUriString(uriBuilder.build(true).encode().toUriString());
+		String url = uriBuilderExportacao.replacePath(caminhoExportacao).replaceQueryParam("page")
+				.replaceQueryParam("size").replaceQueryParam("cursor").replaceQueryParam("formato", formato)
+				.build(true).encode().toUriString();
+		return url;
+	}
+
 	// Se a propriedade nao tiver uma ordenacao na URL atual, insere uma com a ordem
 	// ASC na URL.
 	// Se a propriedade tiver uma ordenacao na URL atual, inverte essa ordem na URL.
@@ -111,7 +161,9 @@ public class PageWrapper<T> {
 		UriComponentsBuilder uriBuilderOrder = UriComponentsBuilder
 				.fromUriString(uriBuilder.build(true).encode().toUriString());
 		String valorSort = String.format("%s,%s", propriedade, inverterDirecaoOrdem(propriedade));
-		String url = uriBuilderOrder.replaceQueryParam("sort", valorSort).build(true).encode().toUriString();
+		// Um cursor gerado com a ordenacao anterior nao serve para a nova
+		String url = uriBuilderOrder.replaceQueryParam("sort", valorSort).replaceQueryParam("cursor").build(true)
+				.encode().toUriString();
 		// logger.debug("URL gerada: {}", url);
 		return url;
 	}
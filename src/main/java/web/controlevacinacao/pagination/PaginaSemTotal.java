@@ -0,0 +1,21 @@
+package web.controlevacinacao.pagination;
+
+import java.util.List;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Pagina de uma pesquisa que nao contou os registros (EstrategiaContagem.PROXIMA_PAGINA).
+ * O total informado eh apenas o suficiente para o PageImpl saber se existe a
+ * proxima pagina, por isso o PageWrapper nao mostra o numero da ultima.
+ */
+public class PaginaSemTotal<T> extends PageImpl<T> {
+
+    private static final long serialVersionUID = 1L;
+
+    public PaginaSemTotal(List<T> conteudo, Pageable pageable, boolean temProxima) {
+        super(conteudo, pageable, pageable.getOffset() + conteudo.size() + (temProxima ? 1 : 0));
+    }
+
+}
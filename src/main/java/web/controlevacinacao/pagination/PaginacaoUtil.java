@@ -3,12 +3,21 @@ package web.controlevacinacao.pagination;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query; // Importar Query para getTotalRegistrosComQuery
+import jakarta.persistence.Table;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
@@ -17,6 +26,15 @@ import jakarta.persistence.criteria.Root;
 
 public class PaginacaoUtil {
 
+    // As primeiras paginas continuam com OFFSET, que eh barato nelas e permite pular
+    // direto para qualquer numero da paginacao. A partir daqui, se a requisicao
+    // trouxer um cursor valido, a pesquisa usa keyset.
+    public static final int PAGINAS_COM_OFFSET = 3;
+
+    // Linhas buscadas por ida ao banco quando uma consulta eh percorrida inteira;
+    // o driver do PostgreSQL so usa cursor dentro de transacao
+    public static final int TAMANHO_LOTE_STREAMING = 500;
+
     public static void prepararIntervalo(TypedQuery<?> typedQuery, Pageable pageable) {
         int paginaAtual = pageable.getPageNumber();
         int totalRegistrosPorPagina = pageable.getPageSize();
@@ -25,6 +43,147 @@ public class PaginacaoUtil {
         typedQuery.setMaxResults(totalRegistrosPorPagina);
     }
 
+    /**
+     * Igual ao prepararIntervalo, mas quando a condicao de keyset ja foi aplicada
+     * a query comeca do primeiro registro, sem OFFSET.
+     */
+    public static void prepararIntervalo(TypedQuery<?> typedQuery, Pageable pageable, boolean usandoKeyset) {
+        if (usandoKeyset) {
+            typedQuery.setFirstResult(0);
+            typedQuery.setMaxResults(pageable.getPageSize());
+        } else {
+            prepararIntervalo(typedQuery, pageable);
+        }
+    }
+
+    /**
+     * Quando a pesquisa nao conta os registros, busca um a mais que o tamanho da
+     * pagina para saber se existe a proxima.
+     */
+    public static void prepararIntervalo(TypedQuery<?> typedQuery, Pageable pageable, boolean usandoKeyset,
+                                         EstrategiaContagem estrategia) {
+        prepararIntervalo(typedQuery, pageable, usandoKeyset);
+        if (estrategia == EstrategiaContagem.PROXIMA_PAGINA) {
+            typedQuery.setMaxResults(pageable.getPageSize() + 1);
+        }
+    }
+
+    /**
+     * Monta a pagina de acordo com a estrategia de contagem. A contagem so eh
+     * executada quando a estrategia precisa de um total.
+     */
+    public static <T> Page<T> criarPagina(List<T> registros, Pageable pageable, EstrategiaContagem estrategia,
+                                          LongSupplier contagem) {
+        if (estrategia == EstrategiaContagem.PROXIMA_PAGINA) {
+            boolean temProxima = registros.size() > pageable.getPageSize();
+            List<T> conteudo = temProxima ? registros.subList(0, pageable.getPageSize()) : registros;
+            return new PaginaSemTotal<>(conteudo, pageable, temProxima);
+        }
+        return new PageImpl<>(registros, pageable, contagem.getAsLong());
+    }
+
+    /**
+     * Decodifica o cursor recebido na URL e verifica se ele pode ser usado nessa
+     * pesquisa: precisa ter sido gerado para a pagina pedida, com a mesma ordenacao,
+     * e a pagina precisa estar alem das que usam OFFSET. Caso contrario retorna null.
+     */
+    public static Cursor lerCursor(String cursor, Pageable pageable) {
+        Cursor lido = Cursor.decodificar(cursor);
+        if (lido == null || pageable.getPageNumber() < PAGINAS_COM_OFFSET
+                || lido.getPagina() != pageable.getPageNumber()) {
+            return null;
+        }
+        Sort.Order ordem = ordemUnica(pageable.getSort());
+        if (ordem == null || !propriedadeSemAlias(ordem.getProperty()).equals(lido.getPropriedade())
+                || ordem.getDirection() != lido.getDirecao()) {
+            return null;
+        }
+        return lido;
+    }
+
+    /**
+     * Acrescenta nas condicoes a comparacao pela tupla (propriedade da ordenacao, codigo)
+     * do ultimo registro da pagina anterior, com os parametros correspondentes.
+     *
+     * @return true se a condicao foi aplicada e a query deve comecar sem OFFSET.
+     */
+    public static boolean prepararCondicaoKeyset(Cursor cursor, Class<?> entidade, String alias,
+                                                 StringBuilder condicoes, Map<String, Object> parametros,
+                                                 EntityManager manager) {
+        if (!prepararParametrosKeyset(cursor, entidade, parametros, manager)) {
+            return false;
+        }
+        acrescentarCondicaoKeyset(condicoes, cursor, alias);
+        return true;
+    }
+
+    /**
+     * Coloca nos parametros os valores do cursor. O tipo do valor guardado no cursor
+     * eh descoberto pelo metamodelo da entidade; um valor nulo nao vira parametro.
+     * Separado da condicao para as pesquisas que so montam a JPQL quando ela nao
+     * esta no ConsultaCache.
+     *
+     * @return true se o cursor vale para a entidade e a query deve comecar sem OFFSET.
+     */
+    public static boolean prepararParametrosKeyset(Cursor cursor, Class<?> entidade, Map<String, Object> parametros,
+                                                   EntityManager manager) {
+        if (cursor == null) {
+            return false;
+        }
+        if (!cursor.getPropriedade().equals("codigo") && cursor.getValor() != null) {
+            Class<?> tipo;
+            try {
+                tipo = manager.getMetamodel().entity(entidade).getAttribute(cursor.getPropriedade()).getJavaType();
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            parametros.put("keysetValor", DefaultConversionService.getSharedInstance().convert(cursor.getValor(), tipo));
+        }
+        parametros.put("keysetCodigo", cursor.getCodigo());
+        return true;
+    }
+
+    /**
+     * Acrescenta a condicao do keyset para um cursor ja aceito pelo prepararParametrosKeyset.
+     *
+     * Os nulos ficam depois de todos os valores nas duas direcoes (nulls last no
+     * prepararOrdemJPQL), entao a partir de um valor ainda restam todos os nulos, e a
+     * partir de um nulo restam apenas os nulos com o codigo seguinte.
+     */
+    public static void acrescentarCondicaoKeyset(StringBuilder condicoes, Cursor cursor, String alias) {
+        String comparacao = cursor.getDirecao().isAscending() ? " > " : " < ";
+        String codigo = alias + ".codigo";
+        condicoes.append(condicoes.isEmpty() ? " where " : " and ");
+        if (cursor.getPropriedade().equals("codigo")) {
+            condicoes.append(codigo).append(comparacao).append(":keysetCodigo");
+            return;
+        }
+        String propriedade = alias + "." + cursor.getPropriedade();
+        if (cursor.getValor() == null) {
+            condicoes.append("(").append(propriedade).append(" is null and ").append(codigo).append(comparacao)
+                    .append(":keysetCodigo)");
+        } else {
+            condicoes.append("(").append(propriedade).append(comparacao).append(":keysetValor or ")
+                    .append(propriedade).append(" is null or (").append(propriedade)
+                    .append(" = :keysetValor and ").append(codigo).append(comparacao).append(":keysetCodigo))");
+        }
+    }
+
+    // O keyset so funciona com uma unica coluna de ordenacao (mais o codigo como desempate)
+    public static Sort.Order ordemUnica(Sort sort) {
+        if (sort == null || sort.isUnsorted()) {
+            return null;
+        }
+        List<Sort.Order> ordens = sort.toList();
+        return ordens.size() == 1 ? ordens.get(0) : null;
+    }
+
+    // Algumas telas ordenam por "m.codigo", outras por "codigo"
+    public static String propriedadeSemAlias(String propriedade) {
+        int ponto = propriedade.indexOf('.');
+        return ponto == -1 ? propriedade : propriedade.substring(ponto + 1);
+    }
+
     public static void prepararOrdemCriteria(Root<?> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder builder,
                                              Pageable pageable) {
         String atributo;
@@ -46,14 +205,28 @@ public class PaginacaoUtil {
         if (sort != null && !sort.isEmpty()) {
             query.append(" order by ");
             boolean primeiroOrder = true; // Variável para controlar a vírgula
+            boolean ordenouPorCodigo = false;
+            Sort.Direction ultimaDirecao = Sort.Direction.ASC;
             for (Sort.Order o : sort) {
                 if (!primeiroOrder) {
                     query.append(", ");
                 }
+                String propriedade = propriedadeSemAlias(o.getProperty());
                 // Adiciona o alias explicitamente para campos da entidade principal
-                query.append(alias).append(".").append(o.getProperty()).append(" ").append(o.getDirection().name());
+                query.append(alias).append(".").append(propriedade).append(" ").append(o.getDirection().name());
+                if (propriedade.equals("codigo")) {
+                    ordenouPorCodigo = true;
+                } else {
+                    // Nulos sempre no fim, nas duas direcoes: o keyset depende dessa posicao
+                    query.append(" nulls last");
+                }
+                ultimaDirecao = o.getDirection();
                 primeiroOrder = false;
             }
+            // Desempate pelo codigo para a ordem ser estavel entre as paginas (OFFSET e keyset)
+            if (!ordenouPorCodigo) {
+                query.append(", ").append(alias).append(".codigo ").append(ultimaDirecao.name());
+            }
         }
     }
 
@@ -63,9 +236,27 @@ public class PaginacaoUtil {
         }
     }
 
+    /**
+     * Entrega ao consumidor, uma a uma, todas as linhas da consulta, lidas do
+     * banco em lotes de TAMANHO_LOTE_STREAMING sem montar a lista em memoria.
+     * Deve rodar dentro de uma transacao para o driver usar cursor.
+     */
+    public static <T> void percorrer(TypedQuery<T> typedQuery, Map<String, Object> parametros,
+            Consumer<T> consumidor) {
+        typedQuery.setHint(HibernateHints.HINT_FETCH_SIZE, TAMANHO_LOTE_STREAMING);
+        preencherParametros(parametros, typedQuery);
+        try (Stream<T> linhas = typedQuery.getResultStream()) {
+            linhas.forEach(consumidor);
+        }
+    }
+
     // Seu método original getTotalRegistros - bom para entidades sem joins complexos na contagem
     public static long getTotalRegistros(String entidade, String alias, StringBuilder condicoes,
                                          Map<String, Object> parametros, EntityManager manager) {
+        return getTotalRegistros(montarQueryTotal(entidade, alias, condicoes), parametros, manager);
+    }
+
+    public static String montarQueryTotal(String entidade, String alias, StringBuilder condicoes) {
         StringBuilder queryTotal = new StringBuilder("select count(");
         queryTotal.append(alias);
         queryTotal.append(") from ");
@@ -73,14 +264,66 @@ public class PaginacaoUtil {
         queryTotal.append(" ");
         queryTotal.append(alias);
         queryTotal.append(condicoes);
+        return queryTotal.toString();
+    }
 
-        TypedQuery<Long> typedQueryTotal = manager.createQuery(queryTotal.toString(), Long.class);
+    public static long getTotalRegistros(String queryTotal, Map<String, Object> parametros, EntityManager manager) {
+        TypedQuery<Long> typedQueryTotal = manager.createQuery(queryTotal, Long.class);
 
         preencherParametros(parametros, typedQueryTotal);
 
         return typedQueryTotal.getSingleResult();
     }
 
+    /**
+     * Calcula o total de registros usando a estrategia escolhida pela pesquisa.
+     * A CACHE guarda a contagem exata por filtro e a ESTIMATIVA usa a estatistica
+     * do planejador (pg_class.reltuples, o mesmo numero que o EXPLAIN mostra para
+     * a tabela) quando nao ha parametros de filtro. Com filtro a estimativa da tabela
+     * inteira nao serve, entao a contagem volta a ser exata.
+     *
+     * @param queryTotal A JPQL de contagem, normalmente vinda do ConsultaCache.
+     */
+    public static long getTotalRegistros(EstrategiaContagem estrategia, Class<?> entidade, String queryTotal,
+                                         Map<String, Object> parametros, EntityManager manager,
+                                         ContagemCache cache) {
+        switch (estrategia) {
+            case CACHE:
+                String chave = queryTotal + new TreeMap<>(parametros);
+                return cache.obter(chave, () -> getTotalRegistros(queryTotal, parametros, manager));
+            case ESTIMATIVA:
+                if (parametros.isEmpty()) {
+                    long estimativa = getTotalRegistrosEstimado(entidade, manager);
+                    if (estimativa >= 0) {
+                        return estimativa;
+                    }
+                }
+                return getTotalRegistros(queryTotal, parametros, manager);
+            default:
+                return getTotalRegistros(queryTotal, parametros, manager);
+        }
+    }
+
+    // Retorna -1 quando a tabela ainda nao foi analisada pelo PostgreSQL
+    private static long getTotalRegistrosEstimado(Class<?> entidade, EntityManager manager) {
+        Query query = manager.createNativeQuery(
+                "select cast(reltuples as bigint) from pg_class where oid = to_regclass(:tabela)");
+        query.setParameter("tabela", nomeTabela(entidade));
+        List<?> resultado = query.getResultList();
+        return resultado.isEmpty() ? -1 : ((Number) resultado.get(0)).longValue();
+    }
+
+    // Subclasses como Motorista usam a tabela da superclasse (SINGLE_TABLE)
+    private static String nomeTabela(Class<?> entidade) {
+        for (Class<?> classe = entidade; classe != null; classe = classe.getSuperclass()) {
+            Table tabela = classe.getAnnotation(Table.class);
+            if (tabela != null && !tabela.name().isEmpty()) {
+                return tabela.name();
+            }
+        }
+        return entidade.getSimpleName().toLowerCase();
+    }
+
     /**
      * NOVO MÉTODO: Calcula o total de registros para uma query de COUNT JPQL já montada,
      * útil para queries que envolvem joins na contagem.
@@ -0,0 +1,57 @@
+package web.controlevacinacao.pagination;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.cache.interceptor.KeyGenerator;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gera a chave das paginas de resultado guardadas no cache de pesquisa
+ * (@Cacheable com keyGenerator = "pesquisaKeyGenerator").
+ *
+ * O filtro eh normalizado antes de virar chave da mesma forma que as pesquisas
+ * tratam os campos: textos vazios sao ignorados e os demais sao aparados. Assim
+ * "abc " e "abc", ou um campo em branco e um campo ausente, usam a mesma entrada.
+ */
+@Component("pesquisaKeyGenerator")
+public class PesquisaKeyGenerator implements KeyGenerator {
+
+    @Override
+    public Object generate(Object target, Method method, Object... params) {
+        StringBuilder chave = new StringBuilder(method.getName());
+        for (Object parametro : params) {
+            chave.append('|');
+            if (parametro instanceof Pageable pageable) {
+                chave.append(pageable.getPageNumber()).append(',').append(pageable.getPageSize()).append(',')
+                        .append(pageable.getSort());
+            } else if (parametro == null || parametro instanceof String || parametro instanceof Boolean) {
+                chave.append(parametro);
+            } else {
+                normalizarFiltro(parametro, chave);
+            }
+        }
+        return chave.toString();
+    }
+
+    private static void normalizarFiltro(Object filtro, StringBuilder chave) {
+        BeanWrapperImpl wrapper = new BeanWrapperImpl(filtro);
+        // As propriedades vem ordenadas pelo nome, entao a chave nao depende da ordem dos campos
+        for (PropertyDescriptor propriedade : wrapper.getPropertyDescriptors()) {
+            String nome = propriedade.getName();
+            if ("class".equals(nome) || propriedade.getReadMethod() == null) {
+                continue;
+            }
+            Object valor = wrapper.getPropertyValue(nome);
+            if (valor instanceof String texto) {
+                valor = texto.isBlank() ? null : texto.trim();
+            }
+            if (valor != null) {
+                chave.append(nome).append('=').append(valor).append(';');
+            }
+        }
+    }
+
+}
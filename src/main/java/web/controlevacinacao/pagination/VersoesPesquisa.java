@@ -0,0 +1,98 @@
+package web.controlevacinacao.pagination;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Contadores de versao por tipo de entidade, guardados no Redis para valerem em
+ * todas as instancias. Os services incrementam o contador a cada escrita e as
+ * pesquisas HTMX montam o ETag com as versoes que afetam o fragmento, a URL
+ * (filtro, pagina, ordenacao e cursor) e o usuario.
+ *
+ * Com isso uma pesquisa repetida sem alteracoes responde 304 antes de ir ao
+ * banco ou ao Thymeleaf. O incremento so acontece depois do commit; se fosse
+ * antes, uma pesquisa no meio da transacao guardaria o fragmento antigo com o
+ * ETag novo.
+ */
+@Component
+public class VersoesPesquisa {
+
+    public static final String CARROS = "carros";
+    public static final String MOTORISTAS = "motoristas";
+    public static final String MOVIMENTACOES = "movimentacoes";
+
+    private static final Logger logger = LoggerFactory.getLogger(VersoesPesquisa.class);
+    private static final String PREFIXO = "versao:";
+
+    // Muda a cada inicializacao, para um deploy com templates novos nao reaproveitar fragmentos antigos
+    private final String inicializacao = Long.toString(System.currentTimeMillis(), 36);
+    private final StringRedisTemplate redis;
+
+    public VersoesPesquisa(StringRedisTemplate redis) {
+        this.redis = redis;
+    }
+
+    public void incrementar(String tipo) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    incrementarAgora(tipo);
+                }
+            });
+        } else {
+            incrementarAgora(tipo);
+        }
+    }
+
+    /**
+     * Confere o If-None-Match da requisicao com a versao atual dos tipos
+     * informados. Quando for igual, a resposta ja sai como 304 e o controller
+     * deve retornar null; senao o ETag eh colocado na resposta.
+     */
+    public boolean naoModificado(HttpServletRequest request, HttpServletResponse response, String... tipos) {
+        String etag = etag(request, tipos);
+        return etag != null && new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+
+    private String etag(HttpServletRequest request, String... tipos) {
+        List<String> versoes;
+        try {
+            versoes = redis.opsForValue().multiGet(Arrays.stream(tipos).map(t -> PREFIXO + t).toList());
+        } catch (RuntimeException e) {
+            logger.debug("Versões indisponíveis, pesquisa sem ETag: {}", e.toString());
+            return null;
+        }
+        StringBuilder base = new StringBuilder(inicializacao);
+        for (int i = 0; i < tipos.length; i++) {
+            base.append('|').append(tipos[i]).append('=').append(versoes == null ? null : versoes.get(i));
+        }
+        base.append('|').append(request.getRemoteUser())
+                .append('|').append(request.getRequestURI())
+                .append('?').append(request.getQueryString());
+        // Fraco porque o Tomcat nao comprime respostas com ETag forte
+        return "W/\"" + DigestUtils.md5DigestAsHex(base.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private void incrementarAgora(String tipo) {
+        try {
+            redis.opsForValue().increment(PREFIXO + tipo);
+        } catch (RuntimeException e) {
+            logger.warn("Versão de {} não incrementada: {}", tipo, e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package web.controlevacinacao.painel;
+
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.model.StatusCarro;
+import web.controlevacinacao.model.StatusMovimentacao;
+
+/**
+ * Mudanca de situacao de um carro enviada aos paineis de frota.
+ *
+ * Eventos de carro trazem apenas o status do carro; eventos de movimentacao
+ * trazem tambem o status da movimentacao e o motorista, para o painel mostrar
+ * quem esta com o carro (ou limpar o motorista quando a viagem termina).
+ */
+public record EventoFrota(Long codigoCarro, String placa, String modelo, StatusCarro statusCarro,
+        String descricaoStatusCarro, StatusMovimentacao statusMovimentacao, String descricaoStatusMovimentacao,
+        String nomeMotorista) {
+
+    public static EventoFrota deCarro(Carro carro) {
+        return new EventoFrota(carro.getCodigo(), carro.getPlaca(), carro.getModelo(), carro.getStatusCarro(),
+                carro.getStatusCarro() == null ? null : carro.getStatusCarro().getDescricao(), null, null, null);
+    }
+
+    public static EventoFrota deMovimentacao(Movimentacao movimentacao) {
+        Carro carro = movimentacao.getCarro();
+        return new EventoFrota(carro.getCodigo(), carro.getPlaca(), carro.getModelo(), carro.getStatusCarro(),
+                carro.getStatusCarro() == null ? null : carro.getStatusCarro().getDescricao(),
+                movimentacao.getStatusMovimentacao(), movimentacao.getStatusMovimentacao().getDescricao(),
+                movimentacao.getMotorista().getNome());
+    }
+
+}
@@ -0,0 +1,80 @@
+package web.controlevacinacao.painel;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Conexoes SSE abertas pelos paineis de frota desta instancia. Cada evento eh
+ * enviado uma vez para todas elas; uma conexao que falha eh descartada e o
+ * EventSource do navegador reconecta sozinho.
+ *
+ * Os eventos sao escritos na thread da requisicao que fez o commit, entao o
+ * numero de conexoes eh limitado por instancia (painel.frota.maximo-conexoes)
+ * e por usuario (painel.frota.maximo-por-usuario, varias abas do mesmo login).
+ */
+@Component
+public class PainelFrota {
+
+    private static final Logger logger = LoggerFactory.getLogger(PainelFrota.class);
+
+    // Conexao -> usuario que a abriu
+    private final Map<SseEmitter, String> conexoes = new ConcurrentHashMap<>();
+    private final long tempoConexao;
+    private final int maximoConexoes;
+    private final int maximoPorUsuario;
+
+    public PainelFrota(@Value("${painel.frota.tempo-conexao:PT30M}") Duration tempoConexao,
+            @Value("${painel.frota.maximo-conexoes:200}") int maximoConexoes,
+            @Value("${painel.frota.maximo-por-usuario:3}") int maximoPorUsuario,
+            MeterRegistry registry) {
+        this.tempoConexao = tempoConexao.toMillis();
+        this.maximoConexoes = maximoConexoes;
+        this.maximoPorUsuario = maximoPorUsuario;
+        Gauge.builder("painel.frota.conexoes", conexoes, Map::size)
+                .description("Paineis de frota conectados por SSE nesta instancia")
+                .register(registry);
+    }
+
+    /**
+     * @return a conexao, ou null se a instancia ou o usuario ja estiver no limite
+     */
+    public synchronized SseEmitter conectar(String usuario) {
+        long doUsuario = conexoes.values().stream().filter(usuario::equals).count();
+        if (conexoes.size() >= maximoConexoes || doUsuario >= maximoPorUsuario) {
+            logger.info("Painel de frota recusado para {}: {} conexões na instância, {} do usuário", usuario,
+                    conexoes.size(), doUsuario);
+            return null;
+        }
+        SseEmitter conexao = new SseEmitter(tempoConexao);
+        conexao.onCompletion(() -> conexoes.remove(conexao));
+        conexao.onTimeout(() -> conexoes.remove(conexao));
+        conexao.onError(e -> conexoes.remove(conexao));
+        conexoes.put(conexao, usuario);
+        return conexao;
+    }
+
+    public void enviar(EventoFrota evento) {
+        for (SseEmitter conexao : conexoes.keySet()) {
+            try {
+                conexao.send(SseEmitter.event().name("status").data(evento, MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                logger.debug("Painel desconectado: {}", e.toString());
+                conexoes.remove(conexao);
+                conexao.completeWithError(e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,71 @@
+package web.controlevacinacao.painel;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Distribui os eventos de frota.
+ *
+ * Os services publicam EventoFrota no barramento de eventos do Spring. Depois
+ * do commit o evento vai direto para os paineis desta instancia e eh publicado
+ * no canal Redis CANAL, de onde as demais instancias o recebem e repassam aos
+ * seus paineis. A mensagem leva o id da instancia de origem para que ela nao
+ * entregue o mesmo evento duas vezes.
+ */
+@Component
+public class PonteRedisEventosFrota implements MessageListener {
+
+    public static final String CANAL = "frota:status";
+
+    private static final Logger logger = LoggerFactory.getLogger(PonteRedisEventosFrota.class);
+    private static final char SEPARADOR = '|';
+
+    private final String instancia = UUID.randomUUID().toString();
+    private final PainelFrota painelFrota;
+    private final StringRedisTemplate redis;
+    private final ObjectMapper objectMapper;
+
+    public PonteRedisEventosFrota(PainelFrota painelFrota, StringRedisTemplate redis, ObjectMapper objectMapper) {
+        this.painelFrota = painelFrota;
+        this.redis = redis;
+        this.objectMapper = objectMapper;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void publicar(EventoFrota evento) {
+        painelFrota.enviar(evento);
+        try {
+            redis.convertAndSend(CANAL, instancia + SEPARADOR + objectMapper.writeValueAsString(evento));
+        } catch (JsonProcessingException | RuntimeException e) {
+            // Sem o Redis os paineis desta instancia continuam recebendo os eventos
+            logger.warn("Evento de frota não publicado no Redis: {}", e.toString());
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String corpo = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separador = corpo.indexOf(SEPARADOR);
+        if (separador < 0 || corpo.substring(0, separador).equals(instancia)) {
+            return;
+        }
+        try {
+            painelFrota.enviar(objectMapper.readValue(corpo.substring(separador + 1), EventoFrota.class));
+        } catch (JsonProcessingException e) {
+            logger.warn("Evento de frota inválido recebido do Redis: {}", e.toString());
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Linha da tabela de aplicacoes.
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ */
+public class AplicacaoResumo {
+
+    private final Long codigo;
+    private final LocalDate data;
+    private final Long codigoLote;
+    private final String cpfPessoa;
+
+    public AplicacaoResumo(Long codigo, LocalDate data, Long codigoLote, String cpfPessoa) {
+        this.codigo = codigo;
+        this.data = data;
+        this.codigoLote = codigoLote;
+        this.cpfPessoa = cpfPessoa;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public LocalDate getData() {
+        return data;
+    }
+
+    public Long getCodigoLote() {
+        return codigoLote;
+    }
+
+    public String getCpfPessoa() {
+        return cpfPessoa;
+    }
+
+    @Override
+    public String toString() {
+        return "AplicacaoResumo [codigo=" + codigo + ", data=" + data + ", codigoLote=" + codigoLote
+                + ", cpfPessoa=" + cpfPessoa + "]";
+    }
+
+}
@@ -0,0 +1,63 @@
+package web.controlevacinacao.projection;
+
+import java.io.Serializable;
+
+import web.controlevacinacao.model.StatusCarro;
+
+/**
+ * Linha da tabela de carros (listagem e escolha do carro da movimentacao).
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ * Eh Serializable porque as paginas de resultado podem ficar no cache do Redis.
+ */
+public class CarroResumo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long codigo;
+    private final String placa;
+    private final String modelo;
+    private final String cor;
+    private final Long kmAtual;
+    private final StatusCarro statusCarro;
+
+    public CarroResumo(Long codigo, String placa, String modelo, String cor, Long kmAtual,
+            StatusCarro statusCarro) {
+        this.codigo = codigo;
+        this.placa = placa;
+        this.modelo = modelo;
+        this.cor = cor;
+        this.kmAtual = kmAtual;
+        this.statusCarro = statusCarro;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public String getPlaca() {
+        return placa;
+    }
+
+    public String getModelo() {
+        return modelo;
+    }
+
+    public String getCor() {
+        return cor;
+    }
+
+    public Long getKmAtual() {
+        return kmAtual;
+    }
+
+    public StatusCarro getStatusCarro() {
+        return statusCarro;
+    }
+
+    @Override
+    public String toString() {
+        return "CarroResumo [codigo=" + codigo + ", placa=" + placa + ", modelo=" + modelo
+                + ", cor=" + cor + ", kmAtual=" + kmAtual + ", statusCarro=" + statusCarro + "]";
+    }
+
+}
@@ -0,0 +1,94 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import web.controlevacinacao.model.StatusMovimentacao;
+
+/**
+ * Linha do historico de movimentacoes do relatorio, com a quilometragem de
+ * saida e de retorno.
+ */
+public class HistoricoMovimentacao {
+
+    private final Long codigo;
+    private final String placaCarro;
+    private final String nomeMotorista;
+    private final LocalDate dataSaida;
+    private final LocalTime horaSaida;
+    private final LocalDate dataRetorno;
+    private final LocalTime horaRetorno;
+    private final Long kmSaida;
+    private final Long kmRetorno;
+    private final StatusMovimentacao statusMovimentacao;
+
+    public HistoricoMovimentacao(Long codigo, String placaCarro, String nomeMotorista, LocalDate dataSaida,
+            LocalTime horaSaida, LocalDate dataRetorno, LocalTime horaRetorno, Long kmSaida, Long kmRetorno,
+            StatusMovimentacao statusMovimentacao) {
+        this.codigo = codigo;
+        this.placaCarro = placaCarro;
+        this.nomeMotorista = nomeMotorista;
+        this.dataSaida = dataSaida;
+        this.horaSaida = horaSaida;
+        this.dataRetorno = dataRetorno;
+        this.horaRetorno = horaRetorno;
+        this.kmSaida = kmSaida;
+        this.kmRetorno = kmRetorno;
+        this.statusMovimentacao = statusMovimentacao;
+    }
+
+    /**
+     * Quilometragem percorrida, ou null enquanto o carro nao retornou.
+     */
+    public Long getKmPercorridos() {
+        return kmRetorno == null || kmSaida == null ? null : kmRetorno - kmSaida;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public String getPlacaCarro() {
+        return placaCarro;
+    }
+
+    public String getNomeMotorista() {
+        return nomeMotorista;
+    }
+
+    public LocalDate getDataSaida() {
+        return dataSaida;
+    }
+
+    public LocalTime getHoraSaida() {
+        return horaSaida;
+    }
+
+    public LocalDate getDataRetorno() {
+        return dataRetorno;
+    }
+
+    public LocalTime getHoraRetorno() {
+        return horaRetorno;
+    }
+
+    public Long getKmSaida() {
+        return kmSaida;
+    }
+
+    public Long getKmRetorno() {
+        return kmRetorno;
+    }
+
+    public StatusMovimentacao getStatusMovimentacao() {
+        return statusMovimentacao;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoricoMovimentacao [codigo=" + codigo + ", placaCarro=" + placaCarro + ", nomeMotorista="
+                + nomeMotorista + ", dataSaida=" + dataSaida + ", kmSaida=" + kmSaida + ", kmRetorno=" + kmRetorno
+                + ", statusMovimentacao=" + statusMovimentacao + "]";
+    }
+
+}
@@ -0,0 +1,52 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Linha da tabela de lotes (listagem e escolha do lote da aplicacao).
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ */
+public class LoteResumo {
+
+    private final Long codigo;
+    private final LocalDate validade;
+    private final Integer nroDosesDoLote;
+    private final Integer nroDosesAtual;
+    private final String nomeVacina;
+
+    public LoteResumo(Long codigo, LocalDate validade, Integer nroDosesDoLote, Integer nroDosesAtual,
+            String nomeVacina) {
+        this.codigo = codigo;
+        this.validade = validade;
+        this.nroDosesDoLote = nroDosesDoLote;
+        this.nroDosesAtual = nroDosesAtual;
+        this.nomeVacina = nomeVacina;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public LocalDate getValidade() {
+        return validade;
+    }
+
+    public Integer getNroDosesDoLote() {
+        return nroDosesDoLote;
+    }
+
+    public Integer getNroDosesAtual() {
+        return nroDosesAtual;
+    }
+
+    public String getNomeVacina() {
+        return nomeVacina;
+    }
+
+    @Override
+    public String toString() {
+        return "LoteResumo [codigo=" + codigo + ", validade=" + validade + ", nroDosesDoLote=" + nroDosesDoLote
+                + ", nroDosesAtual=" + nroDosesAtual + ", nomeVacina=" + nomeVacina + "]";
+    }
+
+}
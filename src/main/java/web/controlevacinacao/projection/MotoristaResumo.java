@@ -0,0 +1,64 @@
+package web.controlevacinacao.projection;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+import web.controlevacinacao.model.Status;
+
+/**
+ * Linha da tabela de motoristas (listagem e escolha do motorista da movimentacao).
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ * Eh Serializable porque as paginas de resultado podem ficar no cache do Redis.
+ */
+public class MotoristaResumo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long codigo;
+    private final String nome;
+    private final String cpf;
+    private final String cnh;
+    private final LocalDate dataNascimento;
+    private final Status status;
+
+    public MotoristaResumo(Long codigo, String nome, String cpf, String cnh, LocalDate dataNascimento,
+            Status status) {
+        this.codigo = codigo;
+        this.nome = nome;
+        this.cpf = cpf;
+        this.cnh = cnh;
+        this.dataNascimento = dataNascimento;
+        this.status = status;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public String getCpf() {
+        return cpf;
+    }
+
+    public String getCnh() {
+        return cnh;
+    }
+
+    public LocalDate getDataNascimento() {
+        return dataNascimento;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return "MotoristaResumo [codigo=" + codigo + ", nome=" + nome + ", cpf=" + cpf
+                + ", cnh=" + cnh + ", dataNascimento=" + dataNascimento + ", status=" + status + "]";
+    }
+
+}
@@ -0,0 +1,76 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+import web.controlevacinacao.model.StatusMovimentacao;
+
+/**
+ * Linha da tabela de movimentacoes, com os dados do carro e do motorista
+ * que a tabela mostra.
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ */
+public class MovimentacaoResumo {
+
+    private final Long codigo;
+    private final LocalDate dataSaida;
+    private final LocalDate dataRetorno;
+    private final StatusMovimentacao statusMovimentacao;
+    private final String placaCarro;
+    private final String modeloCarro;
+    private final String nomeMotorista;
+    private final String cnhMotorista;
+
+    public MovimentacaoResumo(Long codigo, LocalDate dataSaida, LocalDate dataRetorno,
+            StatusMovimentacao statusMovimentacao, String placaCarro, String modeloCarro,
+            String nomeMotorista, String cnhMotorista) {
+        this.codigo = codigo;
+        this.dataSaida = dataSaida;
+        this.dataRetorno = dataRetorno;
+        this.statusMovimentacao = statusMovimentacao;
+        this.placaCarro = placaCarro;
+        this.modeloCarro = modeloCarro;
+        this.nomeMotorista = nomeMotorista;
+        this.cnhMotorista = cnhMotorista;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public LocalDate getDataSaida() {
+        return dataSaida;
+    }
+
+    public LocalDate getDataRetorno() {
+        return dataRetorno;
+    }
+
+    public StatusMovimentacao getStatusMovimentacao() {
+        return statusMovimentacao;
+    }
+
+    public String getPlacaCarro() {
+        return placaCarro;
+    }
+
+    public String getModeloCarro() {
+        return modeloCarro;
+    }
+
+    public String getNomeMotorista() {
+        return nomeMotorista;
+    }
+
+    public String getCnhMotorista() {
+        return cnhMotorista;
+    }
+
+    @Override
+    public String toString() {
+        return "MovimentacaoResumo [codigo=" + codigo + ", dataSaida=" + dataSaida
+                + ", dataRetorno=" + dataRetorno + ", statusMovimentacao=" + statusMovimentacao
+                + ", placaCarro=" + placaCarro + ", modeloCarro=" + modeloCarro + ", nomeMotorista=" + nomeMotorista
+                + ", cnhMotorista=" + cnhMotorista + "]";
+    }
+
+}
@@ -0,0 +1,45 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Linha da tabela de pessoas (listagem e escolha da pessoa da aplicacao).
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ */
+public class PessoaResumo {
+
+    private final Long codigo;
+    private final String nome;
+    private final String cpf;
+    private final LocalDate dataNascimento;
+
+    public PessoaResumo(Long codigo, String nome, String cpf, LocalDate dataNascimento) {
+        this.codigo = codigo;
+        this.nome = nome;
+        this.cpf = cpf;
+        this.dataNascimento = dataNascimento;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public String getCpf() {
+        return cpf;
+    }
+
+    public LocalDate getDataNascimento() {
+        return dataNascimento;
+    }
+
+    @Override
+    public String toString() {
+        return "PessoaResumo [codigo=" + codigo + ", nome=" + nome + ", cpf=" + cpf
+                + ", dataNascimento=" + dataNascimento + "]";
+    }
+
+}
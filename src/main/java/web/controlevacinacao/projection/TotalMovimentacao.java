@@ -0,0 +1,60 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Totais de um grupo do relatorio de movimentacoes (um carro, um motorista ou
+ * um dia), lidos de uso_frota_diario: a quantidade de viagens concluidas e a
+ * soma de kmRetorno - kmSaida delas.
+ */
+public class TotalMovimentacao {
+
+    private final String grupo;
+    private final String detalhe;
+    private final LocalDate dia;
+    private final Long quantidade;
+    private final Long kmPercorridos;
+
+    public TotalMovimentacao(String grupo, String detalhe, Long quantidade, Long kmPercorridos) {
+        this.grupo = grupo;
+        this.detalhe = detalhe;
+        this.dia = null;
+        this.quantidade = quantidade;
+        this.kmPercorridos = kmPercorridos == null ? 0L : kmPercorridos;
+    }
+
+    public TotalMovimentacao(LocalDate dia, Long quantidade, Long kmPercorridos) {
+        this.grupo = null;
+        this.detalhe = null;
+        this.dia = dia;
+        this.quantidade = quantidade;
+        this.kmPercorridos = kmPercorridos == null ? 0L : kmPercorridos;
+    }
+
+    public String getGrupo() {
+        return grupo;
+    }
+
+    public String getDetalhe() {
+        return detalhe;
+    }
+
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public Long getQuantidade() {
+        return quantidade;
+    }
+
+    public Long getKmPercorridos() {
+        return kmPercorridos;
+    }
+
+    @Override
+    public String toString() {
+        return "TotalMovimentacao [grupo=" + grupo + ", detalhe=" + detalhe + ", dia=" + dia + ", quantidade="
+                + quantidade + ", kmPercorridos=" + kmPercorridos + "]";
+    }
+
+}
@@ -0,0 +1,67 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Uso de um carro em um dia, lido da tabela consolidada uso_frota_diario.
+ */
+public class UsoFrotaCarroDia {
+
+    private static final double MINUTOS_DIA = 24 * 60;
+
+    private final LocalDate dia;
+    private final Long codigoCarro;
+    private final String placa;
+    private final Long viagens;
+    private final Long kmPercorridos;
+    private final Long minutosUso;
+
+    public UsoFrotaCarroDia(LocalDate dia, Long codigoCarro, String placa, Long viagens, Long kmPercorridos,
+            Long minutosUso) {
+        this.dia = dia;
+        this.codigoCarro = codigoCarro;
+        this.placa = placa;
+        this.viagens = viagens;
+        this.kmPercorridos = kmPercorridos;
+        this.minutosUso = minutosUso;
+    }
+
+    /**
+     * Percentual do dia em que o carro esteve em uso (limitado a 100, pois uma
+     * viagem que atravessa a meia-noite eh contada inteira no dia da saida).
+     */
+    public double getUtilizacao() {
+        return Math.min(100.0, minutosUso * 100.0 / MINUTOS_DIA);
+    }
+
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public Long getCodigoCarro() {
+        return codigoCarro;
+    }
+
+    public String getPlaca() {
+        return placa;
+    }
+
+    public Long getViagens() {
+        return viagens;
+    }
+
+    public Long getKmPercorridos() {
+        return kmPercorridos;
+    }
+
+    public Long getMinutosUso() {
+        return minutosUso;
+    }
+
+    @Override
+    public String toString() {
+        return "UsoFrotaCarroDia [dia=" + dia + ", placa=" + placa + ", viagens=" + viagens + ", kmPercorridos="
+                + kmPercorridos + ", minutosUso=" + minutosUso + "]";
+    }
+
+}
@@ -0,0 +1,60 @@
+package web.controlevacinacao.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Uso de toda a frota em um dia. A utilizacao compara os minutos de uso com o
+ * tempo disponivel dos carros da frota (tamanhoFrota * 24h).
+ */
+public class UsoFrotaDia {
+
+    private static final double MINUTOS_DIA = 24 * 60;
+
+    private final LocalDate dia;
+    private final Long viagens;
+    private final Long kmPercorridos;
+    private final Long minutosUso;
+    private final Long tamanhoFrota;
+
+    public UsoFrotaDia(LocalDate dia, Long viagens, Long kmPercorridos, Long minutosUso, Long tamanhoFrota) {
+        this.dia = dia;
+        this.viagens = viagens;
+        this.kmPercorridos = kmPercorridos;
+        this.minutosUso = minutosUso;
+        this.tamanhoFrota = tamanhoFrota;
+    }
+
+    public double getUtilizacao() {
+        if (tamanhoFrota == null || tamanhoFrota == 0) {
+            return 0;
+        }
+        return Math.min(100.0, minutosUso * 100.0 / (tamanhoFrota * MINUTOS_DIA));
+    }
+
+    public LocalDate getDia() {
+        return dia;
+    }
+
+    public Long getViagens() {
+        return viagens;
+    }
+
+    public Long getKmPercorridos() {
+        return kmPercorridos;
+    }
+
+    public Long getMinutosUso() {
+        return minutosUso;
+    }
+
+    public Long getTamanhoFrota() {
+        return tamanhoFrota;
+    }
+
+    @Override
+    public String toString() {
+        return "UsoFrotaDia [dia=" + dia + ", viagens=" + viagens + ", kmPercorridos=" + kmPercorridos
+                + ", minutosUso=" + minutosUso + ", tamanhoFrota=" + tamanhoFrota + "]";
+    }
+
+}
@@ -0,0 +1,42 @@
+package web.controlevacinacao.projection;
+
+/**
+ * Viagens e km de um motorista em um periodo, somados da tabela uso_frota_diario.
+ */
+public class UsoFrotaMotorista {
+
+    private final Long codigoMotorista;
+    private final String nome;
+    private final Long viagens;
+    private final Long kmPercorridos;
+
+    public UsoFrotaMotorista(Long codigoMotorista, String nome, Long viagens, Long kmPercorridos) {
+        this.codigoMotorista = codigoMotorista;
+        this.nome = nome;
+        this.viagens = viagens;
+        this.kmPercorridos = kmPercorridos;
+    }
+
+    public Long getCodigoMotorista() {
+        return codigoMotorista;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public Long getViagens() {
+        return viagens;
+    }
+
+    public Long getKmPercorridos() {
+        return kmPercorridos;
+    }
+
+    @Override
+    public String toString() {
+        return "UsoFrotaMotorista [codigoMotorista=" + codigoMotorista + ", nome=" + nome + ", viagens=" + viagens
+                + ", kmPercorridos=" + kmPercorridos + "]";
+    }
+
+}
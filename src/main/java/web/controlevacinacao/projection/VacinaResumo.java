@@ -0,0 +1,41 @@
+package web.controlevacinacao.projection;
+
+import java.io.Serializable;
+
+/**
+ * Linha da tabela de vacinas (listagem e escolha da vacina do lote).
+ * Montada direto pela JPQL (select new), sem passar pelo contexto de persistencia.
+ * Eh Serializable porque as paginas de resultado podem ficar no cache do Redis.
+ */
+public class VacinaResumo implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Long codigo;
+    private final String nome;
+    private final String descricao;
+
+    public VacinaResumo(Long codigo, String nome, String descricao) {
+        this.codigo = codigo;
+        this.nome = nome;
+        this.descricao = descricao;
+    }
+
+    public Long getCodigo() {
+        return codigo;
+    }
+
+    public String getNome() {
+        return nome;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+    @Override
+    public String toString() {
+        return "VacinaResumo [codigo=" + codigo + ", nome=" + nome + ", descricao=" + descricao + "]";
+    }
+
+}
@@ -0,0 +1,25 @@
+package web.controlevacinacao.relatorio;
+
+/**
+ * Formas de apresentar o relatorio de movimentacoes: cada movimentacao do
+ * periodo (HISTORICO) ou os totais agrupados por carro, por motorista ou por dia
+ * de saida.
+ */
+public enum AgrupamentoMovimentacao {
+
+    HISTORICO("Histórico detalhado"),
+    CARRO("Total por carro"),
+    MOTORISTA("Total por motorista"),
+    DIA("Total por dia");
+
+    private final String descricao;
+
+    AgrupamentoMovimentacao(String descricao) {
+        this.descricao = descricao;
+    }
+
+    public String getDescricao() {
+        return descricao;
+    }
+
+}
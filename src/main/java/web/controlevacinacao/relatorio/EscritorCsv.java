@@ -0,0 +1,81 @@
+package web.controlevacinacao.relatorio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Escreve CSV linha a linha diretamente em um OutputStream, no formato que o
+ * Excel em portugues abre sem configuracao: separador ";", datas dd/MM/yyyy e
+ * UTF-8 com BOM.
+ *
+ * Os metodos lancam UncheckedIOException para poderem ser chamados dentro dos
+ * consumidores das consultas em streaming; quem chama desembrulha a excecao.
+ */
+public class EscritorCsv {
+
+    private static final char SEPARADOR = ';';
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    private static final DateTimeFormatter FORMATO_HORA = DateTimeFormatter.ofPattern("HH:mm");
+
+    private final Writer saida;
+
+    public EscritorCsv(OutputStream saida) {
+        this.saida = new BufferedWriter(new OutputStreamWriter(saida, StandardCharsets.UTF_8));
+        escrever("\uFEFF");
+    }
+
+    public void linha(Object... valores) {
+        StringBuilder linha = new StringBuilder();
+        for (int i = 0; i < valores.length; i++) {
+            if (i > 0) {
+                linha.append(SEPARADOR);
+            }
+            linha.append(formatar(valores[i]));
+        }
+        escrever(linha.append("\r\n").toString());
+    }
+
+    /**
+     * Envia o que estiver no buffer. Nao fecha o OutputStream, que pertence a
+     * quem criou o escritor (a resposta HTTP, por exemplo).
+     */
+    public void terminar() throws IOException {
+        saida.flush();
+    }
+
+    private void escrever(String texto) {
+        try {
+            saida.write(texto);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String formatar(Object valor) {
+        if (valor == null) {
+            return "";
+        }
+        String texto;
+        if (valor instanceof LocalDate data) {
+            texto = FORMATO_DATA.format(data);
+        } else if (valor instanceof LocalTime hora) {
+            texto = FORMATO_HORA.format(hora);
+        } else {
+            texto = valor.toString();
+        }
+        if (texto.indexOf(SEPARADOR) >= 0 || texto.indexOf('"') >= 0 || texto.indexOf('\n') >= 0
+                || texto.indexOf('\r') >= 0) {
+            return '"' + texto.replace("\"", "\"\"") + '"';
+        }
+        return texto;
+    }
+
+}
@@ -0,0 +1,46 @@
+package web.controlevacinacao.relatorio;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Escreve um objeto JSON por linha (NDJSON) diretamente em um OutputStream,
+ * sem o array em volta: quem le nao precisa esperar o fim da resposta nem
+ * guardar o documento inteiro para comecar a processar.
+ *
+ * Como no EscritorCsv, os metodos lancam UncheckedIOException para poderem ser
+ * chamados dentro dos consumidores das consultas em streaming.
+ */
+public class EscritorNdjson {
+
+    private final OutputStream saida;
+    private final ObjectWriter escritor;
+
+    public EscritorNdjson(OutputStream saida, ObjectMapper objectMapper) {
+        this.saida = new BufferedOutputStream(saida);
+        this.escritor = objectMapper.writer();
+    }
+
+    public void linha(Object valor) {
+        try {
+            saida.write(escritor.writeValueAsBytes(valor));
+            saida.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Envia o que estiver no buffer. Nao fecha o OutputStream, que pertence a
+     * quem criou o escritor (a resposta HTTP, por exemplo).
+     */
+    public void terminar() throws IOException {
+        saida.flush();
+    }
+
+}
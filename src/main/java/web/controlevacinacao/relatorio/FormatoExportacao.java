@@ -0,0 +1,29 @@
+package web.controlevacinacao.relatorio;
+
+/**
+ * Formatos em que o resultado de uma pesquisa pode ser baixado: CSV para abrir
+ * no Excel e NDJSON (um objeto JSON por linha) para integracoes, que podem
+ * processar cada registro assim que ele chega.
+ */
+public enum FormatoExportacao {
+
+    CSV("text/csv;charset=UTF-8", "csv"),
+    NDJSON("application/x-ndjson", "ndjson");
+
+    private final String tipoConteudo;
+    private final String extensao;
+
+    FormatoExportacao(String tipoConteudo, String extensao) {
+        this.tipoConteudo = tipoConteudo;
+        this.extensao = extensao;
+    }
+
+    public String getTipoConteudo() {
+        return tipoConteudo;
+    }
+
+    public String getExtensao() {
+        return extensao;
+    }
+
+}
@@ -0,0 +1,5 @@
+package web.controlevacinacao.relatorio;
+
+public enum StatusTrabalhoRelatorio {
+    NA_FILA, GERANDO, CONCLUIDO, ERRO
+}
@@ -0,0 +1,144 @@
+package web.controlevacinacao.relatorio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import net.sf.jasperreports.engine.DefaultJasperReportsContext;
+import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JasperFillManager;
+import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.JasperReport;
+import net.sf.jasperreports.engine.SimpleJasperReportsContext;
+import net.sf.jasperreports.engine.util.JRLoader;
+import net.sf.jasperreports.repo.ReportResource;
+import net.sf.jasperreports.repo.RepositoryService;
+
+/**
+ * Templates compilados (.jasper) de /relatorios carregados uma unica vez, na
+ * inicializacao, e mantidos em memoria.
+ *
+ * O contexto do Jasper usado no preenchimento tem um RepositoryService que
+ * resolve os subrelatorios pelo nome do arquivo a partir desse mesmo cache, por
+ * isso o parametro SUBREPORT_DIR passa a ser apenas um prefixo vazio.
+ *
+ * Com relatorio.templates.recarregar=true (desenvolvimento) a data de modificacao
+ * de cada arquivo eh conferida a cada uso e o template eh recarregado quando o
+ * .jasper muda.
+ */
+@Component
+public class TemplatesRelatorio {
+
+    private static final Logger logger = LoggerFactory.getLogger(TemplatesRelatorio.class);
+
+    private static final String LOCALIZACAO = "classpath:relatorios/*.jasper";
+    private static final String EXTENSAO = ".jasper";
+
+    private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<>();
+    private final boolean recarregar;
+    private final SimpleJasperReportsContext contexto;
+
+    public TemplatesRelatorio(@Value("${relatorio.templates.recarregar:false}") boolean recarregar)
+            throws IOException, JRException {
+        this.recarregar = recarregar;
+        for (Resource recurso : new PathMatchingResourcePatternResolver().getResources(LOCALIZACAO)) {
+            String nome = recurso.getFilename().substring(0, recurso.getFilename().length() - EXTENSAO.length());
+            templates.put(nome, carregar(recurso));
+        }
+        logger.info("Templates de relatório carregados: {}", templates.keySet());
+
+        contexto = new SimpleJasperReportsContext(DefaultJasperReportsContext.getInstance());
+        contexto.setExtensions(RepositoryService.class, List.of(new RepositorioTemplates()));
+    }
+
+    public JasperReport obter(String nome) {
+        Template template = templates.get(nome);
+        if (template == null) {
+            throw new IllegalArgumentException("Template de relatório inexistente: " + nome);
+        }
+        if (recarregar && template.desatualizado()) {
+            try {
+                template = carregar(template.recurso());
+                templates.put(nome, template);
+                logger.info("Template de relatório recarregado: {}", nome);
+            } catch (IOException | JRException e) {
+                logger.warn("Não foi possível recarregar o template {}, usando a versão anterior: {}", nome,
+                        e.toString());
+            }
+        }
+        return template.relatorio();
+    }
+
+    public JasperPrint preencher(String nome, Map<String, Object> parametros, Connection conexao)
+            throws JRException {
+        return JasperFillManager.getInstance(contexto).fill(obter(nome), parametros, conexao);
+    }
+
+    private static Template carregar(Resource recurso) throws IOException, JRException {
+        try (InputStream entrada = recurso.getInputStream()) {
+            return new Template((JasperReport) JRLoader.loadObject(entrada), recurso, ultimaModificacao(recurso));
+        }
+    }
+
+    private static long ultimaModificacao(Resource recurso) {
+        try {
+            return recurso.lastModified();
+        } catch (IOException e) {
+            // Dentro de um jar a data nao esta disponivel; o template nunca fica desatualizado
+            return 0;
+        }
+    }
+
+    private record Template(JasperReport relatorio, Resource recurso, long modificadoEm) {
+
+        boolean desatualizado() {
+            return ultimaModificacao(recurso) != modificadoEm;
+        }
+
+    }
+
+    /**
+     * Atende as buscas de subrelatorio do Jasper ($P{SUBREPORT_DIR} + "Nome.jasper")
+     * com os templates ja carregados. Qualquer outro recurso segue para os
+     * repositorios padrao do Jasper.
+     */
+    private class RepositorioTemplates implements RepositoryService {
+
+        @Override
+        public net.sf.jasperreports.repo.Resource getResource(String uri) {
+            return null;
+        }
+
+        @Override
+        public void saveResource(String uri, net.sf.jasperreports.repo.Resource resource) {
+            throw new UnsupportedOperationException("Os templates de relatório são somente leitura");
+        }
+
+        @Override
+        public <K extends net.sf.jasperreports.repo.Resource> K getResource(String uri, Class<K> resourceType) {
+            if (uri == null || !resourceType.isAssignableFrom(ReportResource.class) || !uri.endsWith(EXTENSAO)) {
+                return null;
+            }
+            String nome = uri.substring(uri.lastIndexOf('/') + 1, uri.length() - EXTENSAO.length());
+            if (!templates.containsKey(nome)) {
+                return null;
+            }
+            ReportResource recurso = new ReportResource();
+            recurso.setReport(obter(nome));
+            return resourceType.cast(recurso);
+        }
+
+    }
+
+}
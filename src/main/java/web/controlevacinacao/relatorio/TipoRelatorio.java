@@ -0,0 +1,44 @@
+package web.controlevacinacao.relatorio;
+
+/**
+ * Relatorios que podem ser gerados pela aplicacao. O identificador eh usado nas
+ * URLs (/relatorios/solicitar/{identificador}) e o template eh o nome do arquivo
+ * .jasper em /relatorios, sem a extensao.
+ */
+public enum TipoRelatorio {
+
+    VACINAS("vacinas", "RelatorioSQLDiretoSimples", "VacinasSimples.pdf"),
+    VACINAS_LOTES("vacinaslotes", "RelatorioSQLDiretoComplexoParametros", "VacinasComLotes.pdf");
+
+    private final String identificador;
+    private final String template;
+    private final String nomeArquivo;
+
+    TipoRelatorio(String identificador, String template, String nomeArquivo) {
+        this.identificador = identificador;
+        this.template = template;
+        this.nomeArquivo = nomeArquivo;
+    }
+
+    public static TipoRelatorio doIdentificador(String identificador) {
+        for (TipoRelatorio tipo : values()) {
+            if (tipo.identificador.equals(identificador)) {
+                return tipo;
+            }
+        }
+        return null;
+    }
+
+    public String getIdentificador() {
+        return identificador;
+    }
+
+    public String getTemplate() {
+        return template;
+    }
+
+    public String getNomeArquivo() {
+        return nomeArquivo;
+    }
+
+}
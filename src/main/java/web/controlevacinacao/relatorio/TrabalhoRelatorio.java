@@ -0,0 +1,74 @@
+package web.controlevacinacao.relatorio;
+
+import java.nio.file.Path;
+import java.util.UUID;
+
+/**
+ * Uma solicitacao de geracao de relatorio acompanhada pela tela via polling.
+ *
+ * Varias solicitacoes identicas feitas enquanto o relatorio esta sendo gerado
+ * recebem o mesmo trabalho. O status eh alterado pela thread do executor e lido
+ * pelas requisicoes de acompanhamento, por isso os campos mutaveis sao volatile.
+ */
+public class TrabalhoRelatorio {
+
+    private final String id = UUID.randomUUID().toString();
+    private final TipoRelatorio tipo;
+    private final String chave;
+    private volatile StatusTrabalhoRelatorio status = StatusTrabalhoRelatorio.NA_FILA;
+    private volatile Path arquivo;
+    private volatile String erro;
+
+    public TrabalhoRelatorio(TipoRelatorio tipo, String chave) {
+        this.tipo = tipo;
+        this.chave = chave;
+    }
+
+    public void iniciou() {
+        status = StatusTrabalhoRelatorio.GERANDO;
+    }
+
+    public void concluiu(Path arquivo) {
+        this.arquivo = arquivo;
+        status = StatusTrabalhoRelatorio.CONCLUIDO;
+    }
+
+    public void falhou(String erro) {
+        this.erro = erro;
+        status = StatusTrabalhoRelatorio.ERRO;
+    }
+
+    public boolean isFinalizado() {
+        return status == StatusTrabalhoRelatorio.CONCLUIDO || status == StatusTrabalhoRelatorio.ERRO;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public TipoRelatorio getTipo() {
+        return tipo;
+    }
+
+    public String getChave() {
+        return chave;
+    }
+
+    public StatusTrabalhoRelatorio getStatus() {
+        return status;
+    }
+
+    public Path getArquivo() {
+        return arquivo;
+    }
+
+    public String getErro() {
+        return erro;
+    }
+
+    @Override
+    public String toString() {
+        return "TrabalhoRelatorio [id=" + id + ", tipo=" + tipo + ", status=" + status + ", erro=" + erro + "]";
+    }
+
+}
@@ -1,11 +1,13 @@
 package web.controlevacinacao.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Aplicacao;
 import web.controlevacinacao.model.Status;
 import web.controlevacinacao.repository.queries.aplicacao.AplicacaoQueries;
 
+@Transactional(readOnly = true)
 public interface AplicacaoRepository extends JpaRepository<Aplicacao, Long>, AplicacaoQueries {
 
     Aplicacao findByCodigoAndStatus (Long codigo, Status status);
@@ -1,27 +1,49 @@
 package web.controlevacinacao.repository;
 
-import java.util.Optional;
-
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Carro;
 import web.controlevacinacao.model.StatusCarro;
 import web.controlevacinacao.repository.queries.carro.CarroQueries; // Importe a interface CarroQueries
 
 @Repository
+@Transactional(readOnly = true)
 public interface CarroRepository extends JpaRepository<Carro, Long>, CarroQueries {
 
     // Método de busca simples por código e status (igual ao Pessoa)
-    Carro findByCodigoAndStatusCarro(Long codigo, StatusCarro ativo);
-    // --- NOVOS MÉTODOS PARA A VALIDAÇÃO DA PLACA ---
-    // 1. Para verificar se a placa já existe para QUALQUER carro (útil para cadastro)
-    Optional<Carro> findByPlaca(String placa);
-
-    // 2. Para verificar se a placa já existe para outro carro, EXCLUINDO o carro que está sendo alterado
-    // (útil para alteração, onde o próprio carro pode ter a mesma placa)
-    Optional<Carro> findByPlacaAndCodigoNot(String placa, Long codigo);
+    // Busca pela chave primaria para aproveitar o cache de segundo nivel
+    default Carro findByCodigoAndStatusCarro(Long codigo, StatusCarro ativo) {
+        return findById(codigo).filter(carro -> carro.getStatusCarro() == ativo).orElse(null);
+    }
+    // Validação da placa em uma consulta só: no cadastro (codigo nulo) vale qualquer carro,
+    // na alteração só os outros carros, porque o próprio carro pode manter a placa
+    @Query("select count(c) > 0 from Carro c where c.placa = :placa "
+            + "and (:codigo is null or c.codigo <> :codigo)")
+    boolean placaEmUso(@Param("placa") String placa, @Param("codigo") Long codigo);
+
     Object findByStatusCarro(StatusCarro disponivel);
 
+    // Troca o status apenas se o carro ainda estiver no status esperado e devolve
+    // quantas linhas mudaram (0 ou 1). Dois pedidos simultaneos nao passam juntos:
+    // o segundo UPDATE espera o bloqueio da linha e depois nao encontra mais o status.
+    // O Hibernate invalida a regiao do carro no cache de segundo nivel.
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Carro c set c.statusCarro = :novo, c.versao = c.versao + 1 "
+            + "where c.codigo = :codigo and c.statusCarro = :esperado")
+    int trocarStatus(@Param("codigo") Long codigo, @Param("esperado") StatusCarro esperado,
+            @Param("novo") StatusCarro novo);
+
+    // Quilometragem do carro na volta de uma movimentacao, que passa a ser o km de saida da proxima
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Carro c set c.kmAtual = :km, c.versao = c.versao + 1 where c.codigo = :codigo")
+    int registrarKm(@Param("codigo") Long codigo, @Param("km") Long km);
+
 
 }
\ No newline at end of file
@@ -1,11 +1,13 @@
 package web.controlevacinacao.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Lote;
 import web.controlevacinacao.model.Status;
 import web.controlevacinacao.repository.queries.lote.LoteQueries;
 
+@Transactional(readOnly = true)
 public interface LoteRepository extends JpaRepository<Lote, Long>, LoteQueries {
 
     Lote findByCodigoAndStatus (Long codigo, Status status);
@@ -3,19 +3,33 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Motorista;
 import web.controlevacinacao.model.Status;
 import web.controlevacinacao.repository.queries.motorista.MotoristaQueries;
 
 @Repository
+@Transactional(readOnly = true)
 public interface MotoristaRepository extends JpaRepository<Motorista, Long>, MotoristaQueries {
-    Motorista findByCodigoAndStatus(Long codigo, Status status);
-    
-    Motorista findByCnh(String cnh); 
+    // Busca pela chave primaria para aproveitar o cache de segundo nivel
+    default Motorista findByCodigoAndStatus(Long codigo, Status status) {
+        return findById(codigo).filter(motorista -> motorista.getStatus() == status).orElse(null);
+    }
     
     List<Motorista> findByStatus(Status status);
 
     Optional<Motorista> findByCodigo(Long codigo);
+
+    // Mesmo UPDATE condicional do CarroRepository.trocarStatus, para o motorista
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Motorista m set m.status = :novo, m.versao = m.versao + 1 "
+            + "where m.codigo = :codigo and m.status = :esperado")
+    int trocarStatus(@Param("codigo") Long codigo, @Param("esperado") Status esperado,
+            @Param("novo") Status novo);
 }
\ No newline at end of file
@@ -1,9 +1,17 @@
 package web.controlevacinacao.repository;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Carro;
 import web.controlevacinacao.model.Motorista;
@@ -12,6 +20,7 @@ import web.controlevacinacao.model.StatusMovimentacao;
 import web.controlevacinacao.repository.queries.movimentacao.MovimentacaoQueries;
 
 @Repository
+@Transactional(readOnly = true)
 public interface MovimentacaoRepository extends JpaRepository<Movimentacao, Long>, MovimentacaoQueries {
 
         Movimentacao findByCodigoAndStatusMovimentacao (Long codigo, StatusMovimentacao statusMovimentacao);
@@ -38,4 +47,33 @@ public interface MovimentacaoRepository extends JpaRepository<Movimentacao, Long
      */
     Optional<Movimentacao> findFirstByCarroAndDataRetornoIsNotNullOrderByDataRetornoDesc(Carro carro);
 
+    /**
+     * Movimentação em qualquer status já com carro e motorista carregados, para a alteração.
+     * @param codigo O código da movimentação.
+     * @return A movimentação, ou null se não existir.
+     */
+    @EntityGraph(attributePaths = { "carro", "motorista" })
+    Movimentacao findCompletoByCodigo(Long codigo);
+
+    /**
+     * Movimentações em um status já com carro e motorista carregados, para o painel de frota.
+     * @param statusMovimentacao O status procurado (normalmente ATIVA).
+     * @return As movimentações encontradas.
+     */
+    @EntityGraph(attributePaths = { "carro", "motorista" })
+    List<Movimentacao> findByStatusMovimentacao(StatusMovimentacao statusMovimentacao);
+
+    /**
+     * Finaliza a movimentação apenas se ela ainda estiver ATIVA, para que dois
+     * pedidos de finalização não liberem o carro duas vezes.
+     * @return 1 se a movimentação foi finalizada agora, 0 se já não estava ativa.
+     */
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Movimentacao m set m.statusMovimentacao = web.controlevacinacao.model.StatusMovimentacao.FINALIZADA, "
+            + "m.dataRetorno = :dataRetorno, m.horaRetorno = :horaRetorno, m.kmRetorno = :kmRetorno "
+            + "where m.codigo = :codigo and m.statusMovimentacao = web.controlevacinacao.model.StatusMovimentacao.ATIVA")
+    int encerrar(@Param("codigo") Long codigo, @Param("dataRetorno") LocalDate dataRetorno,
+            @Param("horaRetorno") LocalTime horaRetorno, @Param("kmRetorno") Long kmRetorno);
+
 }
\ No newline at end of file
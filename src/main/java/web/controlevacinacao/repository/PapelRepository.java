@@ -1,10 +1,12 @@
 package web.controlevacinacao.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Papel;
 
 
+@Transactional(readOnly = true)
 public interface PapelRepository extends JpaRepository<Papel, Long> {
 
 }
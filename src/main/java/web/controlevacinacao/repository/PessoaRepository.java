@@ -1,15 +1,28 @@
 package web.controlevacinacao.repository;
 
+import java.util.List;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Pessoa;
 import web.controlevacinacao.model.Status;
 import web.controlevacinacao.repository.queries.pessoa.PessoaQueries;
 
+@Transactional(readOnly = true)
 public interface PessoaRepository extends JpaRepository<Pessoa, Long>, PessoaQueries {
 
     Pessoa findByCodigoAndStatus(Long codigo, Status status);
-    Pessoa findByCpf(String cpf);
+
+    // Pessoas (ou motoristas) que ja usam o CPF ou a CNH informados, fora a propria
+    // pessoa em alteracao. Uma consulta cobre as duas restricoes unicas da tabela
+    // pessoa; cnh nulo verifica apenas o CPF.
+    @Query("select p from Pessoa p where (p.cpf = :cpf or treat(p as Motorista).cnh = :cnh) "
+            + "and (:codigo is null or p.codigo <> :codigo)")
+    List<Pessoa> buscarDuplicados(@Param("cpf") String cpf, @Param("cnh") String cnh,
+            @Param("codigo") Long codigo);
 
 
 
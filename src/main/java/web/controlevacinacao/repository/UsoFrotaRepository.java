@@ -0,0 +1,227 @@
+package web.controlevacinacao.repository;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import web.controlevacinacao.filter.RelatorioMovimentacaoFilter;
+import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.TotalMovimentacao;
+import web.controlevacinacao.projection.UsoFrotaCarroDia;
+import web.controlevacinacao.projection.UsoFrotaDia;
+import web.controlevacinacao.projection.UsoFrotaMotorista;
+import web.controlevacinacao.relatorio.AgrupamentoMovimentacao;
+
+/**
+ * Acesso a tabela consolidada uso_frota_diario. Nao ha entidade para ela: as
+ * gravacoes sao upserts e recalculos em SQL nativo e as leituras ja devolvem os
+ * totais prontos para os paineis.
+ */
+@Repository
+public class UsoFrotaRepository {
+
+    // Minutos inteiros entre a saida e o retorno, truncados por viagem como no UsoFrotaService;
+    // date + time no PostgreSQL resulta em timestamp
+    private static final String MINUTOS_USO = "greatest(coalesce(floor(extract(epoch from ((m.data_retorno + m.hora_retorno) "
+            + "- (m.data_saida + m.hora_saida))) / 60), 0), 0)";
+
+    // Mesma regra de Movimentacao.isViagemConcluida: movimentacoes canceladas ficam de fora
+    private static final String VIAGEM_CONCLUIDA = "m.status = 'FINALIZADA' and m.km_retorno is not null";
+
+    @PersistenceContext
+    private EntityManager em;
+
+    /**
+     * Soma os valores ao dia, carro e motorista, criando a linha se ainda nao
+     * existir. Uma viagem finalizada soma 1 viagem; a correcao de uma viagem ja
+     * somada subtrai os valores antigos (viagens = -1) antes de somar os novos.
+     */
+    public void ajustar(LocalDate dia, Long codigoCarro, Long codigoMotorista, int viagens, long kmPercorridos,
+            long minutosUso) {
+        em.createNativeQuery("insert into uso_frota_diario as u "
+                + "(dia, codigo_carro, codigo_motorista, viagens, km_percorridos, minutos_uso) "
+                + "values (:dia, :carro, :motorista, :viagens, :km, :minutos) "
+                + "on conflict (dia, codigo_carro, codigo_motorista) do update set "
+                + "viagens = u.viagens + excluded.viagens, "
+                + "km_percorridos = u.km_percorridos + excluded.km_percorridos, "
+                + "minutos_uso = u.minutos_uso + excluded.minutos_uso")
+                .setParameter("dia", dia)
+                .setParameter("carro", codigoCarro)
+                .setParameter("motorista", codigoMotorista)
+                .setParameter("viagens", viagens)
+                .setParameter("km", kmPercorridos)
+                .setParameter("minutos", minutosUso)
+                .executeUpdate();
+    }
+
+    /**
+     * Recalcula os dias do intervalo a partir das movimentacoes finalizadas. A
+     * tabela fica bloqueada para novos registros ate o fim da transacao, entao uma
+     * movimentacao finalizada durante o recalculo nao eh contada duas vezes nem
+     * perdida.
+     *
+     * @return quantidade de linhas (dia, carro, motorista) gravadas
+     */
+    public int reconstruir(LocalDate inicio, LocalDate fim) {
+        em.createNativeQuery("lock table uso_frota_diario in share row exclusive mode").executeUpdate();
+        em.createNativeQuery("delete from uso_frota_diario where dia between :inicio and :fim")
+                .setParameter("inicio", inicio)
+                .setParameter("fim", fim)
+                .executeUpdate();
+        return em.createNativeQuery("insert into uso_frota_diario "
+                + "(dia, codigo_carro, codigo_motorista, viagens, km_percorridos, minutos_uso) "
+                + "select m.data_saida, m.codigo_carro, m.codigo_motorista, count(*), "
+                + "sum(greatest(coalesce(m.km_retorno - m.km_saida, 0), 0)), sum(" + MINUTOS_USO + ") "
+                + "from movimentacao m "
+                + "where " + VIAGEM_CONCLUIDA + " and m.data_saida between :inicio and :fim "
+                + "group by m.data_saida, m.codigo_carro, m.codigo_motorista")
+                .setParameter("inicio", inicio)
+                .setParameter("fim", fim)
+                .executeUpdate();
+    }
+
+    public LocalDate primeiraSaida() {
+        Object resultado = em.createNativeQuery("select min(data_saida) from movimentacao").getSingleResult();
+        return resultado == null ? null : converterData(resultado);
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<UsoFrotaCarroDia> usoPorCarro(LocalDate inicio, LocalDate fim) {
+        List<Object[]> linhas = em.createNativeQuery("select u.dia, u.codigo_carro, c.placa, sum(u.viagens), "
+                + "sum(u.km_percorridos), sum(u.minutos_uso) "
+                + "from uso_frota_diario u inner join carro c on c.codigo = u.codigo_carro "
+                + "where u.dia between :inicio and :fim "
+                + "group by u.dia, u.codigo_carro, c.placa "
+                + "order by u.dia, c.placa")
+                .setParameter("inicio", inicio)
+                .setParameter("fim", fim)
+                .getResultList();
+        return linhas.stream()
+                .map(l -> new UsoFrotaCarroDia(converterData(l[0]), numero(l[1]), (String) l[2], numero(l[3]),
+                        numero(l[4]), numero(l[5])))
+                .toList();
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<UsoFrotaMotorista> usoPorMotorista(LocalDate inicio, LocalDate fim) {
+        List<Object[]> linhas = em.createNativeQuery("select u.codigo_motorista, p.nome, sum(u.viagens), "
+                + "sum(u.km_percorridos) "
+                + "from uso_frota_diario u inner join pessoa p on p.codigo = u.codigo_motorista "
+                + "where u.dia between :inicio and :fim "
+                + "group by u.codigo_motorista, p.nome "
+                + "order by p.nome")
+                .setParameter("inicio", inicio)
+                .setParameter("fim", fim)
+                .getResultList();
+        return linhas.stream()
+                .map(l -> new UsoFrotaMotorista(numero(l[0]), (String) l[1], numero(l[2]), numero(l[3])))
+                .toList();
+    }
+
+    /**
+     * Totais da frota por dia. O tamanho da frota eh o numero atual de carros nao
+     * inativos, usado como base da utilizacao de todos os dias.
+     */
+    @SuppressWarnings("unchecked")
+    public List<UsoFrotaDia> usoPorDia(LocalDate inicio, LocalDate fim) {
+        List<Object[]> linhas = em.createNativeQuery("select u.dia, sum(u.viagens), sum(u.km_percorridos), "
+                + "sum(u.minutos_uso), (select count(*) from carro c where c.status_carro <> 'INATIVO') "
+                + "from uso_frota_diario u "
+                + "where u.dia between :inicio and :fim "
+                + "group by u.dia "
+                + "order by u.dia")
+                .setParameter("inicio", inicio)
+                .setParameter("fim", fim)
+                .getResultList();
+        return linhas.stream()
+                .map(l -> new UsoFrotaDia(converterData(l[0]), numero(l[1]), numero(l[2]), numero(l[3]),
+                        numero(l[4])))
+                .toList();
+    }
+
+    /**
+     * Totais do relatorio de movimentacoes (viagens concluidas e km percorridos)
+     * agrupados por carro, motorista ou dia, lidos da tabela consolidada: o custo
+     * depende do numero de dias, carros e motoristas do periodo, e nao do numero
+     * de movimentacoes. As linhas sao lidas do banco aos poucos (cursor).
+     */
+    @Transactional(readOnly = true)
+    @SuppressWarnings("unchecked")
+    public void percorrerTotais(RelatorioMovimentacaoFilter filtro, AgrupamentoMovimentacao agrupamento,
+            Consumer<TotalMovimentacao> consumidor) {
+        String selecao;
+        String agrupamentoOrdem;
+        switch (agrupamento) {
+            case CARRO -> {
+                selecao = "c.placa, c.modelo";
+                agrupamentoOrdem = " group by c.codigo, c.placa, c.modelo order by c.placa";
+            }
+            case MOTORISTA -> {
+                selecao = "p.nome, p.cnh";
+                agrupamentoOrdem = " group by p.codigo, p.nome, p.cnh order by p.nome";
+            }
+            case DIA -> {
+                selecao = "u.dia";
+                agrupamentoOrdem = " group by u.dia order by u.dia";
+            }
+            default -> throw new IllegalArgumentException("Agrupamento sem totais: " + agrupamento);
+        }
+        Map<String, Object> parametros = new HashMap<>();
+        Query consulta = em.createNativeQuery("select " + selecao + ", sum(u.viagens), sum(u.km_percorridos) "
+                + "from uso_frota_diario u "
+                + "inner join carro c on c.codigo = u.codigo_carro "
+                + "inner join pessoa p on p.codigo = u.codigo_motorista"
+                + condicoesRelatorio(filtro, parametros)
+                + agrupamentoOrdem);
+        consulta.setHint(HibernateHints.HINT_FETCH_SIZE, PaginacaoUtil.TAMANHO_LOTE_STREAMING);
+        parametros.forEach(consulta::setParameter);
+        try (Stream<Object[]> linhas = consulta.getResultStream()) {
+            linhas.map(l -> agrupamento == AgrupamentoMovimentacao.DIA
+                    ? new TotalMovimentacao(converterData(l[0]), numero(l[1]), numero(l[2]))
+                    : new TotalMovimentacao((String) l[0], (String) l[1], numero(l[2]), numero(l[3])))
+                    .forEach(consumidor);
+        }
+    }
+
+    private static String condicoesRelatorio(RelatorioMovimentacaoFilter filtro, Map<String, Object> parametros) {
+        StringBuilder condicoes = new StringBuilder();
+        if (filtro.getDataInicial() != null) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("u.dia >= :dataInicial");
+            parametros.put("dataInicial", filtro.getDataInicial());
+        }
+        if (filtro.getDataFinal() != null) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("u.dia <= :dataFinal");
+            parametros.put("dataFinal", filtro.getDataFinal());
+        }
+        if (StringUtils.hasText(filtro.getPlacaCarro())) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("lower(c.placa) = :placa");
+            parametros.put("placa", filtro.getPlacaCarro().trim().toLowerCase());
+        }
+        if (StringUtils.hasText(filtro.getCnhMotorista())) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("p.cnh = :cnh");
+            parametros.put("cnh", filtro.getCnhMotorista().trim());
+        }
+        return condicoes.toString();
+    }
+
+    private static Long numero(Object valor) {
+        return valor == null ? 0L : ((Number) valor).longValue();
+    }
+
+    private static LocalDate converterData(Object valor) {
+        return valor instanceof Date data ? data.toLocalDate() : (LocalDate) valor;
+    }
+
+}
@@ -1,9 +1,11 @@
 package web.controlevacinacao.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Usuario;
 
+@Transactional(readOnly = true)
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 	
 	Usuario findByNomeUsuarioIgnoreCase(String nomeUsuario);
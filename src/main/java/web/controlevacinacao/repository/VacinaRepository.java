@@ -1,13 +1,18 @@
 package web.controlevacinacao.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.transaction.annotation.Transactional;
 
 import web.controlevacinacao.model.Status;
 import web.controlevacinacao.model.Vacina;
 import web.controlevacinacao.repository.queries.vacina.VacinaQueries;
 
+@Transactional(readOnly = true)
 public interface VacinaRepository extends JpaRepository<Vacina, Long>, VacinaQueries {
 
-    Vacina findByCodigoAndStatus (Long codigo, Status status);
+    // Busca pela chave primaria para aproveitar o cache de segundo nivel
+    default Vacina findByCodigoAndStatus(Long codigo, Status status) {
+        return findById(codigo).filter(vacina -> vacina.getStatus() == status).orElse(null);
+    }
 
 }
@@ -1,14 +1,24 @@
 package web.controlevacinacao.repository.queries.aplicacao;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.AplicacaoFilter;
 import web.controlevacinacao.model.Aplicacao;
+import web.controlevacinacao.projection.AplicacaoResumo;
 
 public interface AplicacaoQueries {
 
-	Page<Aplicacao> pesquisar(AplicacaoFilter filtro, Pageable pageable);
+	Page<AplicacaoResumo> pesquisar(AplicacaoFilter filtro, Pageable pageable, String cursor);
+
+	/**
+	 * Entrega ao consumidor todas as aplicacoes do filtro, na ordem pedida, lidas do
+	 * banco aos poucos (cursor), sem paginar nem montar a lista em memoria.
+	 */
+	void exportar(AplicacaoFilter filtro, Sort sort, Consumer<AplicacaoResumo> consumidor);
 	
 	Aplicacao buscarCompletoCodigo(Long codigo);
 }
@@ -1,12 +1,17 @@
 package web.controlevacinacao.repository.queries.aplicacao;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
@@ -14,13 +19,43 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import web.controlevacinacao.filter.AplicacaoFilter;
 import web.controlevacinacao.model.Aplicacao;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
 import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.AplicacaoResumo;
 
+@Transactional(readOnly = true)
 public class AplicacaoQueriesImpl implements AplicacaoQueries {
 
+	private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.PROXIMA_PAGINA;
+
+	private static final String CONSULTA_RESUMO =
+			"select new web.controlevacinacao.projection.AplicacaoResumo(a.codigo, a.data, a.lote.codigo, a.pessoa.cpf) " +
+			"from Aplicacao a";
+
+	// Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+	private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+	static {
+		CONDICOES.put("codigo", "a.codigo = :codigo");
+		CONDICOES.put("inicioValidade", "a.data >= :inicioValidade");
+		CONDICOES.put("fimValidade", "a.data <= :fimValidade");
+		CONDICOES.put("cpf", "a.pessoa.cpf like :cpf");
+		CONDICOES.put("codigoLote", "a.lote.codigo = :codigoLote");
+	}
+
 	@PersistenceContext
 	private EntityManager em;
 
+	@Autowired
+	private ContagemCache contagemCache;
+
+	@Autowired
+	private ConsultaCache consultaCache;
+
 	@Override
 	public Aplicacao buscarCompletoCodigo(Long codigo) {
 		String query = "select distinct a from Aplicacao a inner join fetch a.pessoa inner join fetch a.lote inner join fetch a.lote.vacina where a.status = 'ATIVO' and a.codigo = :codigo";
@@ -30,66 +65,83 @@ public class AplicacaoQueriesImpl implements AplicacaoQueries {
 	}
 
 	@Override
-	public Page<Aplicacao> pesquisar(AplicacaoFilter filtro, Pageable pageable) {
+	public Page<AplicacaoResumo> pesquisar(AplicacaoFilter filtro, Pageable pageable, String cursor) {
+		Map<String, Object> parametros = parametrosPesquisa(filtro);
+
+		// A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+		Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+		Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+		boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Aplicacao.class, parametrosPagina, em);
+
+		// Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+		// entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+		String chave = ConsultaCache.chave("Aplicacao", parametrosPagina.keySet(), pageable.getSort());
+		ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+			StringBuilder condicoes = condicoesPesquisa(parametros.keySet());
+			StringBuilder queryAplicacoes = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+			if (usandoKeyset) {
+				PaginacaoUtil.acrescentarCondicaoKeyset(queryAplicacoes, lido, "a");
+			}
+			PaginacaoUtil.prepararOrdemJPQL(queryAplicacoes, "a", pageable);
+			return new ConsultaMontada(queryAplicacoes.toString(), PaginacaoUtil.montarQueryTotal("Aplicacao", "a", condicoes));
+		});
+		TypedQuery<AplicacaoResumo> typedQuery = em.createQuery(consulta.consulta(), AplicacaoResumo.class);
+		PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
+		PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+		List<AplicacaoResumo> aplicacoes = typedQuery.getResultList();
+
+		return PaginacaoUtil.criarPagina(aplicacoes, pageable, ESTRATEGIA_CONTAGEM,
+				() -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Aplicacao.class, consulta.consultaTotal(),
+						parametros, em, contagemCache));
+	}
 
-		StringBuilder queryAplicacoes = new StringBuilder(
-				"select distinct a from Aplicacao a inner join fetch a.pessoa inner join fetch a.lote inner join fetch a.lote.vacina");
-		StringBuilder condicoes = new StringBuilder();
-		Map<String, Object> parametros = new HashMap<>();
+	@Override
+	public void exportar(AplicacaoFilter filtro, Sort sort, Consumer<AplicacaoResumo> consumidor) {
+		Map<String, Object> parametros = parametrosPesquisa(filtro);
+		StringBuilder queryAplicacoes = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet()));
+		PaginacaoUtil.prepararOrdemJPQL(queryAplicacoes, "a", Pageable.unpaged(sort));
+		PaginacaoUtil.percorrer(em.createQuery(queryAplicacoes.toString(), AplicacaoResumo.class), parametros,
+				consumidor);
+	}
 
-		preencherCondicoesEParametros(filtro, condicoes, parametros);
+	// Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+	private static StringBuilder condicoesPesquisa(Set<String> campos) {
+		StringBuilder condicoes = new StringBuilder();
+		boolean primeiraCondicao = true;
+		for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+			if (campos.contains(condicao.getKey())) {
+				primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+				condicoes.append(condicao.getValue());
+			}
+		}
 
 		if (condicoes.isEmpty()) {
 			condicoes.append(" where a.status = 'ATIVO'");
 		} else {
 			condicoes.append(" and a.status = 'ATIVO'");
 		}
-
-		queryAplicacoes.append(condicoes);
-		PaginacaoUtil.prepararOrdemJPQL(queryAplicacoes, "a", pageable);
-		TypedQuery<Aplicacao> typedQuery = em.createQuery(queryAplicacoes.toString(), Aplicacao.class);
-		PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-		PaginacaoUtil.preencherParametros(parametros, typedQuery);
-		List<Aplicacao> aplicacoes = typedQuery.getResultList();
-
-		long totalAplicacoes = PaginacaoUtil.getTotalRegistros("Aplicacao", "a", condicoes, parametros, em);
-
-		return new PageImpl<>(aplicacoes, pageable, totalAplicacoes);
+		return condicoes;
 	}
 
-	private void preencherCondicoesEParametros(AplicacaoFilter filtro, StringBuilder condicoes,
-			Map<String, Object> parametros) {
-		boolean condicao = false;
-
+	// Apenas os campos preenchidos viram parametros; os nomes bastam para montar as condicoes
+	private Map<String, Object> parametrosPesquisa(AplicacaoFilter filtro) {
+		Map<String, Object> parametros = new HashMap<>();
 		if (filtro.getCodigo() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("a.codigo = :codigo");
 			parametros.put("codigo", filtro.getCodigo());
-			condicao = true;
 		}
 		if (filtro.getDataInicial() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("a.data >= :inicioValidade");
 			parametros.put("inicioValidade", filtro.getDataInicial());
-			condicao = true;
 		}
 		if (filtro.getDataFinal() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("a.data <= :fimValidade");
 			parametros.put("fimValidade", filtro.getDataFinal());
-			condicao = true;
 		}
 		if (StringUtils.hasText(filtro.getCpf())) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("a.pessoa.cpf like :cpf");
-			parametros.put("cpf", "%" + filtro.getCpf() + "%");
-			condicao = true;
+			parametros.put("cpf", "%" + filtro.getCpf().trim() + "%");
 		}
 		if (filtro.getCodigoLote() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("a.lote.codigo = :codigoLote");
 			parametros.put("codigoLote", filtro.getCodigoLote());
 		}
+		return parametros;
 	}
 
 }
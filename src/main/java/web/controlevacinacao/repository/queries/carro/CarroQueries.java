@@ -1,13 +1,30 @@
 package web.controlevacinacao.repository.queries.carro;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.CarroFilter;
 import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.projection.CarroResumo;
 
 public interface CarroQueries {
 
-    public Page<Carro> pesquisar(CarroFilter filtro, Pageable pageable);
+    public Page<CarroResumo> pesquisar(CarroFilter filtro, Pageable pageable, String cursor);
+
+    /**
+     * Entrega ao consumidor todos os carros do filtro, na ordem pedida, lidos do
+     * banco aos poucos (cursor), sem paginar nem montar a lista em memoria.
+     */
+    public void exportar(CarroFilter filtro, Sort sort, Consumer<CarroResumo> consumidor);
+
+    /**
+     * Grava o carro do formulario com um unico comando: INSERT se ainda nao tem
+     * codigo, UPDATE (conferindo a versao) se ja tem. Executa na hora, para que
+     * uma violacao de restricao chegue a quem chamou.
+     */
+    public void gravar(Carro carro);
 
 }
\ No newline at end of file
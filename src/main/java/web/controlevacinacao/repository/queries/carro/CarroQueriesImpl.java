@@ -1,12 +1,19 @@
 package web.controlevacinacao.repository.queries.carro;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils; // Important for checking if string is null or empty
 
 import jakarta.persistence.EntityManager;
@@ -14,82 +21,144 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import web.controlevacinacao.filter.CarroFilter;
 import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
 import web.controlevacinacao.pagination.PaginacaoUtil; // Your utility for pagination
+import web.controlevacinacao.projection.CarroResumo;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
 
+@Transactional(readOnly = true)
 public class CarroQueriesImpl implements CarroQueries {
 
+    private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.CACHE;
+
+    private static final String CONSULTA_RESUMO =
+            "select new web.controlevacinacao.projection.CarroResumo(c.codigo, c.placa, c.modelo, c.cor, c.kmAtual, c.statusCarro) " +
+            "from Carro c";
+
+    // Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+    private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+    static {
+        CONDICOES.put("codigo", "c.codigo = :codigo");
+        // Using lower() for case-insensitive search
+        CONDICOES.put("modelo", "lower(c.modelo) like :modelo");
+        CONDICOES.put("cor", "lower(c.cor) like :cor");
+        CONDICOES.put("kmInicial", "c.kmAtual >= :kmInicial");
+        CONDICOES.put("kmFinal", "c.kmAtual <= :kmFinal");
+        CONDICOES.put("placa", "lower(c.placa) like :placa");
+    }
+
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private ContagemCache contagemCache;
+
+    @Autowired
+    private ConsultaCache consultaCache;
+
+    @Autowired
+    private IndiceUnicidade indiceUnicidade;
+
     /**
-     * Fills the WHERE conditions and parameters for the JPQL query based on the
-     * CarroFilter.
-     * 
+     * Fills the named parameters for the JPQL query based on the CarroFilter.
+     * Only the filled fields become parameters, so the parameter names are enough
+     * to build the WHERE conditions (see condicoesPesquisa).
+     *
      * @param filtro     The CarroFilter object with search criteria.
-     * @param condicoes  StringBuilder to append the WHERE/AND clauses.
-     * @param parametros Map to store the named parameters and their values.
+     * @return Map with the named parameters and their values.
      */
-    private void preencherCondicoesEParametros(CarroFilter filtro, StringBuilder condicoes,
-            Map<String, Object> parametros) {
-        boolean primeiraCondicao = true; // Flag to determine if "WHERE" or "AND" is needed
-
-        // Filter by Código
+    private Map<String, Object> parametrosPesquisa(CarroFilter filtro) {
+        Map<String, Object> parametros = new HashMap<>();
         if (filtro.getCodigo() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("c.codigo = :codigo");
             parametros.put("codigo", filtro.getCodigo());
         }
-
-        // Filter by Modelo
         if (StringUtils.hasText(filtro.getModelo())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            // Using lower() for case-insensitive search
-            condicoes.append("lower(c.modelo) like :modelo");
-            parametros.put("modelo", "%" + filtro.getModelo().toLowerCase() + "%");
+            parametros.put("modelo", "%" + filtro.getModelo().trim().toLowerCase() + "%");
         }
-
-        // Filter by Cor
         if (StringUtils.hasText(filtro.getCor())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            // Using lower() for case-insensitive search
-            condicoes.append("lower(c.cor) like :cor");
-            parametros.put("cor", "%" + filtro.getCor().toLowerCase() + "%");
+            parametros.put("cor", "%" + filtro.getCor().trim().toLowerCase() + "%");
         }
-
-        // Filter by KM Inicial (min kmAtual)
         if (filtro.getKmInicial() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("c.kmAtual >= :kmInicial");
             parametros.put("kmInicial", filtro.getKmInicial());
         }
-
-        // Filter by KM Final (max kmAtual)
         if (filtro.getKmFinal() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("c.kmAtual <= :kmFinal");
             parametros.put("kmFinal", filtro.getKmFinal());
         }
-
-        // Filter by Placa
+        // For general search, 'like' is preferred for placa
         if (StringUtils.hasText(filtro.getPlaca())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            // Exact match or 'like' depending on your business rule for placa
-            // For general search, 'like' is often preferred.
-            condicoes.append("lower(c.placa) like :placa");
-            parametros.put("placa", "%" + filtro.getPlaca().toLowerCase() + "%");
+            parametros.put("placa", "%" + filtro.getPlaca().trim().toLowerCase() + "%");
         }
+        return parametros;
     }
 
+    // O CarroService limpa este cache a cada escrita
+    @Cacheable(cacheNames = "carros", keyGenerator = "pesquisaKeyGenerator")
+    // Nao eh readOnly: a pesquisa alimenta o ETag da tela e le do banco principal (ReplicaDataSourceConfig)
+    @Transactional
     @Override
-    public Page<Carro> pesquisar(CarroFilter filtro, Pageable pageable) {
+    public Page<CarroResumo> pesquisar(CarroFilter filtro, Pageable pageable, String cursor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro); // Holds the query parameters
+
+        // A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+        Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+        Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+        boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Carro.class, parametrosPagina, em);
+
+        // Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+        // entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+        String chave = ConsultaCache.chave("Carro", parametrosPagina.keySet(), pageable.getSort());
+        ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+            StringBuilder condicoes = condicoesPesquisa(parametros.keySet());
+            StringBuilder queryCarros = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+            if (usandoKeyset) {
+                PaginacaoUtil.acrescentarCondicaoKeyset(queryCarros, lido, "c");
+            }
+            PaginacaoUtil.prepararOrdemJPQL(queryCarros, "c", pageable);
+            return new ConsultaMontada(queryCarros.toString(), PaginacaoUtil.montarQueryTotal("Carro", "c", condicoes));
+        });
 
-        StringBuilder queryCarros = new StringBuilder("select distinct c from Carro c");
-        StringBuilder condicoes = new StringBuilder(); // Will hold the WHERE/AND clauses
+        // Create the TypedQuery
+        TypedQuery<CarroResumo> typedQuery = em.createQuery(consulta.consulta(), CarroResumo.class);
 
-        Map<String, Object> parametros = new HashMap<>(); // Holds the query parameters
+        // Apply pagination (offset and limit)
+        PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
 
-        // Populate conditions and parameters based on the filter
-        preencherCondicoesEParametros(filtro, condicoes, parametros);
+        // Set the query parameters
+        PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+
+        // Execute the query and get the result list
+        List<CarroResumo> carros = typedQuery.getResultList();
+
+        return PaginacaoUtil.criarPagina(carros, pageable, ESTRATEGIA_CONTAGEM,
+                () -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Carro.class, consulta.consultaTotal(),
+                        parametros, em, contagemCache));
+    }
+
+    // Sem cache: a exportacao percorre todas as linhas do filtro, nao uma pagina
+    @Override
+    public void exportar(CarroFilter filtro, Sort sort, Consumer<CarroResumo> consumidor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
+        StringBuilder queryCarros = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet()));
+        PaginacaoUtil.prepararOrdemJPQL(queryCarros, "c", Pageable.unpaged(sort));
+        PaginacaoUtil.percorrer(em.createQuery(queryCarros.toString(), CarroResumo.class), parametros, consumidor);
+    }
+
+    // Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+    private static StringBuilder condicoesPesquisa(Set<String> campos) {
+        StringBuilder condicoes = new StringBuilder();
+        boolean primeiraCondicao = true; // Flag to determine if "WHERE" or "AND" is needed
+        for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+            if (campos.contains(condicao.getKey())) {
+                primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+                condicoes.append(condicao.getValue());
+            }
+        }
 
         // Always filter by ATIVO status, unless explicitly allowed otherwise by the
         // filter
@@ -98,28 +167,37 @@ public class CarroQueriesImpl implements CarroQueries {
         } else {
             condicoes.append(" and c.statusCarro = 'ATIVO'");
         }
+        return condicoes;
+    }
 
-        queryCarros.append(condicoes); // Append the conditions to the main query
-
-        // Prepare the ordering (if specified in Pageable)
-        PaginacaoUtil.prepararOrdemJPQL(queryCarros, "c", pageable);
-
-        // Create the TypedQuery
-        TypedQuery<Carro> typedQuery = em.createQuery(queryCarros.toString(), Carro.class);
-
-        // Apply pagination (offset and limit)
-        PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-
-        // Set the query parameters
-        PaginacaoUtil.preencherParametros(parametros, typedQuery);
-
-        // Execute the query and get the result list
-        List<Carro> carros = typedQuery.getResultList();
-
-        // Get the total number of records for pagination metadata
-        long totalCarros = PaginacaoUtil.getTotalRegistros("Carro", "c", condicoes, parametros, em);
-
-        // Return the Page object
-        return new PageImpl<>(carros, pageable, totalCarros);
+    @Transactional
+    @Override
+    public void gravar(Carro carro) {
+        if (carro.getCodigo() == null) {
+            em.persist(carro);
+            em.flush();
+            return;
+        }
+        // O merge (saveAndFlush) faria um SELECT para carregar o estado atual antes do
+        // UPDATE. O objeto do formulario ja traz todos os campos e a versao, entao basta
+        // um UPDATE com a versao no where; nenhuma linha alterada quer dizer que outra
+        // requisicao gravou antes (ou removeu o carro).
+        int alteradas = em.createQuery("update Carro c set c.placa = :placa, c.modelo = :modelo, c.cor = :cor, "
+                + "c.kmAtual = :kmAtual, c.statusCarro = :statusCarro, c.versao = c.versao + 1 "
+                + "where c.codigo = :codigo and c.versao = :versao")
+                .setParameter("placa", carro.getPlaca())
+                .setParameter("modelo", carro.getModelo())
+                .setParameter("cor", carro.getCor())
+                .setParameter("kmAtual", carro.getKmAtual())
+                .setParameter("statusCarro", carro.getStatusCarro())
+                .setParameter("codigo", carro.getCodigo())
+                .setParameter("versao", carro.getVersao())
+                .executeUpdate();
+        if (alteradas == 0) {
+            throw new ObjectOptimisticLockingFailureException(Carro.class, carro.getCodigo());
+        }
+        carro.setVersao(carro.getVersao() + 1);
+        // O UPDATE em JPQL nao passa pelo OuvinteUnicidade
+        indiceUnicidade.registrar(CampoUnico.PLACA, carro.getPlaca());
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,23 @@
 package web.controlevacinacao.repository.queries.lote;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.LoteFilter;
-import web.controlevacinacao.model.Lote;
+import web.controlevacinacao.projection.LoteResumo;
 
 public interface LoteQueries {
 
-	Page<Lote> pesquisar(LoteFilter filtro, Pageable pageable, boolean apenasAplicaveis);
+	Page<LoteResumo> pesquisar(LoteFilter filtro, Pageable pageable, boolean apenasAplicaveis, String cursor);
+
+	/**
+	 * Entrega ao consumidor todos os lotes do filtro (aplicaveis ou nao), na
+	 * ordem pedida, lidos do banco aos poucos (cursor), sem paginar nem montar a
+	 * lista em memoria.
+	 */
+	void exportar(LoteFilter filtro, Sort sort, Consumer<LoteResumo> consumidor);
 	
 }
@@ -1,12 +1,17 @@
 package web.controlevacinacao.repository.queries.lote;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
@@ -14,21 +19,95 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import web.controlevacinacao.filter.LoteFilter;
 import web.controlevacinacao.model.Lote;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
 import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.LoteResumo;
 
+@Transactional(readOnly = true)
 public class LoteQueriesImpl implements LoteQueries {
 
+	private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.EXATA;
+
+	private static final String CONSULTA_RESUMO =
+			"select new web.controlevacinacao.projection.LoteResumo(l.codigo, l.validade, l.nroDosesDoLote, l.nroDosesAtual, l.vacina.nome) " +
+			"from Lote l";
+
+	// Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+	private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+	static {
+		CONDICOES.put("codigo", "l.codigo = :codigo");
+		CONDICOES.put("inicioValidade", "l.validade >= :inicioValidade");
+		CONDICOES.put("fimValidade", "l.validade <= :fimValidade");
+		CONDICOES.put("minimoDosesLote", "l.nroDosesDoLote >= :minimoDosesLote");
+		CONDICOES.put("maximoDosesLote", "l.nroDosesDoLote <= :maximoDosesLote");
+		CONDICOES.put("minimoDosesAtual", "l.nroDosesAtual >= :minimoDosesAtual");
+		CONDICOES.put("maximoDosesAtual", "l.nroDosesAtual <= :maximoDosesAtual");
+		CONDICOES.put("nomeVacina", "lower(l.vacina.nome) like :nomeVacina");
+	}
+
 	@PersistenceContext
 	private EntityManager em;
 
+	@Autowired
+	private ContagemCache contagemCache;
+
+	@Autowired
+	private ConsultaCache consultaCache;
+
 	@Override
-	public Page<Lote> pesquisar(LoteFilter filtro, Pageable pageable, boolean apenasAplicaveis) {
+	public Page<LoteResumo> pesquisar(LoteFilter filtro, Pageable pageable, boolean apenasAplicaveis, String cursor) {
+		Map<String, Object> parametros = parametrosPesquisa(filtro);
+
+		// A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+		Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+		Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+		boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Lote.class, parametrosPagina, em);
+
+		// Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+		// entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+		String chave = ConsultaCache.chave("Lote", parametrosPagina.keySet(), pageable.getSort(), apenasAplicaveis);
+		ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+			StringBuilder condicoes = condicoesPesquisa(parametros.keySet(), apenasAplicaveis);
+			StringBuilder queryLotes = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+			if (usandoKeyset) {
+				PaginacaoUtil.acrescentarCondicaoKeyset(queryLotes, lido, "l");
+			}
+			PaginacaoUtil.prepararOrdemJPQL(queryLotes, "l", pageable);
+			return new ConsultaMontada(queryLotes.toString(), PaginacaoUtil.montarQueryTotal("Lote", "l", condicoes));
+		});
+		TypedQuery<LoteResumo> typedQuery = em.createQuery(consulta.consulta(), LoteResumo.class);
+		PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
+		PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+		List<LoteResumo> lotes = typedQuery.getResultList();
+
+		return PaginacaoUtil.criarPagina(lotes, pageable, ESTRATEGIA_CONTAGEM,
+				() -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Lote.class, consulta.consultaTotal(),
+						parametros, em, contagemCache));
+	}
 
-		StringBuilder queryLotes = new StringBuilder("select distinct l from Lote l inner join fetch l.vacina");
-		StringBuilder condicoes = new StringBuilder();
-		Map<String, Object> parametros = new HashMap<>();
+	@Override
+	public void exportar(LoteFilter filtro, Sort sort, Consumer<LoteResumo> consumidor) {
+		Map<String, Object> parametros = parametrosPesquisa(filtro);
+		StringBuilder queryLotes = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet(), false));
+		PaginacaoUtil.prepararOrdemJPQL(queryLotes, "l", Pageable.unpaged(sort));
+		PaginacaoUtil.percorrer(em.createQuery(queryLotes.toString(), LoteResumo.class), parametros, consumidor);
+	}
 
-		preencherCondicoesEParametros(filtro, condicoes, parametros);
+	// Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+	private static StringBuilder condicoesPesquisa(Set<String> campos, boolean apenasAplicaveis) {
+		StringBuilder condicoes = new StringBuilder();
+		boolean primeiraCondicao = true;
+		for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+			if (campos.contains(condicao.getKey())) {
+				primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+				condicoes.append(condicao.getValue());
+			}
+		}
 
 		if (condicoes.isEmpty()) {
 			condicoes.append(" where l.status = 'ATIVO'");
@@ -39,70 +118,37 @@ public class LoteQueriesImpl implements LoteQueries {
 		if (apenasAplicaveis) {
 			condicoes.append(" and l.nroDosesAtual > 0");
 		}
-
-		queryLotes.append(condicoes);
-		PaginacaoUtil.prepararOrdemJPQL(queryLotes, "l", pageable);
-		TypedQuery<Lote> typedQuery = em.createQuery(queryLotes.toString(), Lote.class);
-		PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-		PaginacaoUtil.preencherParametros(parametros, typedQuery);
-		List<Lote> lotes = typedQuery.getResultList();
-
-		long totalLotes = PaginacaoUtil.getTotalRegistros("Lote", "l", condicoes, parametros, em);
-
-		return new PageImpl<>(lotes, pageable, totalLotes);
+		return condicoes;
 	}
 
-	private void preencherCondicoesEParametros(LoteFilter filtro, StringBuilder condicoes,
-			Map<String, Object> parametros) {
-		boolean condicao = false;
-
+	// Apenas os campos preenchidos viram parametros; os nomes bastam para montar as condicoes
+	private Map<String, Object> parametrosPesquisa(LoteFilter filtro) {
+		Map<String, Object> parametros = new HashMap<>();
 		if (filtro.getCodigo() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.codigo = :codigo");
 			parametros.put("codigo", filtro.getCodigo());
-			condicao = true;
 		}
 		if (filtro.getInicioValidade() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.validade >= :inicioValidade");
 			parametros.put("inicioValidade", filtro.getInicioValidade());
-			condicao = true;
 		}
 		if (filtro.getFimValidade() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.validade <= :fimValidade");
 			parametros.put("fimValidade", filtro.getFimValidade());
-			condicao = true;
 		}
 		if (filtro.getMinimoDosesLote() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.nroDosesDoLote >= :minimoDosesLote");
 			parametros.put("minimoDosesLote", filtro.getMinimoDosesLote());
-			condicao = true;
 		}
 		if (filtro.getMaximoDosesLote() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.nroDosesDoLote <= :maximoDosesLote");
 			parametros.put("maximoDosesLote", filtro.getMaximoDosesLote());
-			condicao = true;
 		}
 		if (filtro.getMinimoDosesAtual() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.nroDosesAtual >= :minimoDosesAtual");
 			parametros.put("minimoDosesAtual", filtro.getMinimoDosesAtual());
-			condicao = true;
 		}
 		if (filtro.getMaximoDosesAtual() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("l.nroDosesAtual <= :maximoDosesAtual");
 			parametros.put("maximoDosesAtual", filtro.getMaximoDosesAtual());
-			condicao = true;
 		}
 		if (StringUtils.hasText(filtro.getNomeVacina())) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("lower(l.vacina.nome) like :nomeVacina");
-			parametros.put("nomeVacina", "%" + filtro.getNomeVacina().toLowerCase() + "%");
+			parametros.put("nomeVacina", "%" + filtro.getNomeVacina().trim().toLowerCase() + "%");
 		}
+		return parametros;
 	}
 
 }
@@ -1,11 +1,28 @@
 package web.controlevacinacao.repository.queries.motorista;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.MotoristaFilter;
 import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.projection.MotoristaResumo;
 
 public interface MotoristaQueries {
-    public Page<Motorista> pesquisar(MotoristaFilter filtro, Pageable pageable);
+    public Page<MotoristaResumo> pesquisar(MotoristaFilter filtro, Pageable pageable, String cursor);
+
+    /**
+     * Entrega ao consumidor todos os motoristas do filtro, na ordem pedida, lidos do
+     * banco aos poucos (cursor), sem paginar nem montar a lista em memoria.
+     */
+    public void exportar(MotoristaFilter filtro, Sort sort, Consumer<MotoristaResumo> consumidor);
+
+    /**
+     * Grava o motorista do formulario com um unico comando: INSERT se ainda nao
+     * tem codigo, UPDATE (conferindo a versao) se ja tem. Executa na hora, para
+     * que uma violacao de restricao chegue a quem chamou.
+     */
+    public void gravar(Motorista motorista);
 }
\ No newline at end of file
@@ -1,12 +1,21 @@
 package web.controlevacinacao.repository.queries.motorista;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
@@ -15,24 +24,114 @@ import jakarta.persistence.TypedQuery;
 
 import web.controlevacinacao.filter.MotoristaFilter;
 import web.controlevacinacao.model.Motorista;
-import web.controlevacinacao.pagination.PaginacaoUtil; // Reutilizando sua classe PaginacaoUtil
-
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
+import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.MotoristaResumo; // Reutilizando sua classe PaginacaoUtil
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
+
+@Transactional(readOnly = true)
 public class MotoristaQueriesImpl implements MotoristaQueries {
 
+    private static final Logger logger = LoggerFactory.getLogger(MotoristaQueriesImpl.class);
+
+    private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.CACHE;
+
+    // Nota: A JPQL para Motorista (subclasse) já inclui o filtro automático pelo
+    // DTYPE (tipo_entidade)
+    private static final String CONSULTA_RESUMO =
+            "select new web.controlevacinacao.projection.MotoristaResumo(m.codigo, m.nome, m.cpf, m.cnh, m.dataNascimento, m.status) " +
+            "from Motorista m";
+
+    // Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+    private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+    static {
+        CONDICOES.put("codigo", "m.codigo = :codigo");
+        CONDICOES.put("nome", "lower(m.nome) like :nome");
+        CONDICOES.put("cpf", "m.cpf like :cpf");
+        // A CNH tem apenas digitos, entao sem lower() o predicado usa o indice pessoa_cnh_trgm_idx
+        CONDICOES.put("cnh", "m.cnh like :cnh");
+        CONDICOES.put("dataNascimentoInicial", "m.dataNascimento >= :dataNascimentoInicial");
+        CONDICOES.put("dataNascimentoFinal", "m.dataNascimento <= :dataNascimentoFinal");
+    }
+
     @PersistenceContext
     private EntityManager em;
 
-    @Override
-    public Page<Motorista> pesquisar(MotoristaFilter filtro, Pageable pageable) {
+    @Autowired
+    private ContagemCache contagemCache;
 
-        // Nota: A JPQL para Motorista (subclasse) já inclui o filtro automático pelo
-        // DTYPE (tipo_entidade)
-        StringBuilder queryMotoristas = new StringBuilder("select distinct m from Motorista m");
-        StringBuilder condicoes = new StringBuilder(); // Para as condições 'where'
+    @Autowired
+    private ConsultaCache consultaCache;
 
-        Map<String, Object> parametros = new HashMap<>();
+    @Autowired
+    private IndiceUnicidade indiceUnicidade;
 
-        preencherCondicoesEParametros(filtro, condicoes, parametros);
+    // Limpo nas escritas do MotoristaService e do PessoaService (motoristas ficam na tabela pessoa)
+    @Cacheable(cacheNames = "motoristas", keyGenerator = "pesquisaKeyGenerator")
+    // Nao eh readOnly: a pesquisa alimenta o ETag da tela e le do banco principal (ReplicaDataSourceConfig)
+    @Transactional
+    @Override
+    public Page<MotoristaResumo> pesquisar(MotoristaFilter filtro, Pageable pageable, String cursor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
+
+        // A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+        Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+        Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+        boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Motorista.class, parametrosPagina, em);
+
+        // Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+        // entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+        String chave = ConsultaCache.chave("Motorista", parametrosPagina.keySet(), pageable.getSort());
+        ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+            StringBuilder condicoes = condicoesPesquisa(parametros.keySet()); // Para as condições 'where'
+            StringBuilder queryMotoristas = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+            if (usandoKeyset) {
+                PaginacaoUtil.acrescentarCondicaoKeyset(queryMotoristas, lido, "m");
+            }
+            PaginacaoUtil.prepararOrdemJPQL(queryMotoristas, "m", pageable);
+            return new ConsultaMontada(queryMotoristas.toString(), PaginacaoUtil.montarQueryTotal("Motorista", "m", condicoes));
+        });
+
+        logger.debug("Consulta JPQL gerada para Motorista: {} com os parâmetros {}", consulta.consulta(),
+                parametrosPagina);
+
+        TypedQuery<MotoristaResumo> typedQuery = em.createQuery(consulta.consulta(), MotoristaResumo.class);
+
+        PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
+        PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+        List<MotoristaResumo> motoristas = typedQuery.getResultList();
+
+        return PaginacaoUtil.criarPagina(motoristas, pageable, ESTRATEGIA_CONTAGEM,
+                () -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Motorista.class, consulta.consultaTotal(),
+                        parametros, em, contagemCache));
+    }
+
+    // Sem cache: a exportacao percorre todas as linhas do filtro, nao uma pagina
+    @Override
+    public void exportar(MotoristaFilter filtro, Sort sort, Consumer<MotoristaResumo> consumidor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
+        StringBuilder queryMotoristas = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet()));
+        PaginacaoUtil.prepararOrdemJPQL(queryMotoristas, "m", Pageable.unpaged(sort));
+        PaginacaoUtil.percorrer(em.createQuery(queryMotoristas.toString(), MotoristaResumo.class), parametros,
+                consumidor);
+    }
+
+    // Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+    private static StringBuilder condicoesPesquisa(Set<String> campos) {
+        StringBuilder condicoes = new StringBuilder();
+        boolean primeiraCondicao = true;
+        for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+            if (campos.contains(condicao.getKey())) {
+                primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+                condicoes.append(condicao.getValue());
+            }
+        }
 
         // O filtro por status 'ATIVO' é adicionado aqui, assim como no
         // PessoaQueriesImpl
@@ -41,76 +140,65 @@ public class MotoristaQueriesImpl implements MotoristaQueries {
         } else {
             condicoes.append(" and m.status = 'ATIVO'");
         }
-
-        queryMotoristas.append(condicoes);
-        PaginacaoUtil.prepararOrdemJPQL(queryMotoristas, "m", pageable);
-
-        System.out.println("Consulta JPQL Gerada para Motorista: " + queryMotoristas.toString()); // <<< ADICIONE ESTA
-                                                                                                  // LINHA
-        System.out.println("Parâmetros para Consulta de Motorista: " + parametros); // <<< E ESTA LINHA
-
-        TypedQuery<Motorista> typedQuery = em.createQuery(queryMotoristas.toString(), Motorista.class);
-
-        // ... (restante do código)
-        PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-        PaginacaoUtil.preencherParametros(parametros, typedQuery);
-        List<Motorista> motoristas = typedQuery.getResultList();
-
-        // Para o total de registros, a entidade também é Motorista
-        long totalMotoristas = PaginacaoUtil.getTotalRegistros("Motorista", "m", condicoes, parametros, em);
-
-        return new PageImpl<>(motoristas, pageable, totalMotoristas);
+        return condicoes;
     }
 
-    private void preencherCondicoesEParametros(MotoristaFilter filtro, StringBuilder condicoes,
-            Map<String, Object> parametros) {
-        boolean primeiraCondicao = true; // Renomeado para maior clareza, funciona como 'condicao' no seu original
-
+    // Apenas os campos preenchidos viram parametros; os nomes bastam para montar as condicoes
+    private Map<String, Object> parametrosPesquisa(MotoristaFilter filtro) {
+        Map<String, Object> parametros = new HashMap<>();
         // Código
         if (filtro.getCodigo() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("m.codigo = :codigo");
             parametros.put("codigo", filtro.getCodigo());
         }
         // Nome
         if (StringUtils.hasText(filtro.getNome())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("lower(m.nome) like :nome");
-            parametros.put("nome", "%" + filtro.getNome().toLowerCase() + "%");
+            parametros.put("nome", "%" + filtro.getNome().trim().toLowerCase() + "%");
         }
         // CPF
         if (StringUtils.hasText(filtro.getCpf())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("m.cpf like :cpf");
-            parametros.put("cpf", "%" + filtro.getCpf() + "%");
+            parametros.put("cpf", "%" + filtro.getCpf().trim() + "%");
         }
         // CNH (ESPECÍFICO DE MOTORISTA)
         if (StringUtils.hasText(filtro.getCnh())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("lower(m.cnh) like :cnh"); // Ou "m.cnh = :cnh" se quiser correspondência exata
-            parametros.put("cnh", "%" + filtro.getCnh().toLowerCase() + "%");
+            parametros.put("cnh", "%" + filtro.getCnh().trim() + "%");
         }
         // Data de Nascimento Inicial
         if (filtro.getDataNascimentoInicial() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("m.dataNascimento >= :dataNascimentoInicial");
             parametros.put("dataNascimentoInicial", filtro.getDataNascimentoInicial());
         }
         // Data de Nascimento Final
         if (filtro.getDataNascimentoFinal() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("m.dataNascimento <= :dataNascimentoFinal");
             parametros.put("dataNascimentoFinal", filtro.getDataNascimentoFinal());
         }
-        // Status (já é tratado no final do método pesquisar, mas se precisar de um
-        // filtro adicional aqui)
-        // Se o status já é sempre ATIVO no final, este bloco pode ser removido se o
-        // filtro for apenas para mudar para INATIVO etc.
-        // if (filtro.getStatus() != null) {
-        // primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes,
-        // primeiraCondicao);
-        // condicoes.append("m.status = :status");
-        // parametros.put("status", filtro.getStatus());
-        // }
+        return parametros;
+    }
+
+    @Transactional
+    @Override
+    public void gravar(Motorista motorista) {
+        if (motorista.getCodigo() == null) {
+            em.persist(motorista);
+            em.flush();
+            return;
+        }
+        // UPDATE com a versao no where, sem o SELECT do merge, como em CarroQueriesImpl.gravar
+        int alteradas = em.createQuery("update Motorista m set m.nome = :nome, m.cpf = :cpf, "
+                + "m.dataNascimento = :dataNascimento, m.cnh = :cnh, m.status = :status, m.versao = m.versao + 1 "
+                + "where m.codigo = :codigo and m.versao = :versao")
+                .setParameter("nome", motorista.getNome())
+                .setParameter("cpf", motorista.getCpf())
+                .setParameter("dataNascimento", motorista.getDataNascimento())
+                .setParameter("cnh", motorista.getCnh())
+                .setParameter("status", motorista.getStatus())
+                .setParameter("codigo", motorista.getCodigo())
+                .setParameter("versao", motorista.getVersao())
+                .executeUpdate();
+        if (alteradas == 0) {
+            throw new ObjectOptimisticLockingFailureException(Motorista.class, motorista.getCodigo());
+        }
+        motorista.setVersao(motorista.getVersao() + 1);
+        // O UPDATE em JPQL nao passa pelo OuvinteUnicidade
+        indiceUnicidade.registrar(CampoUnico.CPF, motorista.getCpf());
+        indiceUnicidade.registrar(CampoUnico.CNH, motorista.getCnh());
     }
-}
\ No newline at end of file
+}
@@ -1,13 +1,32 @@
 package web.controlevacinacao.repository.queries.movimentacao;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.MovimentacaoFilter;
+import web.controlevacinacao.filter.RelatorioMovimentacaoFilter;
 import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.projection.HistoricoMovimentacao;
+import web.controlevacinacao.projection.MovimentacaoResumo;
 
 public interface MovimentacaoQueries {
-    Page<Movimentacao> pesquisar(MovimentacaoFilter filter, Pageable pageable);
+    Page<MovimentacaoResumo> pesquisar(MovimentacaoFilter filter, Pageable pageable, String cursor);
 	
 	Movimentacao buscarCompletoCodigo(Long codigo);
+
+	/**
+	 * Entrega ao consumidor todas as movimentacoes do filtro, na ordem pedida, lidas do
+	 * banco aos poucos (cursor), sem paginar nem montar a lista em memoria.
+	 */
+	void exportar(MovimentacaoFilter filtro, Sort sort, Consumer<MovimentacaoResumo> consumidor);
+
+	/**
+	 * Entrega ao consumidor, uma a uma e em ordem de saida, as movimentacoes do
+	 * filtro. As linhas sao lidas do banco aos poucos (cursor), sem montar a lista
+	 * inteira em memoria.
+	 */
+	void percorrerHistorico(RelatorioMovimentacaoFilter filtro, Consumer<HistoricoMovimentacao> consumidor);
 }
\ No newline at end of file
@@ -1,12 +1,17 @@
 package web.controlevacinacao.repository.queries.movimentacao;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
@@ -14,15 +19,56 @@ import jakarta.persistence.NoResultException;
 import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import web.controlevacinacao.filter.MovimentacaoFilter;
+import web.controlevacinacao.filter.RelatorioMovimentacaoFilter;
 import web.controlevacinacao.model.Movimentacao;
 import web.controlevacinacao.model.StatusMovimentacao;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
 import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.HistoricoMovimentacao;
+import web.controlevacinacao.projection.MovimentacaoResumo;
 
+@Transactional(readOnly = true)
 public class MovimentacaoQueriesImpl implements MovimentacaoQueries {
 
+    private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.PROXIMA_PAGINA;
+
+    // Joins comuns (sem fetch): a tabela so precisa de algumas colunas do carro e do motorista
+    private static final String CONSULTA_RESUMO =
+            "select new web.controlevacinacao.projection.MovimentacaoResumo(m.codigo, m.dataSaida, m.dataRetorno, " +
+                    "m.statusMovimentacao, c.placa, c.modelo, mt.nome, mt.cnh) " +
+                    "from Movimentacao m " +
+                    "inner join m.carro c " +
+                    "inner join m.motorista mt";
+
+    // Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+    private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+    static {
+        CONDICOES.put("codigo", "m.codigo = :codigo");
+        CONDICOES.put("placa", "lower(c.placa) like :placa"); // 'c' é o alias para o Carro
+        CONDICOES.put("codigoMotorista", "mt.codigo = :codigoMotorista"); // 'mt' é o alias para o Motorista
+        CONDICOES.put("dataSaidaInicial", "m.dataSaida >= :dataSaidaInicial");
+        CONDICOES.put("dataSaidaFinal", "m.dataSaida <= :dataSaidaFinal");
+        CONDICOES.put("dataRetornoInicial", "m.dataRetorno >= :dataRetornoInicial");
+        CONDICOES.put("dataRetornoFinal", "m.dataRetorno <= :dataRetornoFinal");
+        CONDICOES.put("statusMovimentacao", "m.statusMovimentacao = :statusMovimentacao");
+        // Sem status no filtro, a pesquisa mostra as ativas
+        CONDICOES.put("defaultStatus", "m.statusMovimentacao = :defaultStatus");
+    }
+
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private ContagemCache contagemCache;
+
+    @Autowired
+    private ConsultaCache consultaCache;
+
     @Override
     public Movimentacao buscarCompletoCodigo(Long codigo) {
         String query = "select m from Movimentacao m " +
@@ -43,124 +89,133 @@ public class MovimentacaoQueriesImpl implements MovimentacaoQueries {
         }
     }
 
+    // Nao eh readOnly: a pesquisa alimenta o ETag da tela e le do banco principal (ReplicaDataSourceConfig)
+    @Transactional
     @Override
-    public Page<Movimentacao> pesquisar(MovimentacaoFilter filtro, Pageable pageable) {
-        StringBuilder queryMovimentacoes = new StringBuilder(
-                "select distinct m from Movimentacao m " +
-                        "inner join fetch m.carro c " +
-                        "inner join fetch m.motorista mt " 
-        );
-        StringBuilder condicoes = new StringBuilder();
-        Map<String, Object> parametros = new HashMap<>();
-
-        // Preenche as condições e parâmetros a partir do filtro
-        preencherCondicoesEParametros(filtro, condicoes, parametros);
-
-        // Lógica para adicionar o status padrão 'ATIVA' se não houver outras condições
-        // ou status definido no filtro
-        // ATENÇÃO: Adaptei a lógica aqui para lidar com o filtro.getStatus()
-        if (filtro.getStatusMovimentacao() == null) { // Se o status não foi explicitamente setado no filtro
-            if (condicoes.isEmpty()) {
-                condicoes.append(" where m.statusMovimentacao = :defaultStatus");
-            } else {
-                condicoes.append(" and m.statusMovimentacao = :defaultStatus");
+    public Page<MovimentacaoResumo> pesquisar(MovimentacaoFilter filtro, Pageable pageable, String cursor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
+
+        // A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+        Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+        Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+        boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Movimentacao.class, parametrosPagina, em);
+
+        // Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+        // entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+        String chave = ConsultaCache.chave("Movimentacao", parametrosPagina.keySet(), pageable.getSort());
+        ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+            StringBuilder condicoes = condicoesPesquisa(parametros.keySet());
+            StringBuilder queryMovimentacoes = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+            if (usandoKeyset) {
+                PaginacaoUtil.acrescentarCondicaoKeyset(queryMovimentacoes, lido, "m");
             }
-            parametros.put("defaultStatus", StatusMovimentacao.ATIVA);
-        }
-
-        queryMovimentacoes.append(condicoes);
-
-        PaginacaoUtil.prepararOrdemJPQL(queryMovimentacoes, "m", pageable);
-
-        TypedQuery<Movimentacao> typedQuery = em.createQuery(queryMovimentacoes.toString(), Movimentacao.class);
-        PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-        PaginacaoUtil.preencherParametros(parametros, typedQuery);
-        List<Movimentacao> movimentacoes = typedQuery.getResultList();
+            PaginacaoUtil.prepararOrdemJPQL(queryMovimentacoes, "m", pageable);
+            return new ConsultaMontada(queryMovimentacoes.toString(), PaginacaoUtil.montarQueryTotal("Movimentacao", "m",
+                new StringBuilder(" inner join m.carro c inner join m.motorista mt").append(condicoes)));
+        });
+
+        TypedQuery<MovimentacaoResumo> typedQuery = em.createQuery(consulta.consulta(), MovimentacaoResumo.class);
+        PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
+        PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+        List<MovimentacaoResumo> movimentacoes = typedQuery.getResultList();
+
+        return PaginacaoUtil.criarPagina(movimentacoes, pageable, ESTRATEGIA_CONTAGEM,
+                () -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Movimentacao.class, consulta.consultaTotal(),
+                        parametros, em, contagemCache));
+    }
 
-        // Para a contagem total, você precisa de uma query de count separada,
-        // mas sem os JOIN FETCH e com a função COUNT.
-        // O PaginacaoUtil.getTotalRegistros precisa ser adaptado ou você pode usar um
-        // CriteriaBuilder.
-        // Se PaginacaoUtil.getTotalRegistros funciona com "Movimentacao", "m",
-        // condicoes, parametros, em
-        // então deve estar tudo bem.
-        long totalMovimentacoes = PaginacaoUtil.getTotalRegistros("Movimentacao", "m", condicoes, parametros, em);
+    @Override
+    public void exportar(MovimentacaoFilter filtro, Sort sort, Consumer<MovimentacaoResumo> consumidor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
+        StringBuilder queryMovimentacoes = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet()));
+        PaginacaoUtil.prepararOrdemJPQL(queryMovimentacoes, "m", Pageable.unpaged(sort));
+        percorrer(queryMovimentacoes.toString(), MovimentacaoResumo.class, parametros, consumidor);
+    }
 
-        return new PageImpl<>(movimentacoes, pageable, totalMovimentacoes);
+    // Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+    private static StringBuilder condicoesPesquisa(Set<String> campos) {
+        StringBuilder condicoes = new StringBuilder();
+        boolean primeiraCondicao = true;
+        for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+            if (campos.contains(condicao.getKey())) {
+                primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+                condicoes.append(condicao.getValue());
+            }
+        }
+        return condicoes;
     }
-    
-    private void preencherCondicoesEParametros(MovimentacaoFilter filtro, StringBuilder condicoes,
-            Map<String, Object> parametros) {
-        boolean condicao = false; // Usando a sua lógica de flag 'condicao'
 
-        // 1. Filtro por Código da Movimentação
+    // Apenas os campos preenchidos viram parametros; os nomes bastam para montar as condicoes
+    private Map<String, Object> parametrosPesquisa(MovimentacaoFilter filtro) {
+        Map<String, Object> parametros = new HashMap<>();
         if (filtro.getCodigo() != null) {
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("m.codigo = :codigo");
             parametros.put("codigo", filtro.getCodigo());
-            condicao = true;
         }
-
-        // 2. Filtro por Placa do Carro (a.carro.placa -> c.placa)
         if (StringUtils.hasText(filtro.getPlacaCarro())) {
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("lower(c.placa) like :placa"); // 'c' é o alias para o Carro
-            parametros.put("placa", "%" + filtro.getPlacaCarro().toLowerCase() + "%");
-            condicao = true;
+            parametros.put("placa", "%" + filtro.getPlacaCarro().trim().toLowerCase() + "%");
         }
-
-        // 3. Filtro por Nome do Motorista (a.motorista.nome -> mt.nome)
-       if (filtro.getCodigoMotorista() != null) {
-            condicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("mt.codigo = :codigoMotorista"); // 'mt' é o alias para o Motorista
+        if (filtro.getCodigoMotorista() != null) {
             parametros.put("codigoMotorista", filtro.getCodigoMotorista());
         }
-
-        // 4. Filtro por Data de Saída Inicial (a.dataSaidaInicial -> m.dataSaida)
         if (filtro.getDataSaidaInicial() != null) {
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("m.dataSaida >= :dataSaidaInicial");
             parametros.put("dataSaidaInicial", filtro.getDataSaidaInicial());
-            condicao = true;
         }
-
-        // 5. Filtro por Data de Saída Final (a.dataSaidaFinal -> m.dataSaida)
         if (filtro.getDataSaidaFinal() != null) {
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("m.dataSaida <= :dataSaidaFinal");
             parametros.put("dataSaidaFinal", filtro.getDataSaidaFinal());
-            condicao = true;
         }
-
-        // 6. Filtro por Data de Retorno Inicial (a.dataRetornoInicial -> m.dataRetorno)
         if (filtro.getDataRetornoInicial() != null) {
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("m.dataRetorno >= :dataRetornoInicial");
             parametros.put("dataRetornoInicial", filtro.getDataRetornoInicial());
-            condicao = true;
         }
-
-        // 7. Filtro por Data de Retorno Final (a.dataRetornoFinal -> m.dataRetorno)
         if (filtro.getDataRetornoFinal() != null) {
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("m.dataRetorno <= :dataRetornoFinal");
             parametros.put("dataRetornoFinal", filtro.getDataRetornoFinal());
-            condicao = true;
         }
-
-        // 8. Filtro por Status da Movimentação (a.status -> m.status)
-        // Este filtro já está sendo tratado na lógica principal do método 'pesquisar'
-        // onde você adiciona 'm.status = :defaultStatus' se filtro.getStatus() for
-        // nulo.
-        // Se você quiser que o usuário possa filtrar por status na tela, adicione aqui:
-        if (filtro.getStatusMovimentacao() != null) { // Permite filtrar explicitamente por ATIVA, FINALIZADA, etc.
-            PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-            condicoes.append("m.statusMovimentacao = :statusMovimentacao");
+        // Permite filtrar explicitamente por ATIVA, FINALIZADA, etc.
+        if (filtro.getStatusMovimentacao() != null) {
             parametros.put("statusMovimentacao", filtro.getStatusMovimentacao());
-            condicao = true; // Necessário para a próxima condição
+        } else {
+            parametros.put("defaultStatus", StatusMovimentacao.ATIVA);
         }
+        return parametros;
     }
 
-    
-}
+    @Override
+    public void percorrerHistorico(RelatorioMovimentacaoFilter filtro, Consumer<HistoricoMovimentacao> consumidor) {
+        StringBuilder query = new StringBuilder(
+                "select new web.controlevacinacao.projection.HistoricoMovimentacao(m.codigo, c.placa, mt.nome, " +
+                        "m.dataSaida, m.horaSaida, m.dataRetorno, m.horaRetorno, m.kmSaida, m.kmRetorno, " +
+                        "m.statusMovimentacao) " +
+                        "from Movimentacao m " +
+                        "inner join m.carro c " +
+                        "inner join m.motorista mt");
+        Map<String, Object> parametros = new HashMap<>();
+        query.append(condicoesRelatorio(filtro, parametros));
+        query.append(" order by m.dataSaida, m.horaSaida, m.codigo");
+        percorrer(query.toString(), HistoricoMovimentacao.class, parametros, consumidor);
+    }
 
+    private <T> void percorrer(String query, Class<T> tipo, Map<String, Object> parametros, Consumer<T> consumidor) {
+        PaginacaoUtil.percorrer(em.createQuery(query, tipo), parametros, consumidor);
+    }
+
+    private static String condicoesRelatorio(RelatorioMovimentacaoFilter filtro, Map<String, Object> parametros) {
+        StringBuilder condicoes = new StringBuilder();
+        if (filtro.getDataInicial() != null) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("m.dataSaida >= :dataInicial");
+            parametros.put("dataInicial", filtro.getDataInicial());
+        }
+        if (filtro.getDataFinal() != null) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("m.dataSaida <= :dataFinal");
+            parametros.put("dataFinal", filtro.getDataFinal());
+        }
+        if (StringUtils.hasText(filtro.getPlacaCarro())) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("lower(c.placa) = :placa");
+            parametros.put("placa", filtro.getPlacaCarro().trim().toLowerCase());
+        }
+        if (StringUtils.hasText(filtro.getCnhMotorista())) {
+            condicoes.append(condicoes.isEmpty() ? " where " : " and ").append("mt.cnh = :cnh");
+            parametros.put("cnh", filtro.getCnhMotorista().trim());
+        }
+        return condicoes.toString();
+    }
+
+}
@@ -1,13 +1,22 @@
 package web.controlevacinacao.repository.queries.pessoa;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.PessoaFilter;
-import web.controlevacinacao.model.Pessoa;
+import web.controlevacinacao.projection.PessoaResumo;
 
 public interface PessoaQueries {
 
-	Page<Pessoa> pesquisar(PessoaFilter filtro, Pageable pageable);
+	Page<PessoaResumo> pesquisar(PessoaFilter filtro, Pageable pageable, String cursor);
+
+	/**
+	 * Entrega ao consumidor todas as pessoas do filtro, na ordem pedida, lidas do
+	 * banco aos poucos (cursor), sem paginar nem montar a lista em memoria.
+	 */
+	void exportar(PessoaFilter filtro, Sort sort, Consumer<PessoaResumo> consumidor);
 	
 }
@@ -1,12 +1,17 @@
 package web.controlevacinacao.repository.queries.pessoa;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
@@ -14,69 +19,119 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import web.controlevacinacao.filter.PessoaFilter;
 import web.controlevacinacao.model.Pessoa;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
 import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.PessoaResumo;
 
+@Transactional(readOnly = true)
 public class PessoaQueriesImpl implements PessoaQueries {
 
+    private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.ESTIMATIVA;
+
+    private static final String CONSULTA_RESUMO =
+            "select new web.controlevacinacao.projection.PessoaResumo(p.codigo, p.nome, p.cpf, p.dataNascimento) " +
+            "from Pessoa p";
+
+    // Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+    private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+    static {
+        CONDICOES.put("codigo", "p.codigo = :codigo");
+        CONDICOES.put("nome", "lower(p.nome) like :nome");
+        CONDICOES.put("cpf", "p.cpf like :cpf");
+        CONDICOES.put("dataNascimentoInicial", "p.dataNascimento >= :dataNascimentoInicial");
+        CONDICOES.put("dataNascimentoFinal", "p.dataNascimento <= :dataNascimentoFinal");
+    }
+
     @PersistenceContext
     private EntityManager em;
 
-    private void preencherCondicoesEParametros(PessoaFilter filtro, StringBuilder condicoes, Map<String, Object> parametros) {
-        boolean primeiraCondicao = true; // <-- CORREÇÃO AQUI! DEVE SER TRUE.
+    @Autowired
+    private ContagemCache contagemCache;
 
+    @Autowired
+    private ConsultaCache consultaCache;
+
+    // Apenas os campos preenchidos viram parametros; os nomes bastam para montar as condicoes
+    private Map<String, Object> parametrosPesquisa(PessoaFilter filtro) {
+        Map<String, Object> parametros = new HashMap<>();
         if (filtro.getCodigo() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("p.codigo = :codigo");
             parametros.put("codigo", filtro.getCodigo());
         }
         if (StringUtils.hasText(filtro.getNome())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("lower(p.nome) like :nome");
-            parametros.put("nome", "%" + filtro.getNome().toLowerCase() + "%");
+            parametros.put("nome", "%" + filtro.getNome().trim().toLowerCase() + "%");
         }
         if (StringUtils.hasText(filtro.getCpf())) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("p.cpf like :cpf");
-            parametros.put("cpf", "%" + filtro.getCpf() + "%");
+            parametros.put("cpf", "%" + filtro.getCpf().trim() + "%");
         }
         if (filtro.getDataNascimentoInicial() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("p.dataNascimento >= :dataNascimentoInicial");
             parametros.put("dataNascimentoInicial", filtro.getDataNascimentoInicial());
         }
         if (filtro.getDataNascimentoFinal() != null) {
-            primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
-            condicoes.append("p.dataNascimento <= :dataNascimentoFinal");
             parametros.put("dataNascimentoFinal", filtro.getDataNascimentoFinal());
         }
-      
+        return parametros;
     }
 
     @Override // Não se esqueça da anotação @Override se for uma interface
-    public Page<Pessoa> pesquisar(PessoaFilter filtro, Pageable pageable) {
+    public Page<PessoaResumo> pesquisar(PessoaFilter filtro, Pageable pageable, String cursor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
 
-        StringBuilder queryPessoas = new StringBuilder("select distinct p from Pessoa p");
-        StringBuilder condicoes = new StringBuilder();
+        // A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+        Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+        Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+        boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Pessoa.class, parametrosPagina, em);
 
-        Map<String, Object> parametros = new HashMap<>();
+        // Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+        // entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+        String chave = ConsultaCache.chave("Pessoa", parametrosPagina.keySet(), pageable.getSort());
+        ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+            StringBuilder condicoes = condicoesPesquisa(parametros.keySet());
+            StringBuilder queryPessoas = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+            if (usandoKeyset) {
+                PaginacaoUtil.acrescentarCondicaoKeyset(queryPessoas, lido, "p");
+            }
+            PaginacaoUtil.prepararOrdemJPQL(queryPessoas, "p", pageable);
+            return new ConsultaMontada(queryPessoas.toString(), PaginacaoUtil.montarQueryTotal("Pessoa", "p", condicoes));
+        });
+        TypedQuery<PessoaResumo> typedQuery = em.createQuery(consulta.consulta(), PessoaResumo.class);
+        PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
+        PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+        List<PessoaResumo> pessoas = typedQuery.getResultList();
 
-        preencherCondicoesEParametros(filtro, condicoes, parametros);
+        return PaginacaoUtil.criarPagina(pessoas, pageable, ESTRATEGIA_CONTAGEM,
+                () -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Pessoa.class, consulta.consultaTotal(),
+                        parametros, em, contagemCache));
+    }
+
+    @Override
+    public void exportar(PessoaFilter filtro, Sort sort, Consumer<PessoaResumo> consumidor) {
+        Map<String, Object> parametros = parametrosPesquisa(filtro);
+        StringBuilder queryPessoas = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet()));
+        PaginacaoUtil.prepararOrdemJPQL(queryPessoas, "p", Pageable.unpaged(sort));
+        PaginacaoUtil.percorrer(em.createQuery(queryPessoas.toString(), PessoaResumo.class), parametros, consumidor);
+    }
+
+    // Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+    private static StringBuilder condicoesPesquisa(Set<String> campos) {
+        StringBuilder condicoes = new StringBuilder();
+        boolean primeiraCondicao = true;
+        for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+            if (campos.contains(condicao.getKey())) {
+                primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+                condicoes.append(condicao.getValue());
+            }
+        }
 
         if (condicoes.isEmpty()) {
             condicoes.append(" where p.status = 'ATIVO'");
         } else {
             condicoes.append(" and p.status = 'ATIVO'");
         }
-
-        queryPessoas.append(condicoes);
-        PaginacaoUtil.prepararOrdemJPQL(queryPessoas, "p", pageable);
-        TypedQuery<Pessoa> typedQuery = em.createQuery(queryPessoas.toString(), Pessoa.class);
-        PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-        PaginacaoUtil.preencherParametros(parametros, typedQuery);
-        List<Pessoa> pessoas = typedQuery.getResultList();
-
-        long totalPessoas = PaginacaoUtil.getTotalRegistros("Pessoa", "p", condicoes, parametros, em);
-
-        return new PageImpl<>(pessoas, pageable, totalPessoas);
+        return condicoes;
     }
 }
\ No newline at end of file
@@ -1,13 +1,22 @@
 package web.controlevacinacao.repository.queries.vacina;
 
+import java.util.function.Consumer;
+
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
 import web.controlevacinacao.filter.VacinaFilter;
-import web.controlevacinacao.model.Vacina;
+import web.controlevacinacao.projection.VacinaResumo;
 
 public interface VacinaQueries {
 
-	Page<Vacina> pesquisar(VacinaFilter filtro, Pageable pageable);
+	Page<VacinaResumo> pesquisar(VacinaFilter filtro, Pageable pageable, String cursor);
+
+	/**
+	 * Entrega ao consumidor todas as vacinas do filtro, na ordem pedida, lidas do
+	 * banco aos poucos (cursor), sem paginar nem montar a lista em memoria.
+	 */
+	void exportar(VacinaFilter filtro, Sort sort, Consumer<VacinaResumo> consumidor);
 	
 }
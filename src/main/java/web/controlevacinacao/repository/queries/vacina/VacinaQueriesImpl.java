@@ -1,12 +1,18 @@
 package web.controlevacinacao.repository.queries.vacina;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 
 import jakarta.persistence.EntityManager;
@@ -14,59 +20,114 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.TypedQuery;
 import web.controlevacinacao.filter.VacinaFilter;
 import web.controlevacinacao.model.Vacina;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.pagination.ConsultaCache.ConsultaMontada;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.Cursor;
+import web.controlevacinacao.pagination.EstrategiaContagem;
 import web.controlevacinacao.pagination.PaginacaoUtil;
+import web.controlevacinacao.projection.VacinaResumo;
 
+@Transactional(readOnly = true)
 public class VacinaQueriesImpl implements VacinaQueries {
 
+	private static final EstrategiaContagem ESTRATEGIA_CONTAGEM = EstrategiaContagem.EXATA;
+
+	private static final String CONSULTA_RESUMO =
+			"select new web.controlevacinacao.projection.VacinaResumo(v.codigo, v.nome, v.descricao) " +
+			"from Vacina v";
+
+	// Condicao de cada campo do filtro, pelo nome do parametro que o campo gera
+	private static final Map<String, String> CONDICOES = new LinkedHashMap<>();
+
+	static {
+		CONDICOES.put("codigo", "v.codigo = :codigo");
+		CONDICOES.put("nome", "lower(v.nome) like :nome");
+		CONDICOES.put("descricao", "lower(v.descricao) like :descricao");
+	}
+
 	@PersistenceContext
 	private EntityManager em;
 
-	public Page<Vacina> pesquisar(VacinaFilter filtro, Pageable pageable) {
+	@Autowired
+	private ContagemCache contagemCache;
 
-		StringBuilder queryVacinas = new StringBuilder("select distinct v from Vacina v");
-		StringBuilder condicoes = new StringBuilder();
-		Map<String, Object> parametros = new HashMap<>();
+	@Autowired
+	private ConsultaCache consultaCache;
+
+	// Limpo pelo VacinaService sempre que uma vacina eh salva, alterada ou removida
+	@Cacheable(cacheNames = "vacinas", keyGenerator = "pesquisaKeyGenerator")
+	public Page<VacinaResumo> pesquisar(VacinaFilter filtro, Pageable pageable, String cursor) {
+		Map<String, Object> parametros = parametrosPesquisa(filtro);
+
+		// A contagem usa apenas os parametros do filtro, a pagina pode ter tambem os do keyset
+		Cursor lido = PaginacaoUtil.lerCursor(cursor, pageable);
+		Map<String, Object> parametrosPagina = new HashMap<>(parametros);
+		boolean usandoKeyset = PaginacaoUtil.prepararParametrosKeyset(lido, Vacina.class, parametrosPagina, em);
 
-		preencherCondicoesEParametros(filtro, condicoes, parametros);
+		// Pesquisas com os mesmos campos preenchidos e a mesma ordenacao geram a mesma JPQL,
+		// entao as condicoes so sao montadas quando o formato ainda nao esta no cache
+		String chave = ConsultaCache.chave("Vacina", parametrosPagina.keySet(), pageable.getSort());
+		ConsultaMontada consulta = consultaCache.obter(chave, () -> {
+			StringBuilder condicoes = condicoesPesquisa(parametros.keySet());
+			StringBuilder queryVacinas = new StringBuilder(CONSULTA_RESUMO).append(condicoes);
+			if (usandoKeyset) {
+				PaginacaoUtil.acrescentarCondicaoKeyset(queryVacinas, lido, "v");
+			}
+			PaginacaoUtil.prepararOrdemJPQL(queryVacinas, "v", pageable);
+			return new ConsultaMontada(queryVacinas.toString(), PaginacaoUtil.montarQueryTotal("Vacina", "v", condicoes));
+		});
+		TypedQuery<VacinaResumo> typedQuery = em.createQuery(consulta.consulta(), VacinaResumo.class);
+		PaginacaoUtil.prepararIntervalo(typedQuery, pageable, usandoKeyset, ESTRATEGIA_CONTAGEM);
+		PaginacaoUtil.preencherParametros(parametrosPagina, typedQuery);
+		List<VacinaResumo> vacinas = typedQuery.getResultList();
+
+		return PaginacaoUtil.criarPagina(vacinas, pageable, ESTRATEGIA_CONTAGEM,
+				() -> PaginacaoUtil.getTotalRegistros(ESTRATEGIA_CONTAGEM, Vacina.class, consulta.consultaTotal(),
+						parametros, em, contagemCache));
+	}
+
+	// Sem cache: a exportacao percorre todas as linhas do filtro, nao uma pagina
+	@Override
+	public void exportar(VacinaFilter filtro, Sort sort, Consumer<VacinaResumo> consumidor) {
+		Map<String, Object> parametros = parametrosPesquisa(filtro);
+		StringBuilder queryVacinas = new StringBuilder(CONSULTA_RESUMO).append(condicoesPesquisa(parametros.keySet()));
+		PaginacaoUtil.prepararOrdemJPQL(queryVacinas, "v", Pageable.unpaged(sort));
+		PaginacaoUtil.percorrer(em.createQuery(queryVacinas.toString(), VacinaResumo.class), parametros, consumidor);
+	}
+
+	// Monta o WHERE a partir dos campos preenchidos (nomes dos parametros)
+	private static StringBuilder condicoesPesquisa(Set<String> campos) {
+		StringBuilder condicoes = new StringBuilder();
+		boolean primeiraCondicao = true;
+		for (Map.Entry<String, String> condicao : CONDICOES.entrySet()) {
+			if (campos.contains(condicao.getKey())) {
+				primeiraCondicao = PaginacaoUtil.fazerLigacaoCondicoes(condicoes, primeiraCondicao);
+				condicoes.append(condicao.getValue());
+			}
+		}
 
 		if (condicoes.isEmpty()) {
 			condicoes.append(" where v.status = 'ATIVO'");
 		} else {
 			condicoes.append(" and v.status = 'ATIVO'");
 		}
-
-		queryVacinas.append(condicoes);
-		PaginacaoUtil.prepararOrdemJPQL(queryVacinas, "v", pageable);
-		TypedQuery<Vacina> typedQuery = em.createQuery(queryVacinas.toString(), Vacina.class);
-		PaginacaoUtil.prepararIntervalo(typedQuery, pageable);
-		PaginacaoUtil.preencherParametros(parametros, typedQuery);
-		List<Vacina> vacinas = typedQuery.getResultList();
-
-		long totalVacinas = PaginacaoUtil.getTotalRegistros("Vacina", "v", condicoes, parametros, em);
-
-		return new PageImpl<>(vacinas, pageable, totalVacinas);
+		return condicoes;
 	}
 
-	private void preencherCondicoesEParametros(VacinaFilter filtro, StringBuilder condicoes, Map<String, Object> parametros) {
-		boolean condicao = false;
-
+	// Apenas os campos preenchidos viram parametros; os nomes bastam para montar as condicoes
+	private Map<String, Object> parametrosPesquisa(VacinaFilter filtro) {
+		Map<String, Object> parametros = new HashMap<>();
 		if (filtro.getCodigo() != null) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("v.codigo = :codigo");
 			parametros.put("codigo", filtro.getCodigo());
-			condicao = true;
 		}
 		if (StringUtils.hasText(filtro.getNome())) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);		
-			condicoes.append("lower(v.nome) like :nome");
-			parametros.put("nome", "%" + filtro.getNome().toLowerCase() + "%");
-			condicao = true;
+			parametros.put("nome", "%" + filtro.getNome().trim().toLowerCase() + "%");
 		}
 		if (StringUtils.hasText(filtro.getDescricao())) {
-			PaginacaoUtil.fazerLigacaoCondicoes(condicoes, condicao);
-			condicoes.append("lower(v.descricao) like :descricao");
-			parametros.put("descricao", "%" + filtro.getDescricao().toLowerCase() + "%");
+			parametros.put("descricao", "%" + filtro.getDescricao().trim().toLowerCase() + "%");
 		}
+		return parametros;
 	}
 	
 }
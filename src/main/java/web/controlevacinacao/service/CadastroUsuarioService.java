@@ -1,11 +1,14 @@
 package web.controlevacinacao.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.BindingResult;
 
 import web.controlevacinacao.model.Usuario;
 import web.controlevacinacao.repository.UsuarioRepository;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
 
 @Service
 public class CadastroUsuarioService {
@@ -13,8 +16,21 @@ public class CadastroUsuarioService {
 	@Autowired
 	private UsuarioRepository usuarioRepository;
 
+	@Autowired
+	private IndiceUnicidade indiceUnicidade;
+
+	// O validador do nome de usuario pula a consulta quando o indice em memoria garante que
+	// o nome eh novo, entao a restricao usuario_nome_usuario_unq eh quem decide no caso de
+	// um nome gravado por outra instancia; a violacao volta para o formulario.
 	@Transactional
-	public void salvar(Usuario usuario) {
-		usuarioRepository.save(usuario);
+	public void salvar(Usuario usuario, BindingResult resultado) {
+		try {
+			usuarioRepository.saveAndFlush(usuario);
+		} catch (DataIntegrityViolationException e) {
+			if (indiceUnicidade.rejeitarDuplicado(e, resultado)) {
+				return;
+			}
+			throw e;
+		}
 	}
 }
@@ -1,79 +1,73 @@
 package web.controlevacinacao.service;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.BindingResult; // <<== NOVO IMPORT
 
 import web.controlevacinacao.model.Carro;
 import web.controlevacinacao.model.StatusCarro;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.VersoesPesquisa;
+import web.controlevacinacao.painel.EventoFrota;
 import web.controlevacinacao.repository.CarroRepository;
-
-import java.util.Optional; // <<== NOVO IMPORT
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
 
 @Service
 @Transactional // Aplica transações a todos os métodos públicos desta classe
+@CacheEvict(cacheNames = "carros", allEntries = true)
 public class CarroService {
 
     private final CarroRepository carroRepository;
+    private final ApplicationEventPublisher eventos;
+    private final VersoesPesquisa versoesPesquisa;
+    private final IndiceUnicidade indiceUnicidade;
+    private final ContagemCache contagemCache;
 
-    public CarroService(CarroRepository carroRepository) {
+    public CarroService(CarroRepository carroRepository, ApplicationEventPublisher eventos,
+            VersoesPesquisa versoesPesquisa, IndiceUnicidade indiceUnicidade, ContagemCache contagemCache) {
         this.carroRepository = carroRepository;
+        this.eventos = eventos;
+        this.versoesPesquisa = versoesPesquisa;
+        this.indiceUnicidade = indiceUnicidade;
+        this.contagemCache = contagemCache;
     }
 
-    // --- MÉTODO SALVAR ATUALIZADO COM VALIDAÇÃO DE PLACA ---
     public void salvar(Carro carro, BindingResult resultado) { // <<== AGORA RECEBE BindingResult
-
-        // Lógica para verificar se a placa já existe no banco de dados
-
-        Optional<Carro> carroExistente;
-
-        // Se o carro não tem código, significa que é um NOVO CADASTRO
-        if (carro.getCodigo() == null) {
-            // Buscamos qualquer carro com a placa informada
-            carroExistente = carroRepository.findByPlaca(carro.getPlaca());
-        } else { // Se o carro JÁ TEM CÓDIGO, significa que é uma ALTERAÇÃO
-            // Buscamos um carro com a placa informada, mas que NÃO seja o carro que estamos editando
-            carroExistente = carroRepository.findByPlacaAndCodigoNot(carro.getPlaca(), carro.getCodigo());
-        }
-
-        // Se um carro com a mesma placa (e diferente código, se for alteração) foi encontrado
-        if (carroExistente.isPresent()) {
-            // Adicionamos um erro ao BindingResult, associado ao campo "placa"
-            resultado.rejectValue("placa", "placa.ja.existe", "Já existe um carro cadastrado com esta placa.");
-            // Não vamos lançar uma exceção aqui, apenas adicionar o erro.
-            // O controller verificará 'resultado.hasErrors()' depois de chamar este método.
-            return; // Sai do método sem tentar salvar no banco
-        }
-
-        // Se a validação da placa passou (ou não era uma placa duplicada)
-        carroRepository.save(carro); // Salva o carro no banco de dados
+        gravar(carro, resultado);
     }
 
-    // --- MÉTODO ALTERAR ATUALIZADO (se quiser aplicar a mesma validação) ---
-    // É uma boa prática ter a mesma validação de placa para evitar duplicidade na alteração
     public void alterar(Carro carro, BindingResult resultado) { // <<== AGORA RECEBE BindingResult
-       Optional<Carro> carroExistente;
-
-        // Se o carro não tem código, significa que é um NOVO CADASTRO
-        if (carro.getCodigo() == null) {
-            // Buscamos qualquer carro com a placa informada
-            carroExistente = carroRepository.findByPlaca(carro.getPlaca());
-        } else { // Se o carro JÁ TEM CÓDIGO, significa que é uma ALTERAÇÃO
-            // Buscamos um carro com a placa informada, mas que NÃO seja o carro que estamos editando
-            carroExistente = carroRepository.findByPlacaAndCodigoNot(carro.getPlaca(), carro.getCodigo());
-        }
+        gravar(carro, resultado);
+    }
 
-        // Se um carro com a mesma placa (e diferente código, se for alteração) foi encontrado
-        if (carroExistente.isPresent()) {
-            // Adicionamos um erro ao BindingResult, associado ao campo "placa"
-            resultado.rejectValue("placa", "placa.ja.existe", "Já existe um carro cadastrado com esta placa.");
-            // Não vamos lançar uma exceção aqui, apenas adicionar o erro.
+    // Cadastro e alteração passam pelo mesmo caminho: no máximo uma consulta de placa
+    // e um único INSERT ou UPDATE. O código do carro é quem decide entre os dois.
+    private void gravar(Carro carro, BindingResult resultado) {
+        // Placa que com certeza ainda não existe dispensa a consulta ao banco
+        if (indiceUnicidade.podeExistir(CampoUnico.PLACA, carro.getPlaca())
+                && carroRepository.placaEmUso(carro.getPlaca(), carro.getCodigo())) {
+            // Adicionamos um erro ao BindingResult, associado ao campo "placa".
             // O controller verificará 'resultado.hasErrors()' depois de chamar este método.
+            resultado.rejectValue("placa", CampoUnico.PLACA.getCodigoErro(), CampoUnico.PLACA.getMensagem());
             return; // Sai do método sem tentar salvar no banco
         }
 
-        // Se a validação da placa passou (ou não era uma placa duplicada)
-        carroRepository.save(carro); // Salva o carro no banco de dados
+        try {
+            carroRepository.gravar(carro); // Um INSERT ou um UPDATE, sem SELECT antes
+        } catch (DataIntegrityViolationException e) {
+            // A restrição única do banco pegou uma placa gravada depois da verificação acima
+            if (indiceUnicidade.rejeitarDuplicado(e, resultado)) {
+                return;
+            }
+            throw e;
+        }
+        eventos.publishEvent(EventoFrota.deCarro(carro)); // Avisa os paineis de frota depois do commit
+        versoesPesquisa.incrementar(VersoesPesquisa.CARROS);
+        contagemCache.limpar();
     }
 
     public void remover(Long codigo) {
@@ -86,6 +80,9 @@ public class CarroService {
             // Altera o status para INATIVO (remoção lógica)
             carro.setStatusCarro(StatusCarro.INATIVO);
             carroRepository.save(carro);
+            eventos.publishEvent(EventoFrota.deCarro(carro));
+            versoesPesquisa.incrementar(VersoesPesquisa.CARROS);
+            contagemCache.limpar();
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package web.controlevacinacao.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import web.controlevacinacao.filter.AplicacaoFilter;
+import web.controlevacinacao.filter.CarroFilter;
+import web.controlevacinacao.filter.LoteFilter;
+import web.controlevacinacao.filter.MotoristaFilter;
+import web.controlevacinacao.filter.MovimentacaoFilter;
+import web.controlevacinacao.filter.PessoaFilter;
+import web.controlevacinacao.filter.VacinaFilter;
+import web.controlevacinacao.projection.AplicacaoResumo;
+import web.controlevacinacao.projection.CarroResumo;
+import web.controlevacinacao.projection.LoteResumo;
+import web.controlevacinacao.projection.MotoristaResumo;
+import web.controlevacinacao.projection.MovimentacaoResumo;
+import web.controlevacinacao.projection.PessoaResumo;
+import web.controlevacinacao.projection.VacinaResumo;
+import web.controlevacinacao.relatorio.EscritorCsv;
+import web.controlevacinacao.relatorio.EscritorNdjson;
+import web.controlevacinacao.relatorio.FormatoExportacao;
+import web.controlevacinacao.repository.AplicacaoRepository;
+import web.controlevacinacao.repository.CarroRepository;
+import web.controlevacinacao.repository.LoteRepository;
+import web.controlevacinacao.repository.MotoristaRepository;
+import web.controlevacinacao.repository.MovimentacaoRepository;
+import web.controlevacinacao.repository.PessoaRepository;
+import web.controlevacinacao.repository.VacinaRepository;
+
+/**
+ * Exporta todos os registros de uma pesquisa com os mesmos filtros e a mesma
+ * ordenacao da tela. Cada exportacao eh uma unica consulta percorrida em
+ * streaming e escrita na saida a medida que as linhas chegam, entao o uso de
+ * memoria nao depende de quantos registros o filtro encontra.
+ */
+@Service
+public class ExportacaoPesquisaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExportacaoPesquisaService.class);
+
+    private CarroRepository carroRepository;
+    private MotoristaRepository motoristaRepository;
+    private MovimentacaoRepository movimentacaoRepository;
+    private PessoaRepository pessoaRepository;
+    private VacinaRepository vacinaRepository;
+    private LoteRepository loteRepository;
+    private AplicacaoRepository aplicacaoRepository;
+    private ObjectMapper objectMapper;
+
+    public ExportacaoPesquisaService(CarroRepository carroRepository, MotoristaRepository motoristaRepository,
+            MovimentacaoRepository movimentacaoRepository, PessoaRepository pessoaRepository,
+            VacinaRepository vacinaRepository, LoteRepository loteRepository,
+            AplicacaoRepository aplicacaoRepository, ObjectMapper objectMapper) {
+        this.carroRepository = carroRepository;
+        this.motoristaRepository = motoristaRepository;
+        this.movimentacaoRepository = movimentacaoRepository;
+        this.pessoaRepository = pessoaRepository;
+        this.vacinaRepository = vacinaRepository;
+        this.loteRepository = loteRepository;
+        this.aplicacaoRepository = aplicacaoRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public void exportarCarros(CarroFilter filtro, Sort sort, FormatoExportacao formato, OutputStream saida)
+            throws IOException {
+        logger.debug("Exportando carros em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Placa", "Modelo", "Cor", "Km atual", "Status" },
+                (CarroResumo c) -> new Object[] { c.getCodigo(), c.getPlaca(), c.getModelo(), c.getCor(),
+                        c.getKmAtual(), c.getStatusCarro() == null ? null : c.getStatusCarro().getDescricao() },
+                consumidor -> carroRepository.exportar(filtro, sort, consumidor));
+    }
+
+    public void exportarMotoristas(MotoristaFilter filtro, Sort sort, FormatoExportacao formato, OutputStream saida)
+            throws IOException {
+        logger.debug("Exportando motoristas em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Nome", "CPF", "CNH", "Data de nascimento", "Status" },
+                (MotoristaResumo m) -> new Object[] { m.getCodigo(), m.getNome(), m.getCpf(), m.getCnh(),
+                        m.getDataNascimento(), m.getStatus() == null ? null : m.getStatus().getDescricao() },
+                consumidor -> motoristaRepository.exportar(filtro, sort, consumidor));
+    }
+
+    public void exportarMovimentacoes(MovimentacaoFilter filtro, Sort sort, FormatoExportacao formato,
+            OutputStream saida) throws IOException {
+        logger.debug("Exportando movimentações em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Data de saída", "Data de retorno", "Status", "Placa",
+                "Modelo", "Motorista", "CNH" },
+                (MovimentacaoResumo m) -> new Object[] { m.getCodigo(), m.getDataSaida(), m.getDataRetorno(),
+                        m.getStatusMovimentacao() == null ? null : m.getStatusMovimentacao().getDescricao(),
+                        m.getPlacaCarro(), m.getModeloCarro(), m.getNomeMotorista(), m.getCnhMotorista() },
+                consumidor -> movimentacaoRepository.exportar(filtro, sort, consumidor));
+    }
+
+    public void exportarPessoas(PessoaFilter filtro, Sort sort, FormatoExportacao formato, OutputStream saida)
+            throws IOException {
+        logger.debug("Exportando pessoas em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Nome", "CPF", "Data de nascimento" },
+                (PessoaResumo p) -> new Object[] { p.getCodigo(), p.getNome(), p.getCpf(), p.getDataNascimento() },
+                consumidor -> pessoaRepository.exportar(filtro, sort, consumidor));
+    }
+
+    public void exportarVacinas(VacinaFilter filtro, Sort sort, FormatoExportacao formato, OutputStream saida)
+            throws IOException {
+        logger.debug("Exportando vacinas em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Nome", "Descrição" },
+                (VacinaResumo v) -> new Object[] { v.getCodigo(), v.getNome(), v.getDescricao() },
+                consumidor -> vacinaRepository.exportar(filtro, sort, consumidor));
+    }
+
+    public void exportarLotes(LoteFilter filtro, Sort sort, FormatoExportacao formato, OutputStream saida)
+            throws IOException {
+        logger.debug("Exportando lotes em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Vacina", "Validade", "Doses do lote", "Doses atuais" },
+                (LoteResumo l) -> new Object[] { l.getCodigo(), l.getNomeVacina(), l.getValidade(),
+                        l.getNroDosesDoLote(), l.getNroDosesAtual() },
+                consumidor -> loteRepository.exportar(filtro, sort, consumidor));
+    }
+
+    public void exportarAplicacoes(AplicacaoFilter filtro, Sort sort, FormatoExportacao formato, OutputStream saida)
+            throws IOException {
+        logger.debug("Exportando aplicações em {} para {}", formato, filtro);
+        exportar(formato, saida, new String[] { "Código", "Data", "Lote", "CPF da pessoa" },
+                (AplicacaoResumo a) -> new Object[] { a.getCodigo(), a.getData(), a.getCodigoLote(),
+                        a.getCpfPessoa() },
+                consumidor -> aplicacaoRepository.exportar(filtro, sort, consumidor));
+    }
+
+    /**
+     * No CSV cada registro vira uma linha com as colunas do cabecalho; no NDJSON
+     * a propria projecao eh serializada, com os nomes dos atributos como chaves.
+     */
+    private <T> void exportar(FormatoExportacao formato, OutputStream saida, String[] cabecalho,
+            Function<T, Object[]> colunas, Consumer<Consumer<T>> consulta) throws IOException {
+        try {
+            if (formato == FormatoExportacao.NDJSON) {
+                EscritorNdjson ndjson = new EscritorNdjson(saida, objectMapper);
+                consulta.accept(ndjson::linha);
+                ndjson.terminar();
+            } else {
+                EscritorCsv csv = new EscritorCsv(saida);
+                csv.linha((Object[]) cabecalho);
+                consulta.accept(registro -> csv.linha(colunas.apply(registro)));
+                csv.terminar();
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+}
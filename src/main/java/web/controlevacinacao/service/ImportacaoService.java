@@ -0,0 +1,317 @@
+package web.controlevacinacao.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import web.controlevacinacao.importacao.LeitorCsv;
+import web.controlevacinacao.importacao.ResultadoImportacao;
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.VersoesPesquisa;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
+
+/**
+ * Importa carros e motoristas de um CSV (o mesmo formato do EscritorCsv, que o
+ * Excel salva como "CSV separado por ponto e virgula").
+ *
+ * O arquivo eh lido em streaming. Cada linha passa pelas mesmas validacoes do
+ * formulario (anotacoes da entidade e unicidade de placa, CPF e CNH) e as
+ * validas sao gravadas em lotes de importacao.linhas-por-transacao linhas, uma
+ * transacao por lote. Dentro do lote a unicidade eh conferida com uma consulta
+ * por campo e os INSERTs vao ao banco em batches JDBC do tamanho de
+ * hibernate.jdbc.batch_size. Linhas com erro nao sao gravadas e entram no
+ * relatorio com o numero da linha; as demais seguem.
+ *
+ * Os INSERTs usam "on conflict do nothing": uma placa, CPF ou CNH gravado por
+ * outra requisicao entre a consulta e o INSERT vira erro da linha em vez de
+ * desfazer o lote inteiro.
+ *
+ * Os codigos sao reservados por lote como faz o otimizador pooled-lo do
+ * Hibernate (V19): cada nextval eh o primeiro de um bloco de 50 codigos, entao
+ * um lote de 1000 linhas gasta 20 valores da sequencia. Deixar o codigo para o
+ * DEFAULT da coluna gastaria um bloco inteiro por linha.
+ */
+@Service
+public class ImportacaoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportacaoService.class);
+
+    private static final DateTimeFormatter FORMATO_DATA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private static final String INSERT_CARRO = "insert into carro "
+            + "(codigo, placa, modelo, cor, km_atual, status_carro, versao) "
+            + "values (?, ?, ?, ?, ?, 'ATIVO', 0) on conflict do nothing";
+
+    private static final String INSERT_MOTORISTA = "insert into pessoa "
+            + "(codigo, nome, cpf, cnh, data_nascimento, status, tipo_entidade, versao) "
+            + "values (?, ?, ?, ?, ?, 'ATIVO', 'MOTORISTA', 0) on conflict do nothing";
+
+    // Igual ao allocationSize de Carro e Pessoa e ao INCREMENT BY das sequencias (V19)
+    private static final int CODIGOS_POR_BLOCO = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Validator validator;
+    private final IndiceUnicidade indiceUnicidade;
+    private final VersoesPesquisa versoesPesquisa;
+    private final ContagemCache contagemCache;
+    private final int tamanhoBatch;
+    private final int linhasPorTransacao;
+    private final int limiteErros;
+
+    public ImportacaoService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, Validator validator,
+            IndiceUnicidade indiceUnicidade, VersoesPesquisa versoesPesquisa, ContagemCache contagemCache,
+            @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:25}") int tamanhoBatch,
+            @Value("${importacao.linhas-por-transacao:1000}") int linhasPorTransacao,
+            @Value("${importacao.limite-erros:500}") int limiteErros) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.validator = validator;
+        this.indiceUnicidade = indiceUnicidade;
+        this.versoesPesquisa = versoesPesquisa;
+        this.contagemCache = contagemCache;
+        this.tamanhoBatch = tamanhoBatch;
+        this.linhasPorTransacao = linhasPorTransacao;
+        this.limiteErros = limiteErros;
+    }
+
+    @CacheEvict(cacheNames = "carros", allEntries = true)
+    public ResultadoImportacao importarCarros(InputStream entrada) throws IOException {
+        Map<CampoUnico, Function<Carro, String>> chaves = new EnumMap<>(CampoUnico.class);
+        chaves.put(CampoUnico.PLACA, Carro::getPlaca);
+        ResultadoImportacao resultado = importar(entrada, List.of("placa", "modelo", "cor", "kmAtual"),
+                this::montarCarro, chaves, new Insercao<>("carro_codigo_seq", Carro::setCodigo, INSERT_CARRO,
+                        (ps, carro) -> {
+                            ps.setLong(1, carro.getCodigo());
+                            ps.setString(2, carro.getPlaca());
+                            ps.setString(3, carro.getModelo());
+                            ps.setString(4, carro.getCor());
+                            ps.setLong(5, carro.getKmAtual());
+                        }));
+        if (resultado.getImportadas() > 0) {
+            versoesPesquisa.incrementar(VersoesPesquisa.CARROS);
+            contagemCache.limpar();
+        }
+        return resultado;
+    }
+
+    @CacheEvict(cacheNames = "motoristas", allEntries = true)
+    public ResultadoImportacao importarMotoristas(InputStream entrada) throws IOException {
+        Map<CampoUnico, Function<Motorista, String>> chaves = new EnumMap<>(CampoUnico.class);
+        chaves.put(CampoUnico.CPF, Motorista::getCpf);
+        chaves.put(CampoUnico.CNH, Motorista::getCnh);
+        ResultadoImportacao resultado = importar(entrada, List.of("nome", "cpf", "cnh", "dataNascimento"),
+                this::montarMotorista, chaves, new Insercao<>("pessoa_codigo_seq", Motorista::setCodigo,
+                        INSERT_MOTORISTA, (ps, motorista) -> {
+                            ps.setLong(1, motorista.getCodigo());
+                            ps.setString(2, motorista.getNome());
+                            ps.setString(3, motorista.getCpf());
+                            ps.setString(4, motorista.getCnh());
+                            ps.setDate(5, Date.valueOf(motorista.getDataNascimento()));
+                        }));
+        if (resultado.getImportadas() > 0) {
+            versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+            contagemCache.limpar();
+        }
+        return resultado;
+    }
+
+    private Carro montarCarro(LeitorCsv leitor, Map<String, String> erros) {
+        Carro carro = new Carro();
+        carro.setPlaca(leitor.valor("placa"));
+        carro.setModelo(leitor.valor("modelo"));
+        carro.setCor(leitor.valor("cor"));
+        String km = leitor.valor("kmAtual");
+        if (km != null) {
+            try {
+                carro.setKmAtual(Long.valueOf(km.replace(".", "")));
+            } catch (NumberFormatException e) {
+                erros.put("kmAtual", "A quilometragem deve ser um número inteiro");
+            }
+        }
+        return carro;
+    }
+
+    private Motorista montarMotorista(LeitorCsv leitor, Map<String, String> erros) {
+        Motorista motorista = new Motorista();
+        motorista.setNome(leitor.valor("nome"));
+        motorista.setCpf(somenteDigitos(leitor.valor("cpf")));
+        motorista.setCnh(somenteDigitos(leitor.valor("cnh")));
+        String data = leitor.valor("dataNascimento");
+        if (data != null) {
+            try {
+                motorista.setDataNascimento(data.contains("/") ? LocalDate.parse(data, FORMATO_DATA)
+                        : LocalDate.parse(data));
+            } catch (DateTimeParseException e) {
+                erros.put("dataNascimento", "A data de nascimento deve estar no formato dd/mm/aaaa");
+            }
+        }
+        return motorista;
+    }
+
+    // O Excel costuma mostrar CPF e CNH com pontos e tracos, que o formulario nao aceita
+    private static String somenteDigitos(String valor) {
+        return valor == null ? null : valor.replaceAll("[.\\-/\\s]", "");
+    }
+
+    private <T> ResultadoImportacao importar(InputStream entrada, List<String> colunas,
+            Montador<T> montador, Map<CampoUnico, Function<T, String>> chaves, Insercao<T> insercao)
+            throws IOException {
+        long inicio = System.nanoTime();
+        ResultadoImportacao resultado = new ResultadoImportacao(limiteErros);
+        try (LeitorCsv leitor = new LeitorCsv(entrada)) {
+            List<String> ausentes = colunas.stream().filter(coluna -> !leitor.temColuna(coluna)).toList();
+            if (!ausentes.isEmpty()) {
+                resultado.adicionarErro(1, String.join(", ", ausentes),
+                        "Coluna(s) obrigatória(s) ausente(s) no cabeçalho. Esperado: " + String.join(";", colunas));
+                return resultado;
+            }
+
+            // Valores ja aceitos neste arquivo, para recusar a segunda ocorrencia de uma placa, CPF ou CNH
+            Map<CampoUnico, Set<String>> noArquivo = new EnumMap<>(CampoUnico.class);
+            chaves.keySet().forEach(campo -> noArquivo.put(campo, new HashSet<>()));
+            List<LinhaImportada<T>> lote = new ArrayList<>(linhasPorTransacao);
+
+            while (leitor.proximo()) {
+                resultado.contarLida();
+                Map<String, String> erros = new HashMap<>();
+                T entidade = montador.montar(leitor, erros);
+                for (ConstraintViolation<T> violacao : validator.validate(entidade)) {
+                    erros.putIfAbsent(violacao.getPropertyPath().toString(), violacao.getMessage());
+                }
+                for (Map.Entry<CampoUnico, Function<T, String>> chave : chaves.entrySet()) {
+                    String valor = chave.getValue().apply(entidade);
+                    if (valor != null && !erros.containsKey(chave.getKey().getAtributo())
+                            && !noArquivo.get(chave.getKey()).add(valor)) {
+                        erros.put(chave.getKey().getAtributo(), "Valor repetido em outra linha do arquivo");
+                    }
+                }
+                if (!erros.isEmpty()) {
+                    erros.forEach((campo, mensagem) -> resultado.adicionarErro(leitor.getLinha(), campo, mensagem));
+                    continue;
+                }
+                lote.add(new LinhaImportada<>(leitor.getLinha(), entidade));
+                if (lote.size() == linhasPorTransacao) {
+                    gravarLote(lote, chaves, insercao, resultado);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                gravarLote(lote, chaves, insercao, resultado);
+            }
+        }
+        resultado.setDuracao(Duration.ofNanos(System.nanoTime() - inicio));
+        logger.info("Importação concluída: {} linhas lidas, {} gravadas, {} com erro em {}", resultado.getLidas(),
+                resultado.getImportadas(), resultado.getLinhasComErro(), resultado.getDuracao());
+        return resultado;
+    }
+
+    private <T> void gravarLote(List<LinhaImportada<T>> lote, Map<CampoUnico, Function<T, String>> chaves,
+            Insercao<T> insercao, ResultadoImportacao resultado) {
+        List<LinhaImportada<T>> gravadas = transactionTemplate.execute(status -> {
+            List<LinhaImportada<T>> aGravar = new ArrayList<>(lote);
+            for (Map.Entry<CampoUnico, Function<T, String>> chave : chaves.entrySet()) {
+                CampoUnico campo = chave.getKey();
+                List<String> valores = aGravar.stream().map(linha -> chave.getValue().apply(linha.entidade())).toList();
+                Set<String> existentes = indiceUnicidade.existentes(campo, valores);
+                if (existentes.isEmpty()) {
+                    continue;
+                }
+                for (Iterator<LinhaImportada<T>> it = aGravar.iterator(); it.hasNext();) {
+                    LinhaImportada<T> linha = it.next();
+                    if (existentes.contains(chave.getValue().apply(linha.entidade()))) {
+                        resultado.adicionarErro(linha.numero(), campo.getAtributo(), campo.getMensagem());
+                        it.remove();
+                    }
+                }
+            }
+
+            List<T> entidades = aGravar.stream().map(LinhaImportada::entidade).toList();
+            reservarCodigos(insercao, entidades);
+            int[][] contagens = jdbcTemplate.batchUpdate(insercao.insert(), entidades, tamanhoBatch,
+                    insercao.parametros());
+            List<LinhaImportada<T>> inseridas = new ArrayList<>(aGravar.size());
+            int posicao = 0;
+            for (int[] batch : contagens) {
+                for (int linhasAfetadas : batch) {
+                    LinhaImportada<T> linha = aGravar.get(posicao++);
+                    if (linhasAfetadas == 0) {
+                        // O "on conflict" pulou a linha: alguem gravou o valor depois da consulta acima
+                        resultado.adicionarErro(linha.numero(), String.join("/", nomes(chaves)),
+                                "Já cadastrado no sistema (gravado durante a importação)");
+                    } else {
+                        inseridas.add(linha);
+                    }
+                }
+            }
+            return inseridas;
+        });
+
+        // Depois do commit, para o indice nao conhecer valores de um lote desfeito
+        for (LinhaImportada<T> linha : gravadas) {
+            chaves.forEach((campo, valor) -> indiceUnicidade.registrar(campo, valor.apply(linha.entidade())));
+        }
+        resultado.contarImportadas(gravadas.size());
+    }
+
+    // Uma consulta reserva os blocos do lote todo; a linha i fica com o codigo i % 50 do bloco i / 50
+    private <T> void reservarCodigos(Insercao<T> insercao, List<T> entidades) {
+        if (entidades.isEmpty()) {
+            return;
+        }
+        int blocos = (entidades.size() + CODIGOS_POR_BLOCO - 1) / CODIGOS_POR_BLOCO;
+        List<Long> inicios = jdbcTemplate.queryForList(
+                "select nextval('" + insercao.sequencia() + "') from generate_series(1, ?)", Long.class, blocos);
+        for (int i = 0; i < entidades.size(); i++) {
+            insercao.definirCodigo().accept(entidades.get(i),
+                    inicios.get(i / CODIGOS_POR_BLOCO) + i % CODIGOS_POR_BLOCO);
+        }
+    }
+
+    private static List<String> nomes(Map<CampoUnico, ?> chaves) {
+        return chaves.keySet().stream().map(CampoUnico::getAtributo).toList();
+    }
+
+    @FunctionalInterface
+    private interface Montador<T> {
+        // Monta a entidade com os valores da linha atual; erros de conversao vao para 'erros' (campo -> mensagem)
+        T montar(LeitorCsv leitor, Map<String, String> erros);
+    }
+
+    private record LinhaImportada<T>(long numero, T entidade) {
+    }
+
+    // Como gravar um tipo: sequencia dos codigos, onde por o codigo reservado e o INSERT com os parametros
+    private record Insercao<T>(String sequencia, BiConsumer<T, Long> definirCodigo, String insert,
+            ParameterizedPreparedStatementSetter<T> parametros) {
+    }
+
+}
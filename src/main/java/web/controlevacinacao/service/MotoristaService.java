@@ -1,67 +1,53 @@
 // web.controlevacinacao.service/MotoristaService.java
 package web.controlevacinacao.service;
 
+import java.util.Objects;
+
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.BindingResult;
 
 import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.model.Pessoa;
 import web.controlevacinacao.model.Status;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.VersoesPesquisa;
 import web.controlevacinacao.repository.MotoristaRepository;
+import web.controlevacinacao.repository.PessoaRepository;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
 
 @Service
 @Transactional
+@CacheEvict(cacheNames = "motoristas", allEntries = true)
 public class MotoristaService {
 
     private final MotoristaRepository motoristaRepository;
-    private final PessoaService pessoaService;
+    private final PessoaRepository pessoaRepository;
+    private final VersoesPesquisa versoesPesquisa;
+    private final IndiceUnicidade indiceUnicidade;
+    private final ContagemCache contagemCache;
 
     @Autowired // Você pode usar injeção por construtor também, como no PessoaController
 
-    public MotoristaService(MotoristaRepository motoristaRepository, PessoaService pessoaService) {
+    public MotoristaService(MotoristaRepository motoristaRepository, PessoaRepository pessoaRepository,
+            VersoesPesquisa versoesPesquisa, IndiceUnicidade indiceUnicidade, ContagemCache contagemCache) {
         this.motoristaRepository = motoristaRepository;
-        this.pessoaService = pessoaService; // Inicialize
+        this.pessoaRepository = pessoaRepository;
+        this.versoesPesquisa = versoesPesquisa;
+        this.indiceUnicidade = indiceUnicidade;
+        this.contagemCache = contagemCache;
     }
 
     public void salvar(Motorista motorista, BindingResult result) {
-        // Chama a validação de CPF no PessoaService (que Motorista herda)
-        // O PessoaService AGORA NÃO RETORNA E APENAS ADICIONA ERROS AO 'result'
-        // A condição para salvar/alterar é decidida pelo 'codigo' dentro do
-        // PessoaService
-
-        // Validação de CNH duplicada (específica de Motorista)
-        Motorista motoristaExistenteCnh = motoristaRepository.findByCnh(motorista.getCnh());
-        if (motoristaExistenteCnh != null && (motorista.getCodigo() == null
-                || !motoristaExistenteCnh.getCodigo().equals(motorista.getCodigo()))) {
-            result.rejectValue("cnh", "cnh.duplicada", "CNH já cadastrada no sistema.");
-        }
-        pessoaService.salvar(motorista, result);
-
-        // CRÍTICO: SOMENTE SALVA NO BANCO DE DADOS SE NÃO HOUVER ERROS
-        // (incluindo os adicionados pelo PessoaService e pela validação de CNH)
-        if (!result.hasErrors()) {
-            motoristaRepository.save(motorista);
-        }
+        gravar(motorista, result);
     }
 
     public void alterar(Motorista motorista, BindingResult result) {
-
-        // Validação de CNH duplicada (específica de Motorista)
-        Motorista motoristaExistenteCnh = motoristaRepository.findByCnh(motorista.getCnh());
-        if (motoristaExistenteCnh != null && (motorista.getCodigo() == null
-                || !motoristaExistenteCnh.getCodigo().equals(motorista.getCodigo()))) {
-            result.rejectValue("cnh", "cnh.duplicada", "CNH já cadastrada no sistema.");
-        }
-
-        // Chamar a validação de CPF do PessoaService
-        pessoaService.salvar(motorista, result);
-
-        // CRÍTICO: SOMENTE SALVA NO BANCO DE DADOS SE NÃO HOUVER ERROS
-        // (incluindo os adicionados pelo PessoaService e pela validação de CNH)
-        if (!result.hasErrors()) {
-            motoristaRepository.save(motorista);
-        }
+        gravar(motorista, result);
     }
 
     public void remover(Long codigo) {
@@ -71,7 +57,45 @@ public class MotoristaService {
         } else {
             motorista.setStatus(Status.INATIVO); // Altera o status do motorista para INATIVO
             motoristaRepository.save(motorista); // Salva a entidade atualizada
+            versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+            contagemCache.limpar();
+        }
+    }
+
+    // Cadastro e alteração do motorista: valida CNH e CPF (herdado de Pessoa) em uma
+    // única consulta e grava com um único INSERT ou UPDATE. A decisão entre os dois
+    // fica com o 'codigo', como antes.
+    private void gravar(Motorista motorista, BindingResult result) {
+        // CNH e CPF que com certeza ainda não existem dispensam a consulta ao banco
+        boolean cnhPodeExistir = indiceUnicidade.podeExistir(CampoUnico.CNH, motorista.getCnh());
+        boolean cpfPodeExistir = indiceUnicidade.podeExistir(CampoUnico.CPF, motorista.getCpf());
+        if (cnhPodeExistir || cpfPodeExistir) {
+            for (Pessoa existente : pessoaRepository.buscarDuplicados(motorista.getCpf(), motorista.getCnh(),
+                    motorista.getCodigo())) {
+                if (Objects.equals(motorista.getCpf(), existente.getCpf())) {
+                    result.rejectValue("cpf", CampoUnico.CPF.getCodigoErro(), CampoUnico.CPF.getMensagem());
+                }
+                if (existente instanceof Motorista outro && Objects.equals(motorista.getCnh(), outro.getCnh())) {
+                    result.rejectValue("cnh", CampoUnico.CNH.getCodigoErro(), CampoUnico.CNH.getMensagem());
+                }
+            }
+        }
+
+        // CRÍTICO: SOMENTE SALVA NO BANCO DE DADOS SE NÃO HOUVER ERROS
+        if (result.hasErrors()) {
+            return;
+        }
+        try {
+            motoristaRepository.gravar(motorista);
+        } catch (DataIntegrityViolationException e) {
+            // O banco ainda recusa CNH ou CPF gravados por outra requisição depois da verificação
+            if (indiceUnicidade.rejeitarDuplicado(e, result)) {
+                return;
+            }
+            throw e;
         }
+        versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+        contagemCache.limpar();
     }
 
     // Você pode adicionar outros métodos de serviço aqui, como busca, listagem,
@@ -1,10 +1,25 @@
 package web.controlevacinacao.service;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.validation.BindingResult;
 
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.model.Motorista;
 import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.model.Status;
+import web.controlevacinacao.model.StatusCarro;
 import web.controlevacinacao.model.StatusMovimentacao;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.VersoesPesquisa;
+import web.controlevacinacao.painel.EventoFrota;
+import web.controlevacinacao.repository.CarroRepository;
+import web.controlevacinacao.repository.MotoristaRepository;
 import web.controlevacinacao.repository.MovimentacaoRepository;
 
 @Transactional
@@ -12,27 +27,146 @@ import web.controlevacinacao.repository.MovimentacaoRepository;
 public class MovimentacaoService {
 
     private MovimentacaoRepository movimentacaoRepository;
+    private CarroRepository carroRepository;
+    private MotoristaRepository motoristaRepository;
+    private UsoFrotaService usoFrotaService;
+    private ApplicationEventPublisher eventos;
+    private VersoesPesquisa versoesPesquisa;
+    private ContagemCache contagemCache;
 
-    public MovimentacaoService(MovimentacaoRepository movimentacaoRepository) {
+    public MovimentacaoService(MovimentacaoRepository movimentacaoRepository, CarroRepository carroRepository,
+            MotoristaRepository motoristaRepository, UsoFrotaService usoFrotaService,
+            ApplicationEventPublisher eventos, VersoesPesquisa versoesPesquisa, ContagemCache contagemCache) {
         this.movimentacaoRepository = movimentacaoRepository;
+        this.carroRepository = carroRepository;
+        this.motoristaRepository = motoristaRepository;
+        this.usoFrotaService = usoFrotaService;
+        this.eventos = eventos;
+        this.versoesPesquisa = versoesPesquisa;
+        this.contagemCache = contagemCache;
     }
 
     public void salvar(Movimentacao movimentacao) {
         movimentacaoRepository.save(movimentacao);
+        eventos.publishEvent(EventoFrota.deMovimentacao(movimentacao));
+        versoesPesquisa.incrementar(VersoesPesquisa.MOVIMENTACOES);
     }
 
-    public void alterar(Movimentacao movimentacao) {
+    /**
+     * Grava a alteracao de uma movimentacao. O uso diario da frota troca os
+     * valores antigos pelos novos na mesma transacao, para as viagens concluidas
+     * (as canceladas nunca foram somadas).
+     */
+    public void alterar(Movimentacao movimentacao, BindingResult resultado) {
+        if (movimentacao.getKmRetorno() != null && movimentacao.getKmSaida() != null
+                && movimentacao.getKmRetorno() < movimentacao.getKmSaida()) {
+            resultado.rejectValue("kmRetorno", "kmRetorno.menor.que.saida",
+                    "A quilometragem de retorno deve ser maior ou igual à de saída (" + movimentacao.getKmSaida() + ").");
+            return;
+        }
+        Movimentacao anterior = movimentacaoRepository.findById(movimentacao.getCodigo()).orElseThrow();
+        if (anterior.isViagemConcluida()) {
+            usoFrotaService.removerViagem(anterior); // Ainda com os valores gravados
+        }
         movimentacaoRepository.save(movimentacao);
+        if (movimentacao.isViagemConcluida()) {
+            usoFrotaService.registrarViagem(movimentacao);
+        }
+        versoesPesquisa.incrementar(VersoesPesquisa.MOVIMENTACOES);
+    }
+
+    /**
+     * Saida de um carro com um motorista, tudo em uma transacao.
+     *
+     * Carro e motorista sao reservados com UPDATE condicional (so muda quem ainda
+     * esta ATIVO), sem bloquear a tabela. Se dois despachantes escolherem o
+     * mesmo carro ao mesmo tempo, o segundo UPDATE espera o primeiro, nao
+     * encontra mais o carro ATIVO e a transacao dele eh desfeita com
+     * RecursoIndisponivelException.
+     */
+    @CacheEvict(cacheNames = { "carros", "motoristas" }, allEntries = true)
+    public Movimentacao iniciar(Long codigoCarro, Long codigoMotorista) {
+        if (carroRepository.trocarStatus(codigoCarro, StatusCarro.ATIVO, StatusCarro.EM_USO) == 0) {
+            throw new RecursoIndisponivelException("O carro escolhido não está mais disponível.");
+        }
+        if (motoristaRepository.trocarStatus(codigoMotorista, Status.ATIVO, Status.EM_MOVIMENTACAO) == 0) {
+            throw new RecursoIndisponivelException("O motorista escolhido não está mais disponível.");
+        }
+        Carro carro = carroRepository.findById(codigoCarro).orElseThrow();
+        Motorista motorista = motoristaRepository.findById(codigoMotorista).orElseThrow();
+
+        Movimentacao movimentacao = new Movimentacao();
+        movimentacao.setCarro(carro);
+        movimentacao.setMotorista(motorista);
+        movimentacao.setKmSaida(carro.getKmAtual());
+        movimentacao.setDataSaida(LocalDate.now());
+        movimentacao.setHoraSaida(LocalTime.now());
+        movimentacao.setStatusMovimentacao(StatusMovimentacao.ATIVA);
+        salvar(movimentacao);
+        versoesPesquisa.incrementar(VersoesPesquisa.CARROS);
+        versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+        contagemCache.limpar(); // O status de carro e motorista entra no filtro das pesquisas
+        return movimentacao;
     }
 
+    /**
+     * Encerra a viagem agora com a quilometragem de retorno, que passa a ser o km
+     * atual do carro, libera carro e motorista e soma ao uso diario da frota na
+     * mesma transacao. Um km de retorno ausente ou menor que o de saida fica no
+     * BindingResult e nada eh gravado.
+     */
+    @CacheEvict(cacheNames = { "carros", "motoristas" }, allEntries = true)
+    public void finalizar(Movimentacao movimentacao, Long kmRetorno, BindingResult resultado) {
+        long kmSaida = movimentacao.getKmSaida() == null ? 0 : movimentacao.getKmSaida();
+        if (kmRetorno == null || kmRetorno < kmSaida) {
+            resultado.rejectValue("kmRetorno", "kmRetorno.menor.que.saida",
+                    "A quilometragem de retorno deve ser maior ou igual à de saída (" + kmSaida + ").");
+            return;
+        }
+        LocalDate dataRetorno = LocalDate.now();
+        LocalTime horaRetorno = LocalTime.now();
+        if (movimentacaoRepository.encerrar(movimentacao.getCodigo(), dataRetorno, horaRetorno, kmRetorno) == 0) {
+            throw new RecursoIndisponivelException("A movimentação já foi finalizada.");
+        }
+        movimentacao.setStatusMovimentacao(StatusMovimentacao.FINALIZADA);
+        movimentacao.setDataRetorno(dataRetorno);
+        movimentacao.setHoraRetorno(horaRetorno);
+        movimentacao.setKmRetorno(kmRetorno);
+        carroRepository.registrarKm(movimentacao.getCarro().getCodigo(), kmRetorno);
+        movimentacao.getCarro().setKmAtual(kmRetorno);
+        liberar(movimentacao);
+        usoFrotaService.registrarViagem(movimentacao);
+        eventos.publishEvent(EventoFrota.deMovimentacao(movimentacao));
+        versoesPesquisa.incrementar(VersoesPesquisa.MOVIMENTACOES);
+    }
+
+    @CacheEvict(cacheNames = { "carros", "motoristas" }, allEntries = true)
     public void remover(Long codigo) {
         Movimentacao movimentacao = movimentacaoRepository.findByCodigoAndStatusMovimentacao(codigo, StatusMovimentacao.ATIVA);
-        if (movimentacao == null) {
+        if (movimentacao == null || movimentacaoRepository.encerrar(codigo, null, null, null) == 0) {
             throw new RuntimeException("Remoção da movimentação com codigo inválido");
         } else {
             movimentacao.setStatusMovimentacao(StatusMovimentacao.FINALIZADA);
-            movimentacaoRepository.save(movimentacao);
+            liberar(movimentacao);
+            eventos.publishEvent(EventoFrota.deMovimentacao(movimentacao));
+            versoesPesquisa.incrementar(VersoesPesquisa.MOVIMENTACOES);
         }
     }
-    
-}
\ No newline at end of file
+
+    // Devolve carro e motorista ao status ATIVO. Depois dos UPDATEs as entidades da
+    // movimentacao estao desanexadas, entao o status novo so eh copiado para o evento.
+    private void liberar(Movimentacao movimentacao) {
+        Carro carro = movimentacao.getCarro();
+        Motorista motorista = movimentacao.getMotorista();
+        if (carroRepository.trocarStatus(carro.getCodigo(), StatusCarro.EM_USO, StatusCarro.ATIVO) > 0) {
+            carro.setStatusCarro(StatusCarro.ATIVO);
+            versoesPesquisa.incrementar(VersoesPesquisa.CARROS);
+        }
+        if (motoristaRepository.trocarStatus(motorista.getCodigo(), Status.EM_MOVIMENTACAO, Status.ATIVO) > 0) {
+            motorista.setStatus(Status.ATIVO);
+            versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+        }
+        contagemCache.limpar();
+    }
+
+}
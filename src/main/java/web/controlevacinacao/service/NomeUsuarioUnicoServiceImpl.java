@@ -7,6 +7,8 @@ import org.springframework.stereotype.Service;
 
 import web.controlevacinacao.model.Usuario;
 import web.controlevacinacao.repository.UsuarioRepository;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
 
 @Service
 public class NomeUsuarioUnicoServiceImpl implements NomeUsuarioUnicoService {
@@ -14,6 +16,9 @@ public class NomeUsuarioUnicoServiceImpl implements NomeUsuarioUnicoService {
 	@Autowired
 	private UsuarioRepository usuarioRepository;
 
+	@Autowired
+	private IndiceUnicidade indiceUnicidade;
+
 	@Override
 	public boolean isValueUnique(Object value, String fieldName) throws UnsupportedOperationException {
 		if (!fieldName.equals("nomeUsuario")) {
@@ -25,6 +30,11 @@ public class NomeUsuarioUnicoServiceImpl implements NomeUsuarioUnicoService {
 		if (novo.getNomeUsuario() == null || novo.getNomeUsuario().isBlank()) {
 			return true;
 		}
+
+		//Um nomeUsuario que com certeza ainda nao existe nao precisa ir ao banco
+		if (!indiceUnicidade.podeExistir(CampoUnico.NOME_USUARIO, novo.getNomeUsuario())) {
+			return true;
+		}
 		
 		//Busca um usuario com esse nomeUsuario
 		Usuario comEsseNomeUsuario = usuarioRepository.findByNomeUsuarioIgnoreCase(novo.getNomeUsuario());
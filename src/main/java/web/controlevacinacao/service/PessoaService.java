@@ -1,41 +1,68 @@
 package web.controlevacinacao.service;
 
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.validation.BindingResult;
 
 import web.controlevacinacao.model.Pessoa;
 import web.controlevacinacao.model.Status;
+import web.controlevacinacao.pagination.ContagemCache;
+import web.controlevacinacao.pagination.VersoesPesquisa;
 import web.controlevacinacao.repository.PessoaRepository;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
 
 @Service
 @Transactional
+// Motoristas tambem sao pessoas, entao as escritas daqui mudam a pesquisa de motoristas
+@CacheEvict(cacheNames = "motoristas", allEntries = true)
 public class PessoaService {
 
     private PessoaRepository pessoaRepository;
+    private VersoesPesquisa versoesPesquisa;
+    private IndiceUnicidade indiceUnicidade;
+    private ContagemCache contagemCache;
 
-    public PessoaService(PessoaRepository pessoaRepository) {
+    public PessoaService(PessoaRepository pessoaRepository, VersoesPesquisa versoesPesquisa,
+            IndiceUnicidade indiceUnicidade, ContagemCache contagemCache) {
         this.pessoaRepository = pessoaRepository;
+        this.versoesPesquisa = versoesPesquisa;
+        this.indiceUnicidade = indiceUnicidade;
+        this.contagemCache = contagemCache;
     }
 
     public void salvar(Pessoa pessoa, BindingResult result) {
 
-        // Verificação de CPF duplicado (novo cadastro)
-        Pessoa pessoaExistente = pessoaRepository.findByCpf(pessoa.getCpf());
-        if (pessoaExistente != null && !pessoaExistente.getCodigo().equals(pessoa.getCodigo())) {
+        // Verificação de CPF duplicado na mesma consulta usada pelo MotoristaService (sem CNH);
+        // CPF que com certeza é novo não vai ao banco
+        if (indiceUnicidade.podeExistir(CampoUnico.CPF, pessoa.getCpf())
+                && !pessoaRepository.buscarDuplicados(pessoa.getCpf(), null, pessoa.getCodigo()).isEmpty()) {
             // Se o CPF já existe E não é a mesma pessoa sendo alterada, adicione um erro
-            result.rejectValue("cpf", "cpf.duplicado", "CPF já cadastrado no sistema.");
-            
+            result.rejectValue("cpf", CampoUnico.CPF.getCodigoErro(), CampoUnico.CPF.getMensagem());
         }
 
           // Somente salva se não houver erros no BindingResult (incluindo os adicionados acima)
         if (!result.hasErrors()) {
-            pessoaRepository.save(pessoa);
+            try {
+                pessoaRepository.saveAndFlush(pessoa);
+            } catch (DataIntegrityViolationException e) {
+                // A restrição única do banco é quem decide no caso de cadastros simultâneos
+                if (indiceUnicidade.rejeitarDuplicado(e, result)) {
+                    return;
+                }
+                throw e;
+            }
+            versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+            contagemCache.limpar();
         }
     }
 
     public void alterar(Pessoa pessoa) {
         pessoaRepository.save(pessoa);
+        versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+        contagemCache.limpar();
     }
 
     public void remover(Long codigo) {
@@ -45,6 +72,8 @@ public class PessoaService {
         } else {
             pessoa.setStatus(Status.INATIVO);
             pessoaRepository.save(pessoa);
+            versoesPesquisa.incrementar(VersoesPesquisa.MOTORISTAS);
+            contagemCache.limpar();
         }
     }
 
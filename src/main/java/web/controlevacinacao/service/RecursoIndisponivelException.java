@@ -0,0 +1,15 @@
+package web.controlevacinacao.service;
+
+/**
+ * Carro, motorista ou movimentacao que nao esta mais no status esperado,
+ * normalmente porque outra pessoa o usou primeiro. Desfaz a transacao.
+ */
+public class RecursoIndisponivelException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RecursoIndisponivelException(String mensagem) {
+        super(mensagem);
+    }
+
+}
@@ -0,0 +1,155 @@
+package web.controlevacinacao.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import web.controlevacinacao.relatorio.TipoRelatorio;
+import web.controlevacinacao.relatorio.TrabalhoRelatorio;
+
+/**
+ * Gera os relatorios fora da thread da requisicao.
+ *
+ * A tela solicita o relatorio, recebe o id do trabalho e acompanha o status por
+ * polling. O PDF pronto fica em disco (relatorio.cache.diretorio) com o nome
+ * derivado do relatorio e dos parametros, e eh reaproveitado enquanto estiver
+ * dentro de relatorio.cache.validade. Solicitacoes identicas feitas enquanto o
+ * relatorio ainda esta sendo gerado recebem o mesmo trabalho, entao o Jasper
+ * preenche o relatorio uma unica vez.
+ */
+@Service
+public class RelatorioAssincronoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatorioAssincronoService.class);
+
+    private final RelatorioService relatorioService;
+    private final ThreadPoolTaskExecutor executor;
+    private final Path diretorio;
+    private final Duration validade;
+    // Trabalhos por id, consultados pelo polling da tela
+    private final Cache<String, TrabalhoRelatorio> trabalhos;
+    // Trabalhos ainda nao finalizados por chave (relatorio + parametros)
+    private final ConcurrentMap<String, TrabalhoRelatorio> emAndamento = new ConcurrentHashMap<>();
+
+    public RelatorioAssincronoService(RelatorioService relatorioService,
+            @Qualifier("relatorioExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${relatorio.cache.diretorio:${java.io.tmpdir}/controle-relatorios}") Path diretorio,
+            @Value("${relatorio.cache.validade:PT10M}") Duration validade) throws IOException {
+        this.relatorioService = relatorioService;
+        this.executor = executor;
+        this.diretorio = Files.createDirectories(diretorio);
+        this.validade = validade;
+        this.trabalhos = Caffeine.newBuilder()
+                .expireAfterWrite(validade.plusMinutes(5))
+                .maximumSize(1000)
+                .build();
+    }
+
+    public TrabalhoRelatorio solicitar(TipoRelatorio tipo, Map<String, Object> parametros) {
+        String chave = chave(tipo, parametros);
+        Path arquivo = diretorio.resolve(chave + ".pdf");
+
+        if (valido(arquivo)) {
+            TrabalhoRelatorio pronto = new TrabalhoRelatorio(tipo, chave);
+            pronto.concluiu(arquivo);
+            trabalhos.put(pronto.getId(), pronto);
+            logger.debug("Relatório {} reaproveitado do cache: {}", tipo, arquivo);
+            return pronto;
+        }
+
+        TrabalhoRelatorio novo = new TrabalhoRelatorio(tipo, chave);
+        TrabalhoRelatorio existente = emAndamento.putIfAbsent(chave, novo);
+        if (existente != null) {
+            logger.debug("Relatório {} já está sendo gerado no trabalho {}", tipo, existente.getId());
+            return existente;
+        }
+        trabalhos.put(novo.getId(), novo);
+        try {
+            executor.execute(() -> gerar(novo, parametros, arquivo));
+        } catch (TaskRejectedException e) {
+            logger.warn("Fila de relatórios cheia, {} recusado", tipo);
+            novo.falhou("Muitos relatórios sendo gerados no momento. Tente novamente em instantes.");
+            emAndamento.remove(chave, novo);
+        }
+        return novo;
+    }
+
+    public TrabalhoRelatorio consultar(String id) {
+        return trabalhos.getIfPresent(id);
+    }
+
+    private void gerar(TrabalhoRelatorio trabalho, Map<String, Object> parametros, Path arquivo) {
+        trabalho.iniciou();
+        Path temporario = null;
+        try {
+            // Escreve em um arquivo temporario e so depois publica, para que ninguem leia um PDF pela metade
+            temporario = Files.createTempFile(diretorio, trabalho.getChave(), ".tmp");
+            try (OutputStream saida = Files.newOutputStream(temporario)) {
+                relatorioService.gerarPdf(trabalho.getTipo(), parametros, saida);
+            }
+            Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            trabalho.concluiu(arquivo);
+            logger.debug("Relatório gerado: {}", trabalho);
+        } catch (Exception e) {
+            logger.error("Problemas na geração do relatório {}: {}", trabalho, e.toString());
+            trabalho.falhou("Não foi possível gerar o relatório.");
+            apagar(temporario);
+        } finally {
+            emAndamento.remove(trabalho.getChave(), trabalho);
+        }
+    }
+
+    private boolean valido(Path arquivo) {
+        try {
+            return Files.exists(arquivo)
+                    && Files.getLastModifiedTime(arquivo).toInstant().plus(validade).isAfter(Instant.now());
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void apagar(Path arquivo) {
+        if (arquivo == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(arquivo);
+        } catch (IOException e) {
+            logger.warn("Não foi possível apagar o arquivo temporário {}", arquivo);
+        }
+    }
+
+    private static String chave(TipoRelatorio tipo, Map<String, Object> parametros) {
+        String texto = tipo.name() + new TreeMap<>(parametros);
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return tipo.getIdentificador() + "-" + HexFormat.of().formatHex(hash, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
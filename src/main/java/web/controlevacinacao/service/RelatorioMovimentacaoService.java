@@ -0,0 +1,96 @@
+package web.controlevacinacao.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import web.controlevacinacao.filter.RelatorioMovimentacaoFilter;
+import web.controlevacinacao.relatorio.AgrupamentoMovimentacao;
+import web.controlevacinacao.relatorio.EscritorCsv;
+import web.controlevacinacao.repository.MovimentacaoRepository;
+import web.controlevacinacao.repository.UsoFrotaRepository;
+
+/**
+ * Relatorios de uso da frota em CSV. Cada relatorio eh uma unica consulta
+ * percorrida em streaming e escrita na saida a medida que as linhas chegam, com
+ * a linha de total acumulada no caminho.
+ *
+ * O historico le as movimentacoes uma a uma; os totais por carro, motorista e
+ * dia vem da tabela consolidada uso_frota_diario, entao periodos longos nao
+ * percorrem a tabela de movimentacoes. Os totais contam as viagens concluidas
+ * (Movimentacao.isViagemConcluida).
+ */
+@Service
+public class RelatorioMovimentacaoService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatorioMovimentacaoService.class);
+
+    private MovimentacaoRepository movimentacaoRepository;
+    private UsoFrotaRepository usoFrotaRepository;
+
+    public RelatorioMovimentacaoService(MovimentacaoRepository movimentacaoRepository,
+            UsoFrotaRepository usoFrotaRepository) {
+        this.movimentacaoRepository = movimentacaoRepository;
+        this.usoFrotaRepository = usoFrotaRepository;
+    }
+
+    public void exportarCsv(RelatorioMovimentacaoFilter filtro, AgrupamentoMovimentacao agrupamento,
+            OutputStream saida) throws IOException {
+        logger.debug("Relatório de movimentações {} para {}", agrupamento, filtro);
+        EscritorCsv csv = new EscritorCsv(saida);
+        try {
+            if (agrupamento == AgrupamentoMovimentacao.HISTORICO) {
+                exportarHistorico(filtro, csv);
+            } else {
+                exportarTotais(filtro, agrupamento, csv);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        csv.terminar();
+    }
+
+    private void exportarHistorico(RelatorioMovimentacaoFilter filtro, EscritorCsv csv) {
+        csv.linha("Código", "Placa", "Motorista", "Data de saída", "Hora de saída", "Data de retorno",
+                "Hora de retorno", "Km de saída", "Km de retorno", "Km percorridos", "Status");
+        long[] totais = new long[2];
+        movimentacaoRepository.percorrerHistorico(filtro, m -> {
+            csv.linha(m.getCodigo(), m.getPlacaCarro(), m.getNomeMotorista(), m.getDataSaida(), m.getHoraSaida(),
+                    m.getDataRetorno(), m.getHoraRetorno(), m.getKmSaida(), m.getKmRetorno(), m.getKmPercorridos(),
+                    m.getStatusMovimentacao().getDescricao());
+            totais[0]++;
+            totais[1] += m.getKmPercorridos() == null ? 0 : m.getKmPercorridos();
+        });
+        csv.linha("Total: " + totais[0] + " movimentações", null, null, null, null, null, null, null, null,
+                totais[1], null);
+    }
+
+    private void exportarTotais(RelatorioMovimentacaoFilter filtro, AgrupamentoMovimentacao agrupamento,
+            EscritorCsv csv) {
+        switch (agrupamento) {
+            case CARRO -> csv.linha("Placa", "Modelo", "Viagens concluídas", "Km percorridos");
+            case MOTORISTA -> csv.linha("Motorista", "CNH", "Viagens concluídas", "Km percorridos");
+            default -> csv.linha("Data de saída", "Viagens concluídas", "Km percorridos");
+        }
+        long[] totais = new long[2];
+        usoFrotaRepository.percorrerTotais(filtro, agrupamento, t -> {
+            if (agrupamento == AgrupamentoMovimentacao.DIA) {
+                csv.linha(t.getDia(), t.getQuantidade(), t.getKmPercorridos());
+            } else {
+                csv.linha(t.getGrupo(), t.getDetalhe(), t.getQuantidade(), t.getKmPercorridos());
+            }
+            totais[0] += t.getQuantidade();
+            totais[1] += t.getKmPercorridos();
+        });
+        if (agrupamento == AgrupamentoMovimentacao.DIA) {
+            csv.linha("Total", totais[0], totais[1]);
+        } else {
+            csv.linha("Total", null, totais[0], totais[1]);
+        }
+    }
+
+}
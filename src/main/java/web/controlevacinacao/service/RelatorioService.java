@@ -1,7 +1,7 @@
 package web.controlevacinacao.service;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.HashMap;
@@ -11,13 +11,17 @@ import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.core.io.ClassPathResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import net.sf.jasperreports.engine.JRException;
+import net.sf.jasperreports.engine.JRParameter;
 import net.sf.jasperreports.engine.JasperExportManager;
-import net.sf.jasperreports.engine.JasperFillManager;
 import net.sf.jasperreports.engine.JasperPrint;
+import net.sf.jasperreports.engine.fill.JRSwapFileVirtualizer;
+import net.sf.jasperreports.engine.util.JRSwapFile;
+import web.controlevacinacao.relatorio.TemplatesRelatorio;
+import web.controlevacinacao.relatorio.TipoRelatorio;
 
 @Service
 public class RelatorioService {
@@ -25,50 +29,51 @@ public class RelatorioService {
     private static final Logger logger = LoggerFactory.getLogger(RelatorioService.class);
 
     private DataSource dataSource;
+    private TemplatesRelatorio templates;
+    private int paginasEmMemoria;
+    private String diretorioSwap;
 
-    public RelatorioService(DataSource dataSource) {
+    public RelatorioService(DataSource dataSource, TemplatesRelatorio templates,
+            @Value("${relatorio.virtualizador.paginas:50}") int paginasEmMemoria,
+            @Value("${relatorio.virtualizador.diretorio:${java.io.tmpdir}}") String diretorioSwap) {
         this.dataSource = dataSource;
+        this.templates = templates;
+        this.paginasEmMemoria = paginasEmMemoria;
+        this.diretorioSwap = diretorioSwap;
     }
 
-    public byte[] gerarRelatorioSimplesTodasVacinas() {
-        InputStream arquivoJasper = getClass().getResourceAsStream("/relatorios/RelatorioSQLDiretoSimples.jasper");
-        try (Connection conexao = dataSource.getConnection()) {
-            try {
-                JasperPrint jasperPrint = JasperFillManager.fillReport(arquivoJasper, null, conexao);
-                return JasperExportManager.exportReportToPdf(jasperPrint);
-            } catch (JRException e) {
-                logger.error("Problemas na geracao do PDF do relatório: " + e);
-            }
-        } catch (SQLException e) {
-            logger.error("Problemas na obtenção de uma conexão com o BD na geração de relatório: " + e);
+    /**
+     * Preenche o relatorio e escreve o PDF diretamente em saida, sem montar o
+     * arquivo inteiro em memoria. A conexao com o BD fica aberta apenas durante o
+     * preenchimento.
+     *
+     * O preenchimento usa um JRSwapFileVirtualizer: so as ultimas
+     * relatorio.virtualizador.paginas paginas ficam no heap e as demais vao para
+     * um arquivo de troca, que eh apagado ao final.
+     */
+    public void gerarPdf(TipoRelatorio tipo, Map<String, Object> parametros, OutputStream saida)
+            throws JRException, SQLException, IOException {
+        Map<String, Object> parametrosRelatorio = new HashMap<>(parametros);
+        // Os subrelatorios sao resolvidos pelo nome nos templates ja carregados
+        parametrosRelatorio.put("SUBREPORT_DIR", "");
+        if (tipo == TipoRelatorio.VACINAS_LOTES) {
+            parametrosRelatorio.putIfAbsent("TITULO", "Vacinas com Lotes");
         }
 
-        return null;
-    }
-
-    public byte[] gerarRelatorioComplexoTodasVacinasLotes() {
-        try (Connection conexao = dataSource.getConnection()) {
-            try {
-                ClassPathResource cpr = new ClassPathResource("relatorios/RelatorioSQLDiretoComplexoParametros.jasper");
-                InputStream arquivoJasper = cpr.getInputStream();
-
-                String urlRelatorio = cpr.getURL().toString();
-                String diretorioRelatorios = urlRelatorio.substring(0, urlRelatorio.lastIndexOf("/") + 1);
-                logger.debug("diretorioRelatorios: {}", diretorioRelatorios);
-
-                Map<String, Object> parametros = new HashMap<>();
-                parametros.put("SUBREPORT_DIR", diretorioRelatorios);
-                parametros.put("TITULO", "Vacinas com Lotes");
-                JasperPrint jasperPrint = JasperFillManager.fillReport(arquivoJasper, parametros, conexao);
-                return JasperExportManager.exportReportToPdf(jasperPrint);
-            } catch (JRException e) {
-                logger.error("Problemas no Jasper na geracao do PDF do relatório: " + e);
-            } catch (IOException e) {
-                logger.error("Problemas nos arquivos de relatórios na geracao do PDF do relatório: " + e);
+        JRSwapFileVirtualizer virtualizador = new JRSwapFileVirtualizer(paginasEmMemoria,
+                new JRSwapFile(diretorioSwap, 4096, 100), true);
+        parametrosRelatorio.put(JRParameter.REPORT_VIRTUALIZER, virtualizador);
+        try {
+            JasperPrint jasperPrint;
+            try (Connection conexao = dataSource.getConnection()) {
+                jasperPrint = templates.preencher(tipo.getTemplate(), parametrosRelatorio, conexao);
             }
-        } catch (SQLException e) {
-            logger.error("Problemas na obtenção de uma conexão com o BD na geração de relatório: " + e);
+            // Nenhuma pagina sera alterada daqui em diante; a exportacao so le as paginas da troca
+            virtualizador.setReadOnly(true);
+            logger.debug("Relatório {} preenchido com {} páginas", tipo, jasperPrint.getPages().size());
+            JasperExportManager.exportReportToPdfStream(jasperPrint, saida);
+        } finally {
+            virtualizador.cleanup();
         }
-        return null;
     }
 }
@@ -0,0 +1,120 @@
+package web.controlevacinacao.service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.projection.UsoFrotaCarroDia;
+import web.controlevacinacao.projection.UsoFrotaDia;
+import web.controlevacinacao.projection.UsoFrotaMotorista;
+import web.controlevacinacao.repository.UsoFrotaRepository;
+
+/**
+ * Mantem e consulta o uso diario da frota (tabela uso_frota_diario).
+ *
+ * Os paineis leem no maximo uma linha por dia (ou por dia e carro) do periodo,
+ * em vez de percorrer todo o historico de movimentacoes.
+ */
+@Service
+public class UsoFrotaService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UsoFrotaService.class);
+
+    private UsoFrotaRepository usoFrotaRepository;
+    private TransactionTemplate transactionTemplate;
+    private TaskExecutor executor;
+
+    public UsoFrotaService(UsoFrotaRepository usoFrotaRepository, TransactionTemplate transactionTemplate,
+            @Qualifier("relatorioExecutor") TaskExecutor executor) {
+        this.usoFrotaRepository = usoFrotaRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+    }
+
+    /**
+     * Soma a movimentacao recem finalizada ao dia da saida. Roda na mesma
+     * transacao da finalizacao: se ela for desfeita, o consolidado tambem eh.
+     */
+    @Transactional
+    public void registrarViagem(Movimentacao movimentacao) {
+        ajustar(movimentacao, 1);
+    }
+
+    /**
+     * Retira do consolidado uma movimentacao finalizada, com os valores que ela
+     * tem agora. Na alteracao de uma movimentacao finalizada eh chamado antes de
+     * gravar, e o registrarViagem depois, para o consolidado receber a diferenca
+     * (inclusive quando a data de saida muda de dia).
+     */
+    @Transactional
+    public void removerViagem(Movimentacao movimentacao) {
+        ajustar(movimentacao, -1);
+    }
+
+    private void ajustar(Movimentacao movimentacao, int sinal) {
+        long km = movimentacao.getKmRetorno() == null || movimentacao.getKmSaida() == null ? 0
+                : Math.max(0, movimentacao.getKmRetorno() - movimentacao.getKmSaida());
+        usoFrotaRepository.ajustar(movimentacao.getDataSaida(), movimentacao.getCarro().getCodigo(),
+                movimentacao.getMotorista().getCodigo(), sinal, sinal * km, sinal * minutosUso(movimentacao));
+    }
+
+    /**
+     * Recalcula o consolidado do intervalo em segundo plano, um mes por
+     * transacao para nao manter a tabela bloqueada durante todo o historico.
+     * Sem inicio, comeca na primeira movimentacao; sem fim, vai ate hoje.
+     */
+    public void reconstruirEmSegundoPlano(LocalDate inicio, LocalDate fim) {
+        executor.execute(() -> {
+            LocalDate primeiroDia = inicio != null ? inicio : usoFrotaRepository.primeiraSaida();
+            LocalDate ultimoDia = fim != null ? fim : LocalDate.now();
+            if (primeiroDia == null) {
+                logger.info("Nenhuma movimentação para consolidar");
+                return;
+            }
+            int linhas = 0;
+            for (LocalDate mes = primeiroDia; !mes.isAfter(ultimoDia); mes = mes.withDayOfMonth(1).plusMonths(1)) {
+                LocalDate inicioMes = mes;
+                LocalDate fimMes = mes.withDayOfMonth(mes.lengthOfMonth()).isAfter(ultimoDia) ? ultimoDia
+                        : mes.withDayOfMonth(mes.lengthOfMonth());
+                linhas += transactionTemplate.execute(status -> usoFrotaRepository.reconstruir(inicioMes, fimMes));
+            }
+            logger.info("Uso da frota consolidado de {} a {}: {} linhas", primeiroDia, ultimoDia, linhas);
+        });
+    }
+
+    @Transactional(readOnly = true)
+    public List<UsoFrotaCarroDia> usoPorCarro(LocalDate inicio, LocalDate fim) {
+        return usoFrotaRepository.usoPorCarro(inicio, fim);
+    }
+
+    @Transactional(readOnly = true)
+    public List<UsoFrotaMotorista> usoPorMotorista(LocalDate inicio, LocalDate fim) {
+        return usoFrotaRepository.usoPorMotorista(inicio, fim);
+    }
+
+    @Transactional(readOnly = true)
+    public List<UsoFrotaDia> usoPorDia(LocalDate inicio, LocalDate fim) {
+        return usoFrotaRepository.usoPorDia(inicio, fim);
+    }
+
+    private static long minutosUso(Movimentacao movimentacao) {
+        if (movimentacao.getDataSaida() == null || movimentacao.getHoraSaida() == null
+                || movimentacao.getDataRetorno() == null || movimentacao.getHoraRetorno() == null) {
+            return 0;
+        }
+        Duration duracao = Duration.between(LocalDateTime.of(movimentacao.getDataSaida(), movimentacao.getHoraSaida()),
+                LocalDateTime.of(movimentacao.getDataRetorno(), movimentacao.getHoraRetorno()));
+        return Math.max(0, duracao.toMinutes());
+    }
+
+}
@@ -1,5 +1,6 @@
 package web.controlevacinacao.service;
 
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -9,6 +10,7 @@ import web.controlevacinacao.repository.VacinaRepository;
 
 @Service
 @Transactional
+@CacheEvict(cacheNames = "vacinas", allEntries = true)
 public class VacinaService {
 
     private VacinaRepository vacinaRepository;
@@ -0,0 +1,67 @@
+package web.controlevacinacao.unicidade;
+
+import java.util.Locale;
+
+/**
+ * Campos que nao podem se repetir no banco, com o que o IndiceUnicidade precisa
+ * para carregar as chaves existentes e para devolver a violacao ao formulario.
+ */
+public enum CampoUnico {
+
+    PLACA("placa", "carro", "placa", "placa.ja.existe", "Já existe um carro cadastrado com esta placa."),
+    CNH("cnh", "pessoa", "cnh", "cnh.duplicada", "CNH já cadastrada no sistema."),
+    CPF("cpf", "pessoa", "cpf", "cpf.duplicado", "CPF já cadastrado no sistema."),
+    NOME_USUARIO("nomeUsuario", "usuario", "nome_usuario", "nomeUsuario.duplicado",
+            "Já existe um nome de usuário igual a este cadastrado");
+
+    private final String atributo;
+    private final String tabela;
+    private final String coluna;
+    private final String codigoErro;
+    private final String mensagem;
+
+    CampoUnico(String atributo, String tabela, String coluna, String codigoErro, String mensagem) {
+        this.atributo = atributo;
+        this.tabela = tabela;
+        this.coluna = coluna;
+        this.codigoErro = codigoErro;
+        this.mensagem = mensagem;
+    }
+
+    public String getAtributo() {
+        return atributo;
+    }
+
+    public String getCodigoErro() {
+        return codigoErro;
+    }
+
+    public String getMensagem() {
+        return mensagem;
+    }
+
+    String consultaValores() {
+        return "select " + coluna + " from " + tabela + " where " + coluna + " is not null";
+    }
+
+    String consultaTotal() {
+        return "select count(" + coluna + ") from " + tabela;
+    }
+
+    // Mesma comparacao de normalizar, feita pelo banco
+    String consultaExistentes() {
+        String expressao = this == NOME_USUARIO ? "lower(" + coluna + ")" : coluna;
+        return "select " + expressao + " from " + tabela + " where " + expressao + " in (:valores)";
+    }
+
+    // Os nomes das restricoes no banco levam a coluna (carro_placa_key, pessoa_cpf_unq...)
+    boolean violadoPor(String restricao) {
+        return restricao.toLowerCase(Locale.ROOT).contains(coluna);
+    }
+
+    // Mesma regra de comparacao das consultas: o nome de usuario ignora maiusculas
+    String normalizar(String valor) {
+        return this == NOME_USUARIO ? valor.toLowerCase(Locale.ROOT) : valor;
+    }
+
+}
@@ -0,0 +1,181 @@
+package web.controlevacinacao.unicidade;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.validation.BindingResult;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+
+/**
+ * Indice em memoria dos valores ja usados em cada CampoUnico (placa, CNH, CPF e
+ * nome de usuario), para que a verificacao de duplicidade so consulte o banco
+ * quando o valor talvez exista.
+ *
+ * Cada campo tem um filtro de Bloom reconstruido a partir do banco na
+ * inicializacao e periodicamente (unicidade.reconstrucao.intervalo); entre uma
+ * reconstrucao e outra o OuvinteUnicidade adiciona os valores gravados por esta
+ * instancia. Valores alterados ou gravados por outra instancia podem ficar de
+ * fora ate a proxima reconstrucao, por isso a restricao unica do banco continua
+ * sendo a palavra final e rejeitarDuplicado devolve a violacao ao formulario.
+ */
+@Component
+public class IndiceUnicidade {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndiceUnicidade.class);
+
+    @PersistenceContext
+    private EntityManager manager;
+
+    private final long capacidadeMinima;
+    private final double taxaFalsosPositivos;
+    private final MeterRegistry registry;
+    private final Map<CampoUnico, FiltroBloom> filtros = new EnumMap<>(CampoUnico.class);
+    // Filtros em reconstrucao, que tambem recebem os valores gravados enquanto o banco eh lido
+    private final Map<CampoUnico, FiltroBloom> emConstrucao = new EnumMap<>(CampoUnico.class);
+
+    public IndiceUnicidade(@Value("${unicidade.bloom.capacidade:100000}") long capacidadeMinima,
+            @Value("${unicidade.bloom.falsos-positivos:0.01}") double taxaFalsosPositivos,
+            MeterRegistry registry) {
+        this.capacidadeMinima = capacidadeMinima;
+        this.taxaFalsosPositivos = taxaFalsosPositivos;
+        this.registry = registry;
+    }
+
+    /**
+     * @return false quando o valor com certeza nao esta no banco (a consulta pode
+     *         ser pulada); true quando talvez esteja ou o indice ainda nao foi
+     *         carregado.
+     */
+    public boolean podeExistir(CampoUnico campo, String valor) {
+        if (valor == null) {
+            return false;
+        }
+        FiltroBloom filtro;
+        synchronized (filtros) {
+            filtro = filtros.get(campo);
+        }
+        boolean talvez = filtro == null || filtro.podeConter(campo.normalizar(valor));
+        registry.counter("unicidade.verificacoes", "campo", campo.name(), "resultado", talvez ? "banco" : "evitada")
+                .increment();
+        return talvez;
+    }
+
+    /**
+     * Quais dos valores ja estao no banco, com uma unica consulta para todos os
+     * que o filtro nao descarta. Serve a importacao em lote, em que consultar
+     * valor a valor custaria uma ida ao banco por linha.
+     *
+     * @return os valores recebidos que ja estao gravados
+     */
+    public Set<String> existentes(CampoUnico campo, Collection<String> valores) {
+        Map<String, String> talvez = new HashMap<>();
+        for (String valor : valores) {
+            if (podeExistir(campo, valor)) {
+                talvez.put(campo.normalizar(valor), valor);
+            }
+        }
+        if (talvez.isEmpty()) {
+            return Set.of();
+        }
+        Set<String> encontrados = new HashSet<>();
+        for (Object valor : manager.createNativeQuery(campo.consultaExistentes())
+                .setParameter("valores", talvez.keySet())
+                .getResultList()) {
+            encontrados.add(talvez.get((String) valor));
+        }
+        return encontrados;
+    }
+
+    public void registrar(CampoUnico campo, String valor) {
+        if (valor == null) {
+            return;
+        }
+        String normalizado = campo.normalizar(valor);
+        synchronized (filtros) {
+            FiltroBloom filtro = filtros.get(campo);
+            if (filtro != null) {
+                filtro.adicionar(normalizado);
+            }
+            FiltroBloom novo = emConstrucao.get(campo);
+            if (novo != null) {
+                novo.adicionar(normalizado);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${unicidade.reconstrucao.intervalo:PT10M}")
+    @Transactional(readOnly = true)
+    public void reconstruir() {
+        for (CampoUnico campo : CampoUnico.values()) {
+            long total = ((Number) manager.createNativeQuery(campo.consultaTotal()).getSingleResult()).longValue();
+            FiltroBloom novo = new FiltroBloom(Math.max(capacidadeMinima, total * 2), taxaFalsosPositivos);
+            synchronized (filtros) {
+                emConstrucao.put(campo, novo);
+            }
+            try (Stream<?> valores = manager.createNativeQuery(campo.consultaValores()).getResultStream()) {
+                valores.forEach(valor -> novo.adicionar(campo.normalizar((String) valor)));
+            } finally {
+                synchronized (filtros) {
+                    emConstrucao.remove(campo);
+                }
+            }
+            synchronized (filtros) {
+                filtros.put(campo, novo);
+            }
+            logger.debug("Índice de unicidade de {} reconstruído com {} valores", campo, total);
+        }
+    }
+
+    /**
+     * Traduz a violacao de uma restricao unica do banco para o erro do campo no
+     * formulario e marca a transacao atual para rollback, sem deixar a excecao
+     * chegar ao controller.
+     *
+     * @return false se a violacao nao for de um CampoUnico; nesse caso quem
+     *         chamou deve relancar a excecao.
+     */
+    public boolean rejeitarDuplicado(DataIntegrityViolationException e, BindingResult resultado) {
+        String restricao = restricaoViolada(e);
+        if (restricao == null) {
+            return false;
+        }
+        for (CampoUnico campo : CampoUnico.values()) {
+            if (campo.violadoPor(restricao)) {
+                resultado.rejectValue(campo.getAtributo(), campo.getCodigoErro(), campo.getMensagem());
+                if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                    TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String restricaoViolada(Throwable e) {
+        for (Throwable causa = e; causa != null; causa = causa.getCause()) {
+            if (causa instanceof ConstraintViolationException violacao) {
+                return violacao.getConstraintName();
+            }
+        }
+        return null;
+    }
+
+}
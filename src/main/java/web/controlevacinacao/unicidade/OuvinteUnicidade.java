@@ -0,0 +1,46 @@
+package web.controlevacinacao.unicidade;
+
+import org.springframework.beans.factory.ObjectProvider;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostUpdate;
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.model.Pessoa;
+import web.controlevacinacao.model.Usuario;
+
+/**
+ * Listener JPA de Carro, Pessoa (e Motorista) e Usuario que mantem o
+ * IndiceUnicidade em dia com os valores gravados por esta instancia. Se a
+ * transacao for desfeita o valor fica no indice, o que so custa uma consulta a
+ * mais ao banco.
+ */
+public class OuvinteUnicidade {
+
+    // Lazy: o listener eh criado junto com o EntityManagerFactory, de que o indice depende
+    private final ObjectProvider<IndiceUnicidade> indice;
+
+    public OuvinteUnicidade(ObjectProvider<IndiceUnicidade> indice) {
+        this.indice = indice;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void gravou(Object entidade) {
+        IndiceUnicidade indiceUnicidade = indice.getIfAvailable();
+        if (indiceUnicidade == null) {
+            return;
+        }
+        if (entidade instanceof Carro carro) {
+            indiceUnicidade.registrar(CampoUnico.PLACA, carro.getPlaca());
+        } else if (entidade instanceof Pessoa pessoa) {
+            indiceUnicidade.registrar(CampoUnico.CPF, pessoa.getCpf());
+            if (pessoa instanceof Motorista motorista) {
+                indiceUnicidade.registrar(CampoUnico.CNH, motorista.getCnh());
+            }
+        } else if (entidade instanceof Usuario usuario) {
+            indiceUnicidade.registrar(CampoUnico.NOME_USUARIO, usuario.getNomeUsuario());
+        }
+    }
+
+}
@@ -0,0 +1,26 @@
+-- Indices trigram (pg_trgm) para as pesquisas por trecho de texto (like '%x%'),
+-- que nao conseguem usar indices B-tree. Cada indice usa exatamente a mesma
+-- expressao do predicado gerado nos QueriesImpl, por exemplo lower(c.placa) like :placa.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- A tabela carro era criada apenas pelo Hibernate (ddl-auto), que roda depois do Flyway.
+-- Em um banco novo ela eh criada aqui com a mesma estrutura gerada pelo Hibernate.
+CREATE TABLE IF NOT EXISTS public.carro
+(
+    codigo bigint GENERATED BY DEFAULT AS IDENTITY,
+    placa varchar(8) NOT NULL UNIQUE,
+    modelo varchar(50) NOT NULL,
+    cor varchar(30) NOT NULL,
+    km_atual bigint NOT NULL,
+    status_carro varchar(20) NOT NULL,
+    PRIMARY KEY (codigo)
+);
+
+CREATE INDEX IF NOT EXISTS carro_placa_trgm_idx ON public.carro USING gin (lower(placa) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS carro_modelo_trgm_idx ON public.carro USING gin (lower(modelo) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS carro_cor_trgm_idx ON public.carro USING gin (lower(cor) gin_trgm_ops);
+
+-- Pessoa e Motorista ficam na mesma tabela (coluna tipo_entidade)
+CREATE INDEX IF NOT EXISTS pessoa_nome_trgm_idx ON public.pessoa USING gin (lower(nome) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS pessoa_cpf_trgm_idx ON public.pessoa USING gin (cpf gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS pessoa_cnh_trgm_idx ON public.pessoa USING gin (cnh gin_trgm_ops);
@@ -0,0 +1,26 @@
+-- Indices usados pelos relatorios de movimentacao (periodo por data de saida,
+-- opcionalmente restrito a um carro ou a um motorista).
+
+-- A tabela movimentacao era criada apenas pelo Hibernate (ddl-auto), que roda depois do Flyway.
+-- Em um banco novo ela eh criada aqui com a mesma estrutura gerada pelo Hibernate;
+-- as chaves estrangeiras continuam sendo adicionadas pelo Hibernate.
+CREATE SEQUENCE IF NOT EXISTS public.movimentacao_codigo_seq START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS public.movimentacao
+(
+    codigo bigint NOT NULL,
+    codigo_carro bigint NOT NULL,
+    codigo_motorista bigint NOT NULL,
+    data_saida date,
+    hora_saida time,
+    data_retorno date,
+    hora_retorno time,
+    km_saida bigint NOT NULL,
+    km_retorno bigint,
+    status varchar(255),
+    PRIMARY KEY (codigo)
+);
+
+CREATE INDEX IF NOT EXISTS movimentacao_data_saida_idx ON public.movimentacao (data_saida);
+CREATE INDEX IF NOT EXISTS movimentacao_carro_data_saida_idx ON public.movimentacao (codigo_carro, data_saida);
+CREATE INDEX IF NOT EXISTS movimentacao_motorista_data_saida_idx ON public.movimentacao (codigo_motorista, data_saida);
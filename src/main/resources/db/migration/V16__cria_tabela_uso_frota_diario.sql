@@ -0,0 +1,17 @@
+-- Uso da frota consolidado por dia, carro e motorista. Cada movimentacao finalizada
+-- soma uma viagem, os km percorridos e os minutos de uso no dia da saida.
+-- Mantida pela aplicacao ao finalizar uma movimentacao (UsoFrotaService) e
+-- reconstruida a partir de movimentacao pelo backfill.
+CREATE TABLE IF NOT EXISTS public.uso_frota_diario
+(
+    dia date NOT NULL,
+    codigo_carro bigint NOT NULL,
+    codigo_motorista bigint NOT NULL,
+    viagens bigint NOT NULL DEFAULT 0,
+    km_percorridos bigint NOT NULL DEFAULT 0,
+    minutos_uso bigint NOT NULL DEFAULT 0,
+    PRIMARY KEY (dia, codigo_carro, codigo_motorista)
+);
+
+-- Consultas por motorista em um periodo (a chave primaria ja atende dia e dia + carro)
+CREATE INDEX IF NOT EXISTS uso_frota_diario_motorista_dia_idx ON public.uso_frota_diario (codigo_motorista, dia);
@@ -0,0 +1,4 @@
+-- Coluna de versao do controle de concorrencia otimista (@Version) de carro e
+-- pessoa (motoristas inclusive). As linhas existentes comecam na versao 0.
+ALTER TABLE public.carro ADD COLUMN IF NOT EXISTS versao bigint NOT NULL DEFAULT 0;
+ALTER TABLE public.pessoa ADD COLUMN IF NOT EXISTS versao bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,8 @@
+-- Restricoes unicas que faltavam no banco. A aplicacao ja verificava CPF e nome
+-- de usuario antes de gravar, mas agora pula a consulta quando o indice em
+-- memoria garante que o valor eh novo; quem impede a duplicidade de fato eh o banco.
+-- Os nomes levam a coluna para que a violacao seja traduzida para o campo do formulario.
+CREATE UNIQUE INDEX IF NOT EXISTS pessoa_cpf_unq ON public.pessoa (cpf);
+
+-- O nome de usuario eh comparado sem diferenciar maiusculas (findByNomeUsuarioIgnoreCase)
+CREATE UNIQUE INDEX IF NOT EXISTS usuario_nome_usuario_unq ON public.usuario (lower(nome_usuario));
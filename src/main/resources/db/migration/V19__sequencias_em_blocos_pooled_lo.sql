@@ -0,0 +1,36 @@
+-- Chaves de carro, movimentacao, pessoa (e motorista) e lote geradas por sequencias
+-- que avancam de 50 em 50. O Hibernate usa o otimizador pooled-lo
+-- (hibernate.id.optimizer.pooled.preferred): cada nextval reserva os codigos de
+-- valor a valor + 49, entao uma ida ao banco atende 50 INSERTs e estes podem ser
+-- agrupados em batch (o que o IDENTITY do carro impedia).
+-- O DEFAULT da coluna continua sendo o nextval e nao colide com o Hibernate, mas
+-- cada INSERT que usa o DEFAULT gasta um bloco inteiro de 50 codigos (pessoa.codigo
+-- eh integer). Serve para um ou outro INSERT manual; cargas em volume devem reservar
+-- os codigos em blocos, um nextval a cada 50 linhas, como faz a importacao por CSV
+-- (ImportacaoService).
+
+-- carro deixa de ser IDENTITY e passa a ter a sua propria sequencia
+ALTER TABLE public.carro ALTER COLUMN codigo DROP IDENTITY IF EXISTS;
+CREATE SEQUENCE IF NOT EXISTS public.carro_codigo_seq;
+ALTER SEQUENCE public.carro_codigo_seq OWNED BY public.carro.codigo;
+
+CREATE SEQUENCE IF NOT EXISTS public.movimentacao_codigo_seq;
+CREATE SEQUENCE IF NOT EXISTS public.pessoa_codigo_seq;
+CREATE SEQUENCE IF NOT EXISTS public.lote_codigo_seq;
+
+ALTER TABLE public.carro ALTER COLUMN codigo SET DEFAULT nextval('public.carro_codigo_seq');
+ALTER TABLE public.movimentacao ALTER COLUMN codigo SET DEFAULT nextval('public.movimentacao_codigo_seq');
+ALTER TABLE public.pessoa ALTER COLUMN codigo SET DEFAULT nextval('public.pessoa_codigo_seq');
+ALTER TABLE public.lote ALTER COLUMN codigo SET DEFAULT nextval('public.lote_codigo_seq');
+
+-- O incremento precisa ser igual ao allocationSize das entidades
+ALTER SEQUENCE public.carro_codigo_seq INCREMENT BY 50;
+ALTER SEQUENCE public.movimentacao_codigo_seq INCREMENT BY 50;
+ALTER SEQUENCE public.pessoa_codigo_seq INCREMENT BY 50;
+ALTER SEQUENCE public.lote_codigo_seq INCREMENT BY 50;
+
+-- O proximo nextval devolve o codigo seguinte ao maior ja usado
+SELECT setval('public.carro_codigo_seq', COALESCE((SELECT max(codigo) FROM public.carro), 0) + 1, false);
+SELECT setval('public.movimentacao_codigo_seq', COALESCE((SELECT max(codigo) FROM public.movimentacao), 0) + 1, false);
+SELECT setval('public.pessoa_codigo_seq', COALESCE((SELECT max(codigo) FROM public.pessoa), 0) + 1, false);
+SELECT setval('public.lote_codigo_seq', COALESCE((SELECT max(codigo) FROM public.lote), 0) + 1, false);
@@ -0,0 +1,52 @@
+// Painel da frota: recebe por SSE as mudancas de status dos carros e
+// movimentacoes e atualiza a linha do carro (id carro-{codigo}) na tabela.
+// O navegador reconecta o EventSource sozinho se a conexao cair.
+
+let fontePainelFrota = null;
+
+htmx.onLoad(function () {
+  const painel = document.getElementById("painel-frota");
+  if (!painel) {
+    fecharPainelFrota();
+    return;
+  }
+  if (fontePainelFrota) {
+    return;
+  }
+  fontePainelFrota = new EventSource(painel.dataset.eventos);
+  fontePainelFrota.addEventListener("status", function (evento) {
+    atualizarLinhaCarro(JSON.parse(evento.data));
+  });
+});
+
+function fecharPainelFrota() {
+  if (fontePainelFrota) {
+    fontePainelFrota.close();
+    fontePainelFrota = null;
+  }
+}
+
+function atualizarLinhaCarro(evento) {
+  const linha = document.getElementById("carro-" + evento.codigoCarro);
+  if (!linha) {
+    return;
+  }
+  definirCampo(linha, "placa", evento.placa);
+  definirCampo(linha, "modelo", evento.modelo);
+  definirCampo(linha, "statusCarro", evento.descricaoStatusCarro);
+  // Eventos de carro nao trazem movimentacao; so os de movimentacao mexem no motorista
+  if (evento.statusMovimentacao === "ATIVA") {
+    definirCampo(linha, "statusMovimentacao", evento.descricaoStatusMovimentacao);
+    definirCampo(linha, "motorista", evento.nomeMotorista);
+  } else if (evento.statusMovimentacao) {
+    definirCampo(linha, "statusMovimentacao", "");
+    definirCampo(linha, "motorista", "");
+  }
+}
+
+function definirCampo(linha, campo, valor) {
+  const celula = linha.querySelector('[data-campo="' + campo + '"]');
+  if (celula && valor !== undefined && valor !== null) {
+    celula.textContent = valor;
+  }
+}
@@ -0,0 +1,52 @@
+package web.controlevacinacao;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Base dos testes de integracao: sobe a aplicacao com um PostgreSQL e um Valkey em
+ * conteineres. Os conteineres sao iniciados uma vez e compartilhados por todas as
+ * classes de teste, entao cada teste cria dados com placa, CPF e CNH proprios.
+ */
+@SpringBootTest
+@ActiveProfiles("teste")
+public abstract class TesteIntegracao {
+
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:17-alpine");
+
+    static final GenericContainer<?> VALKEY = new GenericContainer<>("valkey/valkey:8-alpine").withExposedPorts(6379);
+
+    private static final AtomicLong SEQUENCIA = new AtomicLong(ThreadLocalRandom.current().nextLong(1_000_000));
+
+    static {
+        POSTGRES.start();
+        VALKEY.start();
+    }
+
+    @DynamicPropertySource
+    static void configurarConteineres(DynamicPropertyRegistry registro) {
+        registro.add("spring.datasource.url", POSTGRES::getJdbcUrl);
+        registro.add("spring.datasource.username", POSTGRES::getUsername);
+        registro.add("spring.datasource.password", POSTGRES::getPassword);
+        registro.add("spring.data.redis.host", VALKEY::getHost);
+        registro.add("spring.data.redis.port", () -> VALKEY.getMappedPort(6379));
+    }
+
+    /** Placa de 7 caracteres que nenhum outro teste usa. */
+    protected static String placaUnica() {
+        return String.format("T%06d", SEQUENCIA.incrementAndGet() % 1_000_000);
+    }
+
+    /** 11 digitos (CPF ou CNH) que nenhum outro teste usa. */
+    protected static String digitosUnicos() {
+        return String.format("9%010d", SEQUENCIA.incrementAndGet());
+    }
+
+}
@@ -0,0 +1,92 @@
+package web.controlevacinacao.assistente;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.mock.web.MockHttpSession;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import web.controlevacinacao.config.SessaoRedisConfig;
+import web.controlevacinacao.model.Aplicacao;
+import web.controlevacinacao.model.Lote;
+import web.controlevacinacao.model.Pessoa;
+import web.controlevacinacao.model.Vacina;
+
+// Sem Redis: o store so usa a sessao, que o spring-session grava de uma vez no fim da requisicao
+class EstadoAssistenteStoreTest {
+
+    private final EstadoAssistenteStore store = new EstadoAssistenteStore(new ObjectMapper());
+
+    // O mesmo serializador que o spring-session usa para os atributos
+    private final RedisSerializer<Object> serializador = new SessaoRedisConfig()
+            .serializadorSessao(new SimpleMeterRegistry());
+
+    @Test
+    void guardaELeOEstadoNaSessao() {
+        MockHttpSession sessao = new MockHttpSession();
+        store.guardar(sessao, EstadoMovimentacao.cadastro(10L).comMotorista(20L));
+        store.guardar(sessao, EstadoAplicacao.alteracao(30L));
+
+        assertThat(store.obter(sessao, EstadoMovimentacao.class)).isEqualTo(new EstadoMovimentacao(null, 10L, 20L));
+        assertThat(store.obter(sessao, EstadoAplicacao.class)).isEqualTo(new EstadoAplicacao(30L, null, null));
+        assertThat(sessao.getAttribute(EstadoAssistenteStore.atributo(EstadoMovimentacao.class))).isInstanceOf(String.class);
+    }
+
+    @Test
+    void estadoOcupaUmaFracaoDaEntidadeQueIaParaASessao() {
+        // O que o assistente de aplicacao guardava antes depois da segunda etapa: a entidade com pessoa e lote
+        Vacina vacina = new Vacina();
+        vacina.setCodigo(3L);
+        vacina.setNome("Vacina contra a gripe");
+        vacina.setDescricao("Dose anual para adultos");
+        Lote lote = new Lote();
+        lote.setCodigo(2L);
+        lote.setValidade(LocalDate.of(2026, 12, 31));
+        lote.setNroDosesDoLote(500);
+        lote.setNroDosesAtual(320);
+        lote.setVacina(vacina);
+        Pessoa pessoa = new Pessoa();
+        pessoa.setCodigo(1L);
+        pessoa.setNome("Maria da Silva");
+        pessoa.setCpf("12345678901");
+        pessoa.setDataNascimento(LocalDate.of(1980, 5, 20));
+        pessoa.setVersao(0L);
+        Aplicacao aplicacao = new Aplicacao();
+        aplicacao.setData(LocalDate.of(2025, 6, 1));
+        aplicacao.setPessoa(pessoa);
+        aplicacao.setLote(lote);
+        MockHttpSession sessao = new MockHttpSession();
+        store.guardar(sessao, EstadoAplicacao.cadastro(1L).comLote(2L));
+
+        int antes = serializador.serialize(aplicacao).length;
+        int depois = serializador.serialize(sessao.getAttribute(EstadoAssistenteStore.atributo(EstadoAplicacao.class))).length;
+
+        assertThat(depois).isLessThan(antes / 10);
+    }
+
+    @Test
+    void estadoRemovidoOuDeOutraSessaoNaoEhEncontrado() {
+        MockHttpSession sessao = new MockHttpSession();
+        store.guardar(sessao, EstadoMovimentacao.alteracao(5L));
+
+        assertThat(store.obter(new MockHttpSession(), EstadoMovimentacao.class)).isNull();
+
+        store.remover(sessao, EstadoMovimentacao.class);
+        assertThat(store.obter(sessao, EstadoMovimentacao.class)).isNull();
+        assertThat(sessao.getAttributeNames().hasMoreElements()).isFalse();
+    }
+
+    @Test
+    void estadoGravadoEmOutroFormatoRecomecaOAssistente() {
+        MockHttpSession sessao = new MockHttpSession();
+        sessao.setAttribute(EstadoAssistenteStore.atributo(EstadoAplicacao.class), "{\"pessoa\":{\"nome\":\"x\"}");
+
+        assertThat(store.obter(sessao, EstadoAplicacao.class)).isNull();
+    }
+
+}
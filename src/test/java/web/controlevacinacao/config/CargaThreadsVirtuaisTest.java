@@ -0,0 +1,199 @@
+package web.controlevacinacao.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+
+import web.controlevacinacao.ControleVacinacaoApplication;
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.repository.MotoristaRepository;
+
+/**
+ * Teste de carga dos dois modos do Tomcat (ver README, secao Threads virtuais).
+ * Sobe a aplicacao duas vezes sobre os mesmos conteineres, com threads de
+ * plataforma e com threads virtuais, e envia a mesma carga de pesquisas HTMX de
+ * motoristas a cada uma. As requisicoes por segundo e o p99 vao para o log.
+ *
+ * O cache das paginas fica desligado para que toda requisicao espere o banco, que
+ * eh onde as threads virtuais fazem diferenca. Duracao e clientes simultaneos vem
+ * de carga.duracao e carga.clientes; os valores padrao so conferem que o teste roda.
+ */
+class CargaThreadsVirtuaisTest extends TesteIntegracao {
+
+    private static final Logger logger = LoggerFactory.getLogger(CargaThreadsVirtuaisTest.class);
+
+    private static final int MOTORISTAS = 50;
+
+    static {
+        // O keystore.p12 eh autoassinado: o cliente da carga nao confere certificado nem nome do host
+        System.setProperty("jdk.internal.httpclient.disableHostnameVerification", "true");
+    }
+
+    private record Resultado(int requisicoes, int erros, double porSegundo, double p50, double p99) {
+    }
+
+    @Autowired
+    private Environment ambiente;
+
+    @Autowired
+    private MotoristaRepository motoristaRepository;
+
+    @Value("${carga.duracao:PT5S}")
+    private Duration duracao;
+
+    @Value("${carga.clientes:50}")
+    private int clientes;
+
+    @BeforeEach
+    void criarMotoristas() {
+        for (int i = 0; i < MOTORISTAS; i++) {
+            motoristaRepository.save(new Motorista("Carga " + i, digitosUnicos(), LocalDate.of(1990, 1, 1), digitosUnicos()));
+        }
+    }
+
+    @Test
+    void mesmaCargaComThreadsDePlataformaEVirtuais() throws Exception {
+        Resultado plataforma = medir(false);
+        Resultado virtuais = medir(true);
+
+        logger.info("Teste de carga, {} clientes por {}: plataforma {} req/s (p99 {} ms), virtuais {} req/s (p99 {} ms)",
+                clientes, duracao, Math.round(plataforma.porSegundo()), String.format("%.1f", plataforma.p99()),
+                Math.round(virtuais.porSegundo()), String.format("%.1f", virtuais.p99()));
+
+        assertThat(plataforma.erros()).isZero();
+        assertThat(virtuais.erros()).isZero();
+        assertThat(plataforma.requisicoes()).isPositive();
+        assertThat(virtuais.requisicoes()).isPositive();
+    }
+
+    private Resultado medir(boolean threadsVirtuais) throws Exception {
+        try (ConfigurableApplicationContext aplicacao = new SpringApplicationBuilder(ControleVacinacaoApplication.class)
+                .profiles("teste")
+                .properties(
+                        "spring.datasource.url=" + ambiente.getProperty("spring.datasource.url"),
+                        "spring.datasource.username=" + ambiente.getProperty("spring.datasource.username"),
+                        "spring.datasource.password=" + ambiente.getProperty("spring.datasource.password"),
+                        "spring.data.redis.host=" + ambiente.getProperty("spring.data.redis.host"),
+                        "spring.data.redis.port=" + ambiente.getProperty("spring.data.redis.port"),
+                        "spring.threads.virtual.enabled=" + threadsVirtuais,
+                        "spring.cache.type=none",
+                        "server.port=0")
+                .run()) {
+            int porta = ((WebServerApplicationContext) aplicacao).getWebServer().getPort();
+            URI endereco = URI.create("https://localhost:" + porta + "/motoristas/pesquisar?nome=carga");
+            HttpClient cliente = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .sslContext(confiarEmQualquerCertificado())
+                    .build();
+
+            // Aquecimento (JIT, pool de conexoes, plano das consultas) fora da medida
+            carregar(cliente, endereco, duracao.dividedBy(4));
+            Resultado resultado = carregar(cliente, endereco, duracao);
+            logger.info("Threads {}: {} requisicoes em {}, {} req/s, p50 {} ms, p99 {} ms, {} erros",
+                    threadsVirtuais ? "virtuais" : "de plataforma", resultado.requisicoes(), duracao,
+                    Math.round(resultado.porSegundo()), String.format("%.1f", resultado.p50()),
+                    String.format("%.1f", resultado.p99()), resultado.erros());
+            return resultado;
+        }
+    }
+
+    /**
+     * Cada cliente envia uma requisicao apos a outra ate o fim do prazo, como o
+     * hey -c. Os clientes sao threads virtuais para que o gerador de carga nao
+     * seja o gargalo em nenhum dos dois modos.
+     */
+    private Resultado carregar(HttpClient cliente, URI endereco, Duration prazo) throws Exception {
+        HttpRequest requisicao = HttpRequest.newBuilder(endereco)
+                .header("HX-Request", "true")
+                .timeout(Duration.ofSeconds(30))
+                .build();
+        AtomicInteger erros = new AtomicInteger();
+        long inicio = System.nanoTime();
+        long fim = inicio + prazo.toNanos();
+
+        List<Future<List<Long>>> tarefas = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < clientes; i++) {
+                tarefas.add(executor.submit(() -> {
+                    List<Long> duracoes = new ArrayList<>();
+                    while (System.nanoTime() < fim) {
+                        long envio = System.nanoTime();
+                        try {
+                            HttpResponse<Void> resposta = cliente.send(requisicao, HttpResponse.BodyHandlers.discarding());
+                            if (resposta.statusCode() != 200) {
+                                erros.incrementAndGet();
+                            }
+                        } catch (Exception e) {
+                            erros.incrementAndGet();
+                        }
+                        duracoes.add(System.nanoTime() - envio);
+                    }
+                    return duracoes;
+                }));
+            }
+        }
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        List<Long> todas = new ArrayList<>();
+        for (Future<List<Long>> tarefa : tarefas) {
+            todas.addAll(tarefa.get());
+        }
+        long[] duracoes = todas.stream().mapToLong(Long::longValue).sorted().toArray();
+        if (duracoes.length == 0) {
+            return new Resultado(0, erros.get(), 0, 0, 0);
+        }
+        double p50 = duracoes[duracoes.length / 2] / 1_000_000.0;
+        double p99 = duracoes[(int) Math.ceil(duracoes.length * 0.99) - 1] / 1_000_000.0;
+        return new Resultado(duracoes.length, erros.get(), duracoes.length / segundos, p50, p99);
+    }
+
+    private static SSLContext confiarEmQualquerCertificado() throws Exception {
+        TrustManager confiaEmTodos = new X509TrustManager() {
+            @Override
+            public void checkClientTrusted(X509Certificate[] cadeia, String tipo) {
+            }
+
+            @Override
+            public void checkServerTrusted(X509Certificate[] cadeia, String tipo) {
+            }
+
+            @Override
+            public X509Certificate[] getAcceptedIssuers() {
+                return new X509Certificate[0];
+            }
+        };
+        SSLContext contexto = SSLContext.getInstance("TLS");
+        contexto.init(null, new TrustManager[] { confiaEmTodos }, new SecureRandom());
+        return contexto;
+    }
+
+}
@@ -0,0 +1,41 @@
+package web.controlevacinacao.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.ApplicationContext;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import web.controlevacinacao.TesteIntegracao;
+
+@SpringBootTest(properties = "spring.threads.virtual.enabled=true")
+class FixacaoThreadsVirtuaisTest extends TesteIntegracao {
+
+    @Autowired
+    private ApplicationContext contexto;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Test
+    void comThreadsVirtuaisOMonitorEhRegistradoEIniciado() {
+        FixacaoThreadsVirtuais monitor = contexto.getBean(FixacaoThreadsVirtuais.class);
+
+        assertThat(monitor.isRunning()).isTrue();
+        assertThat(registry.find("threads.virtuais.fixacao").timer()).isNotNull();
+    }
+
+    @Test
+    void semThreadsVirtuaisOMonitorNaoEhRegistrado() {
+        new ApplicationContextRunner()
+                .withPropertyValues("spring.threads.virtual.enabled=false")
+                .withBean(SimpleMeterRegistry.class)
+                .withUserConfiguration(FixacaoThreadsVirtuais.class)
+                .run(contexto -> assertThat(contexto).doesNotHaveBean(FixacaoThreadsVirtuais.class));
+    }
+
+}
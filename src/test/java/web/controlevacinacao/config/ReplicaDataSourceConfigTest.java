@@ -0,0 +1,51 @@
+package web.controlevacinacao.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+class ReplicaDataSourceConfigTest {
+
+    // O Hikari so abre conexoes no primeiro uso, entao os bancos nao precisam existir
+    private final ApplicationContextRunner contexto = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+            .withUserConfiguration(ReplicaDataSourceConfig.class)
+            .withPropertyValues(
+                    "spring.datasource.url=jdbc:postgresql://principal:5432/controlevacinacao",
+                    "spring.datasource.username=postgres",
+                    "spring.datasource.replica.url=jdbc:postgresql://replica:5432/controlevacinacao",
+                    "spring.datasource.hikari.maximum-pool-size=7",
+                    "spring.datasource.replica.hikari.maximum-pool-size=3");
+
+    @Test
+    void poolsRecebemAsPropriedadesDoHikari() {
+        contexto.run(aplicacao -> {
+            HikariDataSource principal = aplicacao.getBean("dataSourcePrincipal", HikariDataSource.class);
+            HikariDataSource replica = aplicacao.getBean("dataSourceReplica", HikariDataSource.class);
+
+            assertThat(principal.getMaximumPoolSize()).isEqualTo(7);
+            assertThat(principal.getJdbcUrl()).contains("//principal:");
+            assertThat(replica.getMaximumPoolSize()).isEqualTo(3);
+            assertThat(replica.getJdbcUrl()).contains("//replica:");
+            assertThat(replica.getUsername()).isEqualTo("postgres");
+            assertThat(replica.isReadOnly()).isTrue();
+        });
+    }
+
+    @Test
+    void poolsSaoFechadosComOContexto() {
+        List<HikariDataSource> pools = new ArrayList<>();
+        contexto.run(aplicacao -> pools.addAll(aplicacao.getBeansOfType(HikariDataSource.class).values()));
+
+        assertThat(pools).hasSize(2).allMatch(HikariDataSource::isClosed);
+    }
+
+}
@@ -0,0 +1,54 @@
+package web.controlevacinacao.config;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrlPattern;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+
+import web.controlevacinacao.TesteIntegracao;
+
+@AutoConfigureMockMvc
+class SecurityConfigTest extends TesteIntegracao {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @ParameterizedTest
+    @ValueSource(strings = { "/carros/exportar", "/motoristas/exportar", "/movimentacoes/exportar",
+            "/pessoas/exportar", "/vacinas/exportar", "/lotes/exportar", "/aplicacoes/exportar" })
+    void exportacaoSemLoginVaiParaOLogin(String url) throws Exception {
+        mockMvc.perform(get(url).param("formato", "CSV"))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrlPattern("**/login"));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "/painel/frota", "/painel/frota/eventos" })
+    void painelDaFrotaSemLoginVaiParaOLogin(String url) throws Exception {
+        mockMvc.perform(get(url))
+                .andExpect(status().is3xxRedirection())
+                .andExpect(redirectedUrlPattern("**/login"));
+    }
+
+    @Test
+    @WithMockUser(roles = "USUARIO")
+    void painelDaFrotaEhSoDoAdmin() throws Exception {
+        mockMvc.perform(get("/painel/frota/eventos")).andExpect(status().isForbidden());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "/pessoas/exportar", "/motoristas/exportar" })
+    @WithMockUser(roles = "USUARIO")
+    void usuarioLogadoExporta(String url) throws Exception {
+        mockMvc.perform(get(url).param("formato", "CSV"))
+                .andExpect(status().isOk());
+    }
+
+}
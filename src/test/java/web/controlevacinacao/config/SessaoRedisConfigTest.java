@@ -0,0 +1,76 @@
+package web.controlevacinacao.config;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class SessaoRedisConfigTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RedisSerializer<Object> serializador = new SessaoRedisConfig().serializadorSessao(registry);
+
+    @Test
+    void contextoDeSegurancaVaiEmJson() {
+        // O mesmo principal que o JdbcUserDetailsManager do login devolve
+        User usuario = new User("admin", "", List.of(new SimpleGrantedAuthority("ROLE_ADMIN")));
+        SecurityContext contexto = new SecurityContextImpl(
+                UsernamePasswordAuthenticationToken.authenticated(usuario, null, usuario.getAuthorities()));
+
+        byte[] bytes = serializador.serialize(contexto);
+
+        assertThat(bytes[0]).isEqualTo((byte) '{');
+        SecurityContext lido = (SecurityContext) serializador.deserialize(bytes);
+        assertThat(lido.getAuthentication().getName()).isEqualTo("admin");
+        assertThat(lido.getAuthentication().getAuthorities()).extracting(Object::toString).containsExactly("ROLE_ADMIN");
+        assertThat(registry.get("sessao.redis.bytes").tag("formato", "json").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void textoVaiEmJson() {
+        byte[] bytes = serializador.serialize("ultima pesquisa");
+
+        assertThat(bytes[0]).isEqualTo((byte) '"');
+        assertThat(serializador.deserialize(bytes)).isEqualTo("ultima pesquisa");
+    }
+
+    @Test
+    void outrosTiposContinuamNaSerializacaoJava() {
+        ArrayList<String> valor = new ArrayList<>(List.of("notificacao"));
+
+        byte[] bytes = serializador.serialize(valor);
+
+        assertThat(bytes[0]).isEqualTo((byte) 0xAC);
+        assertThat(bytes[1]).isEqualTo((byte) 0xED);
+        assertThat(serializador.deserialize(bytes)).isEqualTo(valor);
+        assertThat(registry.get("sessao.redis.bytes").tag("formato", "jdk").summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void leAtributoGravadoAntesDoJson() {
+        SecurityContext contexto = new SecurityContextImpl(
+                UsernamePasswordAuthenticationToken.authenticated("usuario", null, List.of()));
+        byte[] antigo = new JdkSerializationRedisSerializer().serialize(contexto);
+
+        assertThat(((SecurityContext) serializador.deserialize(antigo)).getAuthentication().getName())
+                .isEqualTo("usuario");
+    }
+
+    @Test
+    void valorNuloViraVazioEVoltaNulo() {
+        assertThat(serializador.serialize(null)).isEmpty();
+        assertThat(serializador.deserialize(new byte[0])).isNull();
+    }
+
+}
@@ -0,0 +1,37 @@
+package web.controlevacinacao.pagination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class ContagemCacheTest {
+
+    private final ContagemCache cache = new ContagemCache(Duration.ofMinutes(1));
+
+    @Test
+    void limparDescartaAsContagens() {
+        AtomicInteger consultas = new AtomicInteger();
+        cache.obter("carros", consultas::incrementAndGet);
+        cache.obter("carros", consultas::incrementAndGet);
+        assertThat(consultas).hasValue(1);
+
+        cache.limpar();
+
+        assertThat(cache.obter("carros", consultas::incrementAndGet)).isEqualTo(2);
+    }
+
+    @Test
+    void naoPassaDoMaximoDeEntradas() {
+        AtomicInteger consultas = new AtomicInteger();
+        for (int i = 0; i < 1500; i++) {
+            cache.obter("filtro " + i, consultas::incrementAndGet);
+        }
+        // Ao chegar no maximo o mapa recomeca vazio, entao o primeiro filtro eh contado de novo
+        cache.obter("filtro 0", consultas::incrementAndGet);
+        assertThat(consultas).hasValue(1501);
+    }
+
+}
@@ -0,0 +1,35 @@
+package web.controlevacinacao.pagination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class CursorTest {
+
+    @Test
+    void codificaEDecodificaValor() {
+        Cursor lido = Cursor.decodificar(new Cursor(4, "placa", Sort.Direction.DESC, 42L, "ABC|1234").codificar());
+
+        assertThat(lido.getPagina()).isEqualTo(4);
+        assertThat(lido.getPropriedade()).isEqualTo("placa");
+        assertThat(lido.getDirecao()).isEqualTo(Sort.Direction.DESC);
+        assertThat(lido.getCodigo()).isEqualTo(42L);
+        assertThat(lido.getValor()).isEqualTo("ABC|1234");
+    }
+
+    @Test
+    void valorNuloNaoViraTextoVazio() {
+        assertThat(Cursor.decodificar(new Cursor(3, "dataRetorno", Sort.Direction.ASC, 7L, null).codificar()).getValor())
+                .isNull();
+        assertThat(Cursor.decodificar(new Cursor(3, "placa", Sort.Direction.ASC, 7L, "").codificar()).getValor())
+                .isEmpty();
+    }
+
+    @Test
+    void textoInvalidoNaoGeraCursor() {
+        assertThat(Cursor.decodificar("nao eh base64!")).isNull();
+        assertThat(Cursor.decodificar(null)).isNull();
+    }
+
+}
@@ -0,0 +1,113 @@
+package web.controlevacinacao.pagination;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.filter.MovimentacaoFilter;
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.model.StatusMovimentacao;
+import web.controlevacinacao.projection.MovimentacaoResumo;
+import web.controlevacinacao.repository.CarroRepository;
+import web.controlevacinacao.repository.MotoristaRepository;
+import web.controlevacinacao.repository.MovimentacaoRepository;
+
+/**
+ * Percorre as paginas pelo cursor, como a tela faz, e confere que o keyset devolve as
+ * mesmas linhas da consulta completa, inclusive as que tem a coluna da ordenacao nula.
+ */
+class PaginacaoKeysetTest extends TesteIntegracao {
+
+    private static final int MOVIMENTACOES = 20;
+    private static final int TAMANHO_PAGINA = 3;
+
+    @Autowired
+    private CarroRepository carroRepository;
+
+    @Autowired
+    private MotoristaRepository motoristaRepository;
+
+    @Autowired
+    private MovimentacaoRepository movimentacaoRepository;
+
+    private MovimentacaoFilter filtro;
+
+    @BeforeEach
+    void criarMovimentacoes() {
+        Carro carro = new Carro();
+        carro.setPlaca(placaUnica());
+        carro.setModelo("Gol");
+        carro.setCor("Branco");
+        carro.setKmAtual(0L);
+        carro = carroRepository.save(carro);
+
+        Motorista motorista = motoristaRepository.save(
+                new Motorista("Motorista Keyset", digitosUnicos(), LocalDate.of(1990, 1, 1), digitosUnicos()));
+
+        // Uma a cada tres sem retorno, e datas repetidas para o desempate pelo codigo
+        List<Movimentacao> movimentacoes = new ArrayList<>();
+        for (int i = 0; i < MOVIMENTACOES; i++) {
+            Movimentacao movimentacao = new Movimentacao();
+            movimentacao.setCarro(carro);
+            movimentacao.setMotorista(motorista);
+            movimentacao.setDataSaida(LocalDate.of(2025, 1, 1));
+            movimentacao.setHoraSaida(LocalTime.NOON);
+            movimentacao.setKmSaida(0L);
+            movimentacao.setStatusMovimentacao(StatusMovimentacao.ATIVA);
+            if (i % 3 != 0) {
+                movimentacao.setDataRetorno(LocalDate.of(2025, 1, 2 + i % 4));
+            }
+            movimentacoes.add(movimentacao);
+        }
+        movimentacaoRepository.saveAll(movimentacoes);
+
+        filtro = new MovimentacaoFilter();
+        filtro.setPlacaCarro(carro.getPlaca());
+    }
+
+    @ParameterizedTest
+    @EnumSource(Sort.Direction.class)
+    void keysetPercorreTodasAsLinhasInclusiveAsNulas(Sort.Direction direcao) {
+        Sort sort = Sort.by(direcao, "dataRetorno");
+        List<Long> esperado = new ArrayList<>();
+        movimentacaoRepository.exportar(filtro, sort, m -> esperado.add(m.getCodigo()));
+
+        List<Long> percorrido = new ArrayList<>();
+        String cursor = null;
+        Page<MovimentacaoResumo> pagina;
+        int numero = 0;
+        do {
+            PageRequest pageable = PageRequest.of(numero, TAMANHO_PAGINA, sort);
+            pagina = movimentacaoRepository.pesquisar(filtro, pageable, cursor);
+            pagina.forEach(m -> percorrido.add(m.getCodigo()));
+
+            numero++;
+            cursor = null;
+            if (numero >= PaginacaoUtil.PAGINAS_COM_OFFSET && pagina.hasContent()) {
+                Cursor proximo = Cursor.aPartirDe(pagina.getContent().get(pagina.getNumberOfElements() - 1), numero,
+                        pageable.getSort().iterator().next());
+                // Mesmo com o ultimo registro sem data de retorno a pagina seguinte usa o keyset
+                assertThat(proximo).isNotNull();
+                cursor = proximo.codificar();
+            }
+        } while (pagina.hasNext());
+
+        assertThat(esperado).hasSize(MOVIMENTACOES);
+        assertThat(percorrido).containsExactlyElementsOf(esperado);
+    }
+
+}
@@ -0,0 +1,35 @@
+package web.controlevacinacao.painel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class PainelFrotaTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final PainelFrota painel = new PainelFrota(Duration.ofMinutes(30), 3, 2, registry);
+
+    @Test
+    void limitaAsConexoesPorUsuario() {
+        assertThat(painel.conectar("ana")).isNotNull();
+        assertThat(painel.conectar("ana")).isNotNull();
+
+        assertThat(painel.conectar("ana")).isNull();
+        assertThat(painel.conectar("bruno")).isNotNull();
+    }
+
+    @Test
+    void limitaAsConexoesDaInstancia() {
+        painel.conectar("ana");
+        painel.conectar("bruno");
+        painel.conectar("carla");
+
+        assertThat(painel.conectar("daniel")).isNull();
+        assertThat(registry.get("painel.frota.conexoes").gauge().value()).isEqualTo(3.0);
+    }
+
+}
@@ -0,0 +1,202 @@
+package web.controlevacinacao.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.filter.CarroFilter;
+import web.controlevacinacao.filter.MotoristaFilter;
+
+/**
+ * Pesquisas de carros e motoristas sobre tabelas com algumas centenas de milhares
+ * de linhas. O SQL conferido eh o que o Hibernate gera a partir do CarroQueriesImpl
+ * e do MotoristaQueriesImpl (capturado por um StatementInspector), e nao uma copia
+ * escrita a mao: se a expressao da query deixar de bater com a do indice trigram
+ * da V14, o plano volta a ser um seq scan.
+ *
+ * As linhas da carga tem codigo negativo, para nao gastar as sequencias nem colidir
+ * com os dados dos outros testes, e sao apagadas ao final da classe.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndicesPesquisaTest extends TesteIntegracao {
+
+    private static final Logger logger = LoggerFactory.getLogger(IndicesPesquisaTest.class);
+
+    private static final int LINHAS = 300_000;
+    private static final int TAMANHO_PAGINA = 10;
+    private static final int PESQUISAS_MEDIDAS = 200;
+    // Folga para maquinas de CI lentas; com os indices cada pesquisa leva poucos milissegundos
+    private static final long LIMITE_P99_MILISSEGUNDOS = 250;
+
+    // Linha cujos valores as pesquisas do plano procuram
+    private static final int ALVO = 123_457;
+
+    private static final Queue<String> SQL_EXECUTADO = new ConcurrentLinkedQueue<>();
+
+    @TestConfiguration
+    static class CapturaSql {
+
+        @Bean
+        HibernatePropertiesCustomizer capturarSql() {
+            StatementInspector inspetor = sql -> {
+                SQL_EXECUTADO.add(sql);
+                return sql;
+            };
+            return propriedades -> propriedades.put(AvailableSettings.STATEMENT_INSPECTOR, inspetor);
+        }
+
+    }
+
+    @Autowired
+    private CarroRepository carroRepository;
+
+    @Autowired
+    private MotoristaRepository motoristaRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeAll
+    void criarCarga() {
+        // Modelo, cor e nome levam um trecho de md5 para que cada linha tenha um valor proprio
+        jdbcTemplate.update("insert into carro (codigo, placa, modelo, cor, km_atual, status_carro, versao) "
+                + "select -g, 'C' || lpad(to_hex(g), 7, '0'), "
+                + "(array['Gol', 'Uno', 'Onix', 'HB20', 'Argo', 'Kwid', 'Mobi', 'Polo'])[1 + g % 8] "
+                + "|| ' ' || substr(md5('modelo' || g), 1, 6), "
+                + "(array['Prata', 'Preto', 'Branco', 'Vermelho', 'Azul', 'Cinza'])[1 + g % 6] "
+                + "|| ' ' || substr(md5('cor' || g), 1, 6), "
+                + "g % 200000, 'ATIVO', 0 from generate_series(1, ?) g", LINHAS);
+        jdbcTemplate.update("insert into pessoa (codigo, nome, cpf, cnh, data_nascimento, status, tipo_entidade, versao) "
+                + "select -g, 'Motorista ' || substr(md5('nome' || g), 1, 8), "
+                + "'8' || lpad(g::text, 10, '0'), '7' || lpad(g::text, 10, '0'), "
+                + "date '1960-01-01' + g % 15000, 'ATIVO', 'MOTORISTA', 0 from generate_series(1, ?) g", LINHAS);
+        jdbcTemplate.execute("analyze carro");
+        jdbcTemplate.execute("analyze pessoa");
+    }
+
+    @AfterAll
+    void apagarCarga() {
+        jdbcTemplate.update("delete from carro where codigo < 0");
+        jdbcTemplate.update("delete from pessoa where codigo < 0");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "carro  | placa  | carro_placa_trgm_idx",
+            "carro  | modelo | carro_modelo_trgm_idx",
+            "carro  | cor    | carro_cor_trgm_idx",
+            "pessoa | nome   | pessoa_nome_trgm_idx",
+            "pessoa | cpf    | pessoa_cpf_trgm_idx",
+            "pessoa | cnh    | pessoa_cnh_trgm_idx" })
+    void pesquisaPorTrechoUsaOIndiceTrigram(String tabela, String campo, String indice) {
+        String termo = termo(tabela, campo, ALVO);
+
+        SQL_EXECUTADO.clear();
+        pesquisar(campo, termo);
+        List<String> consultas = SQL_EXECUTADO.stream().filter(sql -> sql.contains(" from " + tabela + " ")).toList();
+
+        assertThat(consultas).isNotEmpty();
+        for (String sql : consultas) {
+            String plano = String.join("\n", explicar(sql, "%" + termo + "%"));
+            assertThat(plano).as(sql).contains(indice).doesNotContain("Seq Scan on " + tabela);
+        }
+    }
+
+    @Test
+    void pesquisasPorTrechoFicamDentroDoLimiteDeLatencia() {
+        List<String[]> pesquisas = new ArrayList<>();
+        Set<String> termos = new HashSet<>();
+        while (pesquisas.size() < PESQUISAS_MEDIDAS) {
+            // Termos repetidos cairiam no cache das pesquisas e nao iriam ao banco
+            int linha = ThreadLocalRandom.current().nextInt(1, LINHAS + 1);
+            String[] pesquisa = pesquisas.size() % 2 == 0
+                    ? new String[] { "placa", termo("carro", "placa", linha) }
+                    : new String[] { "nome", termo("pessoa", "nome", linha) };
+            if (termos.add(pesquisa[0] + pesquisa[1])) {
+                pesquisas.add(pesquisa);
+            }
+        }
+
+        long[] duracoes = new long[PESQUISAS_MEDIDAS];
+        for (int i = 0; i < PESQUISAS_MEDIDAS; i++) {
+            long inicio = System.nanoTime();
+            pesquisar(pesquisas.get(i)[0], pesquisas.get(i)[1]);
+            duracoes[i] = System.nanoTime() - inicio;
+        }
+        Arrays.sort(duracoes);
+        double p50 = duracoes[PESQUISAS_MEDIDAS / 2] / 1_000_000.0;
+        double p99 = duracoes[(int) Math.ceil(PESQUISAS_MEDIDAS * 0.99) - 1] / 1_000_000.0;
+        logger.info("{} pesquisas por trecho em {} carros e {} motoristas: p50 {} ms, p99 {} ms",
+                PESQUISAS_MEDIDAS, LINHAS, LINHAS, String.format("%.1f", p50), String.format("%.1f", p99));
+
+        assertThat(p99).isLessThan(LIMITE_P99_MILISSEGUNDOS);
+    }
+
+    private void pesquisar(String campo, String termo) {
+        PageRequest pageable = PageRequest.of(0, TAMANHO_PAGINA);
+        switch (campo) {
+            case "placa", "modelo", "cor" -> {
+                CarroFilter filtro = new CarroFilter();
+                switch (campo) {
+                    case "placa" -> filtro.setPlaca(termo);
+                    case "modelo" -> filtro.setModelo(termo);
+                    default -> filtro.setCor(termo);
+                }
+                carroRepository.pesquisar(filtro, pageable, null);
+            }
+            default -> {
+                MotoristaFilter filtro = new MotoristaFilter();
+                switch (campo) {
+                    case "nome" -> filtro.setNome(termo);
+                    case "cpf" -> filtro.setCpf(termo);
+                    default -> filtro.setCnh(termo);
+                }
+                motoristaRepository.pesquisar(filtro, pageable, null);
+            }
+        }
+    }
+
+    // Os 6 ultimos caracteres do campo de uma linha da carga: o trecho que distingue a linha
+    private String termo(String tabela, String coluna, int linha) {
+        return jdbcTemplate.queryForObject("select right(lower(" + coluna + "), 6) from " + tabela + " where codigo = ?",
+                String.class, -linha);
+    }
+
+    /**
+     * EXPLAIN do SQL gerado, com os valores que a pesquisa usou. O primeiro parametro
+     * eh o do filtro (o unico campo preenchido); os demais, se houver, sao os da paginacao.
+     */
+    private List<String> explicar(String sql, String valorFiltro) {
+        int parametros = (int) sql.chars().filter(c -> c == '?').count();
+        Object[] valores = new Object[parametros];
+        Arrays.fill(valores, TAMANHO_PAGINA);
+        valores[0] = valorFiltro;
+        return jdbcTemplate.queryForList("explain " + sql, String.class, valores);
+    }
+
+}
@@ -0,0 +1,58 @@
+package web.controlevacinacao.repository.queries.carro;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.filter.CarroFilter;
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.pagination.ConsultaCache;
+import web.controlevacinacao.projection.CarroResumo;
+import web.controlevacinacao.repository.CarroRepository;
+
+class CarroQueriesImplTest extends TesteIntegracao {
+
+    @Autowired
+    private CarroRepository carroRepository;
+
+    @Autowired
+    private ConsultaCache consultaCache;
+
+    @Test
+    void pesquisasComOMesmoFormatoReaproveitamAJpql() {
+        Carro gol = salvar("Gol");
+        Carro uno = salvar("Uno");
+        PageRequest pageable = PageRequest.of(0, 10, Sort.by("placa"));
+
+        pesquisar(gol.getPlaca(), pageable);
+        long falhas = consultaCache.getFalhas();
+        long acertos = consultaCache.getAcertos();
+
+        // Outro valor nos mesmos campos: mesma JPQL, com os parametros da nova pesquisa
+        assertThat(pesquisar(uno.getPlaca(), pageable)).extracting(CarroResumo::getModelo).containsExactly("Uno");
+        assertThat(consultaCache.getFalhas()).isEqualTo(falhas);
+        assertThat(consultaCache.getAcertos()).isEqualTo(acertos + 1);
+    }
+
+    private List<CarroResumo> pesquisar(String placa, PageRequest pageable) {
+        CarroFilter filtro = new CarroFilter();
+        filtro.setPlaca(placa);
+        return carroRepository.pesquisar(filtro, pageable, null).getContent();
+    }
+
+    private Carro salvar(String modelo) {
+        Carro carro = new Carro();
+        carro.setPlaca(placaUnica());
+        carro.setModelo(modelo);
+        carro.setCor("Prata");
+        carro.setKmAtual(0L);
+        return carroRepository.save(carro);
+    }
+
+}
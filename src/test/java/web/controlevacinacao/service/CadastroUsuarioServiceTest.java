@@ -0,0 +1,47 @@
+package web.controlevacinacao.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.model.Usuario;
+import web.controlevacinacao.unicidade.CampoUnico;
+
+class CadastroUsuarioServiceTest extends TesteIntegracao {
+
+    @Autowired
+    private CadastroUsuarioService cadastroUsuarioService;
+
+    @Test
+    void nomeDeUsuarioRepetidoNoBancoVoltaComoErroDoFormulario() {
+        String nome = "usuario" + digitosUnicos();
+        BindingResult primeiro = salvar(nome);
+        assertThat(primeiro.hasErrors()).isFalse();
+
+        // Como se outra instancia tivesse gravado o nome: nenhuma consulta antes do INSERT
+        BindingResult segundo = salvar(nome.toUpperCase());
+
+        assertThat(segundo.getFieldError("nomeUsuario")).isNotNull();
+        assertThat(segundo.getFieldError("nomeUsuario").getCode()).isEqualTo(CampoUnico.NOME_USUARIO.getCodigoErro());
+    }
+
+    private BindingResult salvar(String nomeUsuario) {
+        Usuario usuario = new Usuario();
+        usuario.setNome("Usuario Teste");
+        usuario.setEmail(nomeUsuario + "@teste.com");
+        usuario.setSenha("{noop}senha");
+        usuario.setNomeUsuario(nomeUsuario);
+        usuario.setDataNascimento(LocalDate.of(1990, 1, 1));
+        usuario.setAtivo(true);
+        BindingResult resultado = new BeanPropertyBindingResult(usuario, "usuario");
+        cadastroUsuarioService.salvar(usuario, resultado);
+        return resultado;
+    }
+
+}
@@ -0,0 +1,111 @@
+package web.controlevacinacao.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+
+import jakarta.persistence.EntityManagerFactory;
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.repository.CarroRepository;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
+
+class CarroServiceTest extends TesteIntegracao {
+
+    @Autowired
+    private CarroService carroService;
+
+    @Autowired
+    private CarroRepository carroRepository;
+
+    @Autowired
+    private IndiceUnicidade indiceUnicidade;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics estatisticas;
+
+    @BeforeEach
+    void lerEstatisticas() {
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void cadastroEhUmaConsultaDePlacaEUmInsert() {
+        Carro carro = novoCarro();
+        // Garante a consulta de placa, que o indice dispensaria para uma placa nova
+        indiceUnicidade.registrar(CampoUnico.PLACA, carro.getPlaca());
+
+        estatisticas.clear();
+        BindingResult resultado = new BeanPropertyBindingResult(carro, "carro");
+        carroService.salvar(carro, resultado);
+        long comandos = estatisticas.getPrepareStatementCount();
+
+        assertThat(resultado.hasErrors()).isFalse();
+        // Um carro a cada 50 abre um bloco de codigos com um nextval e fica com o primeiro deles
+        long nextval = carro.getCodigo().equals(ultimoValor("carro_codigo_seq")) ? 1 : 0;
+        assertThat(comandos - nextval).isEqualTo(2);
+    }
+
+    @Test
+    void alteracaoEhUmaConsultaDePlacaEUmUpdateSemSelect() {
+        Carro carro = novoCarro();
+        carroService.salvar(carro, new BeanPropertyBindingResult(carro, "carro"));
+        carro.setCor("Azul"); // O carro que volta do formulario, com codigo e versao
+
+        estatisticas.clear();
+        BindingResult resultado = new BeanPropertyBindingResult(carro, "carro");
+        carroService.alterar(carro, resultado);
+
+        assertThat(resultado.hasErrors()).isFalse();
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(estatisticas.getEntityLoadCount()).isZero();
+        Carro gravado = carroRepository.findById(carro.getCodigo()).orElseThrow();
+        assertThat(gravado.getCor()).isEqualTo("Azul");
+        assertThat(gravado.getVersao()).isEqualTo(1L);
+        assertThat(carro.getVersao()).isEqualTo(1L); // O formulario seguinte ja sai com a versao nova
+    }
+
+    @Test
+    void alteracaoSobreVersaoAntigaEhRecusada() {
+        Carro carro = novoCarro();
+        carroService.salvar(carro, new BeanPropertyBindingResult(carro, "carro"));
+        carro.setCor("Azul");
+        carroService.alterar(carro, new BeanPropertyBindingResult(carro, "carro"));
+
+        carro.setVersao(0L);
+        carro.setCor("Verde");
+
+        assertThatThrownBy(() -> carroService.alterar(carro, new BeanPropertyBindingResult(carro, "carro")))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(carroRepository.findById(carro.getCodigo()).orElseThrow().getCor()).isEqualTo("Azul");
+    }
+
+    private Carro novoCarro() {
+        Carro carro = new Carro();
+        carro.setPlaca(placaUnica());
+        carro.setModelo("Onix");
+        carro.setCor("Preto");
+        carro.setKmAtual(1000L);
+        return carro;
+    }
+
+    private Long ultimoValor(String sequencia) {
+        return jdbcTemplate.queryForObject("select last_value from " + sequencia, Long.class);
+    }
+
+}
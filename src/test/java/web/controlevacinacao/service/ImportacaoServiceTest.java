@@ -0,0 +1,45 @@
+package web.controlevacinacao.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.importacao.ResultadoImportacao;
+
+class ImportacaoServiceTest extends TesteIntegracao {
+
+    @Autowired
+    private ImportacaoService importacaoService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void importacaoGastaUmNextvalACada50Linhas() throws Exception {
+        StringBuilder csv = new StringBuilder("placa;modelo;cor;kmAtual\n");
+        for (int i = 0; i < 60; i++) {
+            csv.append(placaUnica()).append(";Gol;Branco;1000\n");
+        }
+        long antes = proximoValor();
+
+        ResultadoImportacao resultado = importacaoService
+                .importarCarros(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+
+        assertThat(resultado.getImportadas()).isEqualTo(60);
+        // Dois blocos de 50 codigos, e nao um bloco por linha
+        assertThat(proximoValor() - antes).isEqualTo(2 * 50);
+    }
+
+    // Valor que o proximo nextval devolve (a sequencia ainda nao usada comeca com is_called falso)
+    private long proximoValor() {
+        return jdbcTemplate.queryForObject(
+                "select last_value + case when is_called then 50 else 0 end from carro_codigo_seq", Long.class);
+    }
+
+}
@@ -0,0 +1,117 @@
+package web.controlevacinacao.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+
+import jakarta.persistence.EntityManagerFactory;
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.repository.MotoristaRepository;
+import web.controlevacinacao.unicidade.CampoUnico;
+import web.controlevacinacao.unicidade.IndiceUnicidade;
+
+class MotoristaServiceTest extends TesteIntegracao {
+
+    @Autowired
+    private MotoristaService motoristaService;
+
+    @Autowired
+    private MotoristaRepository motoristaRepository;
+
+    @Autowired
+    private IndiceUnicidade indiceUnicidade;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Statistics estatisticas;
+
+    @BeforeEach
+    void lerEstatisticas() {
+        estatisticas = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void cadastroEhUmaConsultaDeCpfECnhEUmInsert() {
+        Motorista motorista = novoMotorista();
+        // Garante a consulta de duplicados, que o indice dispensaria para CPF e CNH novos
+        indiceUnicidade.registrar(CampoUnico.CPF, motorista.getCpf());
+
+        estatisticas.clear();
+        BindingResult resultado = new BeanPropertyBindingResult(motorista, "motorista");
+        motoristaService.salvar(motorista, resultado);
+        long comandos = estatisticas.getPrepareStatementCount();
+
+        assertThat(resultado.hasErrors()).isFalse();
+        // Um motorista a cada 50 abre um bloco de codigos com um nextval e fica com o primeiro deles
+        long nextval = motorista.getCodigo().equals(
+                jdbcTemplate.queryForObject("select last_value from pessoa_codigo_seq", Long.class)) ? 1 : 0;
+        assertThat(comandos - nextval).isEqualTo(2);
+    }
+
+    @Test
+    void alteracaoEhUmaConsultaDeCpfECnhEUmUpdateSemSelect() {
+        Motorista motorista = novoMotorista();
+        motoristaService.salvar(motorista, new BeanPropertyBindingResult(motorista, "motorista"));
+        motorista.setNome("Motorista Alterado"); // O motorista que volta do formulario, com codigo e versao
+
+        estatisticas.clear();
+        BindingResult resultado = new BeanPropertyBindingResult(motorista, "motorista");
+        motoristaService.alterar(motorista, resultado);
+
+        assertThat(resultado.hasErrors()).isFalse();
+        assertThat(estatisticas.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(estatisticas.getEntityLoadCount()).isZero();
+        assertThat(motoristaRepository.findById(motorista.getCodigo()).orElseThrow().getNome())
+                .isEqualTo("Motorista Alterado");
+    }
+
+    @Test
+    void alteracaoSobreVersaoAntigaEhRecusada() {
+        Motorista motorista = novoMotorista();
+        motoristaService.salvar(motorista, new BeanPropertyBindingResult(motorista, "motorista"));
+        motorista.setNome("Primeira Alteracao");
+        motoristaService.alterar(motorista, new BeanPropertyBindingResult(motorista, "motorista"));
+
+        motorista.setVersao(0L);
+        motorista.setNome("Segunda Alteracao");
+
+        assertThatThrownBy(() -> motoristaService.alterar(motorista, new BeanPropertyBindingResult(motorista, "motorista")))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThat(motoristaRepository.findById(motorista.getCodigo()).orElseThrow().getNome())
+                .isEqualTo("Primeira Alteracao");
+    }
+
+    @Test
+    void cpfRepetidoEhRecusadoMesmoSemCnh() {
+        Motorista existente = novoMotorista();
+        motoristaService.salvar(existente, new BeanPropertyBindingResult(existente, "motorista"));
+        Motorista novo = new Motorista("Sem CNH", existente.getCpf(), LocalDate.of(1990, 1, 1), null);
+
+        BindingResult resultado = new BeanPropertyBindingResult(novo, "motorista");
+        motoristaService.salvar(novo, resultado);
+
+        assertThat(resultado.getFieldError("cpf")).isNotNull();
+        assertThat(resultado.getFieldError("cnh")).isNull();
+    }
+
+    private Motorista novoMotorista() {
+        return new Motorista("Motorista Teste", digitosUnicos(), LocalDate.of(1985, 5, 20), digitosUnicos());
+    }
+
+}
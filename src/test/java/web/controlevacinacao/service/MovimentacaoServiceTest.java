@@ -0,0 +1,318 @@
+package web.controlevacinacao.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+
+import web.controlevacinacao.TesteIntegracao;
+import web.controlevacinacao.filter.RelatorioMovimentacaoFilter;
+import web.controlevacinacao.model.Carro;
+import web.controlevacinacao.model.Motorista;
+import web.controlevacinacao.model.Movimentacao;
+import web.controlevacinacao.model.Status;
+import web.controlevacinacao.model.StatusCarro;
+import web.controlevacinacao.model.StatusMovimentacao;
+import web.controlevacinacao.projection.TotalMovimentacao;
+import web.controlevacinacao.projection.UsoFrotaCarroDia;
+import web.controlevacinacao.relatorio.AgrupamentoMovimentacao;
+import web.controlevacinacao.repository.CarroRepository;
+import web.controlevacinacao.repository.MotoristaRepository;
+import web.controlevacinacao.repository.MovimentacaoRepository;
+import web.controlevacinacao.repository.UsoFrotaRepository;
+
+class MovimentacaoServiceTest extends TesteIntegracao {
+
+    private static final int RECURSOS_ESTRESSE = 3;
+    private static final int THREADS_ESTRESSE = 8;
+    private static final int ITERACOES_ESTRESSE = 100;
+
+    @Autowired
+    private MovimentacaoService movimentacaoService;
+
+    @Autowired
+    private CarroRepository carroRepository;
+
+    @Autowired
+    private MotoristaRepository motoristaRepository;
+
+    @Autowired
+    private MovimentacaoRepository movimentacaoRepository;
+
+    @Autowired
+    private UsoFrotaService usoFrotaService;
+
+    @Autowired
+    private UsoFrotaRepository usoFrotaRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Carro carro;
+    private Motorista motorista;
+
+    @BeforeEach
+    void criarCarroEMotorista() {
+        carro = novoCarro();
+        motorista = novoMotorista();
+    }
+
+    @Test
+    void iniciarEFinalizarConcorrentesNuncaDeixamCarroOuMotoristaEmDuasViagens() throws Exception {
+        // Poucos carros e motoristas para muitas threads: quase toda tentativa disputa um recurso
+        List<Long> carros = new ArrayList<>(List.of(carro.getCodigo()));
+        List<Long> motoristas = new ArrayList<>(List.of(motorista.getCodigo()));
+        for (int i = 1; i < RECURSOS_ESTRESSE; i++) {
+            carros.add(novoCarro().getCodigo());
+            motoristas.add(novoMotorista().getCodigo());
+        }
+        Queue<Movimentacao> ativas = new ConcurrentLinkedQueue<>();
+        AtomicInteger iniciadas = new AtomicInteger();
+        AtomicInteger recusadas = new AtomicInteger();
+        AtomicInteger finalizadas = new AtomicInteger();
+        List<String> violacoes = new CopyOnWriteArrayList<>();
+
+        CountDownLatch largada = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS_ESTRESSE + 1);
+        try {
+            List<Future<?>> tarefas = new ArrayList<>();
+            for (int t = 0; t < THREADS_ESTRESSE; t++) {
+                tarefas.add(executor.submit(() -> {
+                    largada.await();
+                    ThreadLocalRandom aleatorio = ThreadLocalRandom.current();
+                    for (int i = 0; i < ITERACOES_ESTRESSE; i++) {
+                        // Metade das vezes encerra uma viagem de qualquer thread, intercalando com as saidas
+                        Movimentacao ativa = aleatorio.nextBoolean() ? ativas.poll() : null;
+                        if (ativa != null) {
+                            encerrar(ativa);
+                            finalizadas.incrementAndGet();
+                            continue;
+                        }
+                        try {
+                            ativas.add(movimentacaoService.iniciar(carros.get(aleatorio.nextInt(carros.size())),
+                                    motoristas.get(aleatorio.nextInt(motoristas.size()))));
+                            iniciadas.incrementAndGet();
+                        } catch (RecursoIndisponivelException e) {
+                            recusadas.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // Confere as invariantes enquanto as threads trabalham; cada consulta le um unico snapshot
+            Future<?> fiscal = executor.submit(() -> {
+                largada.await();
+                while (tarefas.stream().anyMatch(tarefa -> !tarefa.isDone())) {
+                    violacoes.addAll(violacoes(carros, motoristas));
+                }
+                return null;
+            });
+            largada.countDown();
+            for (Future<?> tarefa : tarefas) {
+                tarefa.get();
+            }
+            fiscal.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        for (Movimentacao ativa : ativas) {
+            encerrar(ativa);
+            finalizadas.incrementAndGet();
+        }
+
+        assertThat(violacoes).isEmpty();
+        assertThat(violacoes(carros, motoristas)).isEmpty();
+        assertThat(iniciadas.get()).isPositive().isEqualTo(finalizadas.get());
+        assertThat(recusadas.get()).isPositive();
+        assertThat(carros).allSatisfy(codigo -> assertThat(
+                carroRepository.findById(codigo).orElseThrow().getStatusCarro()).isEqualTo(StatusCarro.ATIVO));
+        assertThat(motoristas).allSatisfy(codigo -> assertThat(
+                motoristaRepository.findById(codigo).orElseThrow().getStatus()).isEqualTo(Status.ATIVO));
+    }
+
+    /**
+     * Carros e motoristas em mais de uma viagem ATIVA, ou cujo status nao bate com
+     * a existencia de uma viagem ATIVA (EM_USO/EM_MOVIMENTACAO se e somente se ha uma).
+     */
+    private List<String> violacoes(List<Long> carros, List<Long> motoristas) {
+        String listaCarros = carros.stream().map(String::valueOf).collect(Collectors.joining(","));
+        String listaMotoristas = motoristas.stream().map(String::valueOf).collect(Collectors.joining(","));
+        return jdbcTemplate.queryForList("""
+                select 'carro ' || c.codigo || ' ' || c.status_carro || ' com ' || count(m.codigo) || ' ativas'
+                from carro c left join movimentacao m on m.codigo_carro = c.codigo and m.status = 'ATIVA'
+                where c.codigo in (%s)
+                group by c.codigo, c.status_carro
+                having count(m.codigo) > 1 or (c.status_carro = 'EM_USO') <> (count(m.codigo) = 1)
+                union all
+                select 'motorista ' || p.codigo || ' ' || p.status || ' com ' || count(m.codigo) || ' ativas'
+                from pessoa p left join movimentacao m on m.codigo_motorista = p.codigo and m.status = 'ATIVA'
+                where p.codigo in (%s)
+                group by p.codigo, p.status
+                having count(m.codigo) > 1 or (p.status = 'EM_MOVIMENTACAO') <> (count(m.codigo) = 1)
+                """.formatted(listaCarros, listaMotoristas), String.class);
+    }
+
+    private void encerrar(Movimentacao movimentacao) {
+        BindingResult resultado = finalizar(movimentacao, movimentacao.getKmSaida() + 10);
+        assertThat(resultado.hasErrors()).isFalse();
+    }
+
+    @Test
+    void finalizarGravaOKmDeRetornoEAvancaOCarro() {
+        Movimentacao movimentacao = iniciarEBuscar();
+
+        BindingResult resultado = finalizar(movimentacao, 1150L);
+
+        assertThat(resultado.hasErrors()).isFalse();
+        Movimentacao finalizada = movimentacaoRepository.findById(movimentacao.getCodigo()).orElseThrow();
+        assertThat(finalizada.getStatusMovimentacao()).isEqualTo(StatusMovimentacao.FINALIZADA);
+        assertThat(finalizada.getKmRetorno()).isEqualTo(1150L);
+        assertThat(carroRepository.findById(carro.getCodigo()).orElseThrow().getKmAtual()).isEqualTo(1150L);
+        // A proxima saida parte do km do retorno e o relatorio soma os km percorridos
+        assertThat(totalDoCarro().getKmPercorridos()).isEqualTo(150L);
+        assertThat(iniciarEBuscar().getKmSaida()).isEqualTo(1150L);
+    }
+
+    @Test
+    void kmDeRetornoMenorQueOdeSaidaNaoFinaliza() {
+        Movimentacao movimentacao = iniciarEBuscar();
+
+        BindingResult resultado = finalizar(movimentacao, 900L);
+
+        assertThat(resultado.getFieldError("kmRetorno")).isNotNull();
+        assertThat(finalizar(movimentacao, null).getFieldError("kmRetorno")).isNotNull();
+        Movimentacao salva = movimentacaoRepository.findById(movimentacao.getCodigo()).orElseThrow();
+        assertThat(salva.getStatusMovimentacao()).isEqualTo(StatusMovimentacao.ATIVA);
+        assertThat(salva.getKmRetorno()).isNull();
+        assertThat(carroRepository.findById(carro.getCodigo()).orElseThrow().getKmAtual()).isEqualTo(1000L);
+    }
+
+    @Test
+    void alterarUmaFinalizadaCorrigeOUsoDaFrota() {
+        Movimentacao movimentacao = iniciarEBuscar();
+        finalizar(movimentacao, 1150L);
+        assertThat(usoDoCarro().getKmPercorridos()).isEqualTo(150L);
+
+        Movimentacao finalizada = movimentacaoRepository.findCompletoByCodigo(movimentacao.getCodigo());
+        finalizada.setKmRetorno(1400L);
+        BindingResult resultado = new BeanPropertyBindingResult(finalizada, "movimentacao");
+        movimentacaoService.alterar(finalizada, resultado);
+
+        assertThat(resultado.hasErrors()).isFalse();
+        // A viagem continua contada uma vez, agora com os km corrigidos
+        UsoFrotaCarroDia uso = usoDoCarro();
+        assertThat(uso.getViagens()).isEqualTo(1L);
+        assertThat(uso.getKmPercorridos()).isEqualTo(400L);
+
+        finalizada.setKmRetorno(900L);
+        resultado = new BeanPropertyBindingResult(finalizada, "movimentacao");
+        movimentacaoService.alterar(finalizada, resultado);
+
+        assertThat(resultado.getFieldError("kmRetorno")).isNotNull();
+        assertThat(movimentacaoRepository.findById(movimentacao.getCodigo()).orElseThrow().getKmRetorno())
+                .isEqualTo(1400L);
+        assertThat(usoDoCarro().getKmPercorridos()).isEqualTo(400L);
+    }
+
+    @Test
+    void recalculoDoUsoDaFrotaConfereComOsTotaisGravadosAoVivo() {
+        Movimentacao primeira = iniciarEBuscar();
+        finalizar(primeira, 1100L);
+
+        // Cancelada: fica FINALIZADA sem km de retorno e nao conta como viagem
+        Movimentacao cancelada = iniciarEBuscar();
+        movimentacaoService.remover(cancelada.getCodigo());
+
+        Movimentacao corrigida = iniciarEBuscar();
+        finalizar(corrigida, 1200L);
+        alterar(corrigida.getCodigo(), movimentacao -> movimentacao.setKmRetorno(1250L));
+        alterar(cancelada.getCodigo(), movimentacao -> movimentacao.setDataRetorno(LocalDate.now()));
+
+        UsoFrotaCarroDia aoVivo = usoDoCarro();
+        assertThat(aoVivo.getViagens()).isEqualTo(2L);
+        assertThat(aoVivo.getKmPercorridos()).isEqualTo(100L + 150L);
+
+        LocalDate hoje = LocalDate.now();
+        transactionTemplate.executeWithoutResult(status -> usoFrotaRepository.reconstruir(hoje, hoje));
+
+        UsoFrotaCarroDia recalculado = usoDoCarro();
+        assertThat(recalculado.getViagens()).isEqualTo(aoVivo.getViagens());
+        assertThat(recalculado.getKmPercorridos()).isEqualTo(aoVivo.getKmPercorridos());
+        assertThat(recalculado.getMinutosUso()).isEqualTo(aoVivo.getMinutosUso());
+    }
+
+    private Carro novoCarro() {
+        Carro novo = new Carro();
+        novo.setPlaca(placaUnica());
+        novo.setModelo("Onix");
+        novo.setCor("Preto");
+        novo.setKmAtual(1000L);
+        return carroRepository.save(novo);
+    }
+
+    private Motorista novoMotorista() {
+        return motoristaRepository.save(
+                new Motorista("Motorista Teste", digitosUnicos(), LocalDate.of(1985, 5, 20), digitosUnicos()));
+    }
+
+    private void alterar(Long codigo, Consumer<Movimentacao> alteracao) {
+        Movimentacao movimentacao = movimentacaoRepository.findCompletoByCodigo(codigo);
+        alteracao.accept(movimentacao);
+        BindingResult resultado = new BeanPropertyBindingResult(movimentacao, "movimentacao");
+        movimentacaoService.alterar(movimentacao, resultado);
+        assertThat(resultado.hasErrors()).isFalse();
+    }
+
+    private Movimentacao iniciarEBuscar() {
+        Movimentacao iniciada = movimentacaoService.iniciar(carro.getCodigo(), motorista.getCodigo());
+        return movimentacaoRepository.buscarCompletoCodigo(iniciada.getCodigo());
+    }
+
+    private BindingResult finalizar(Movimentacao movimentacao, Long kmRetorno) {
+        BindingResult resultado = new BeanPropertyBindingResult(movimentacao, "movimentacao");
+        movimentacaoService.finalizar(movimentacao, kmRetorno, resultado);
+        return resultado;
+    }
+
+    private UsoFrotaCarroDia usoDoCarro() {
+        LocalDate hoje = LocalDate.now();
+        List<UsoFrotaCarroDia> usos = usoFrotaService.usoPorCarro(hoje, hoje).stream()
+                .filter(uso -> uso.getCodigoCarro().equals(carro.getCodigo()))
+                .toList();
+        assertThat(usos).hasSize(1);
+        return usos.get(0);
+    }
+
+    private TotalMovimentacao totalDoCarro() {
+        RelatorioMovimentacaoFilter filtro = new RelatorioMovimentacaoFilter();
+        filtro.setPlacaCarro(carro.getPlaca());
+        List<TotalMovimentacao> totais = new ArrayList<>();
+        usoFrotaRepository.percorrerTotais(filtro, AgrupamentoMovimentacao.CARRO, totais::add);
+        assertThat(totais).hasSize(1);
+        return totais.get(0);
+    }
+
+}